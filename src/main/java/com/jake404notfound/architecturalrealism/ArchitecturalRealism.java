@@ -2,10 +2,12 @@ package com.jake404notfound.architecturalrealism;
 
 import com.jake404notfound.architecturalrealism.config.ARConfig;
 import com.jake404notfound.architecturalrealism.physics.StructuralIntegrityManager;
+import com.jake404notfound.architecturalrealism.registry.ARAttachments;
 import net.neoforged.bus.api.IEventBus;
 import net.neoforged.fml.ModContainer;
 import net.neoforged.fml.common.Mod;
 import net.neoforged.fml.config.ModConfig;
+import net.neoforged.fml.event.config.ModConfigEvent;
 import net.neoforged.fml.event.lifecycle.FMLCommonSetupEvent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -22,6 +24,10 @@ public class ArchitecturalRealism {
         
         // Register mod configuration
         modContainer.registerConfig(ModConfig.Type.COMMON, ARConfig.COMMON_SPEC);
+        modEventBus.addListener(this::onConfigReloading);
+        
+        // Register the chunk attachment that persists support fields
+        ARAttachments.register(modEventBus);
         
         // Register setup method
         modEventBus.addListener(this::setup);
@@ -40,4 +46,10 @@ public class ArchitecturalRealism {
             structuralIntegrityManager.initialize();
         });
     }
+    
+    private void onConfigReloading(final ModConfigEvent.Reloading event) {
+        if (event.getConfig().getSpec() == ARConfig.COMMON_SPEC) {
+            structuralIntegrityManager.onConfigReloaded();
+        }
+    }
 }
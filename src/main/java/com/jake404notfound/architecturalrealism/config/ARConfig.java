@@ -12,7 +12,8 @@ public class ARConfig {
         public final ModConfigSpec.BooleanValue enableStructuralIntegrity;
         public final ModConfigSpec.IntValue maxSupportDistance;
         public final ModConfigSpec.IntValue calculationRadius;
-        public final ModConfigSpec.IntValue maxCalculationsPerTick;
+        public final ModConfigSpec.DoubleValue tickTimeBudgetMs;
+        public final ModConfigSpec.IntValue cascadeBlocksPerTick;
         public final ModConfigSpec.BooleanValue enableVisualFeedback;
         public final ModConfigSpec.BooleanValue enableCreativeBypass;
         public final ModConfigSpec.EnumValue<PhysicsMode> physicsMode;
@@ -26,10 +27,15 @@ public class ARConfig {
         public final ModConfigSpec.DoubleValue hangingSupportFactor;
         public final ModConfigSpec.DoubleValue supportDecayFactor;
         public final ModConfigSpec.DoubleValue stabilityThreshold;
-        public final ModConfigSpec.IntValue supportCacheSize;
+        public final ModConfigSpec.IntValue supportCacheMemoryMb;
+        public final ModConfigSpec.EnumValue<SolverMode> solverMode;
+        public final ModConfigSpec.IntValue solverThreads;
+        public final ModConfigSpec.EnumValue<SupportSolver> supportSolver;
+        public final ModConfigSpec.IntValue parallelSolveMinBlocks;
         public final ModConfigSpec.BooleanValue enableDiagonalConnections;
         public final ModConfigSpec.DoubleValue diagonalSupportFactor;
         public final ModConfigSpec.BooleanValue enableFallingBlocks;
+        public final ModConfigSpec.IntValue maxFallingBlocksPerChunk;
 
         public Common(ModConfigSpec.Builder builder) {
             builder.comment("Architectural Realism Configuration")
@@ -92,6 +98,10 @@ public class ARConfig {
             enableFallingBlocks = builder
                     .comment("Enable falling block entities for unstable blocks (if false, blocks are just destroyed)")
                     .define("enableFallingBlocks", true);
+                    
+            maxFallingBlocksPerChunk = builder
+                    .comment("Maximum number of falling block entities per chunk during a collapse. Blocks past this land instantly where they would have fallen to")
+                    .defineInRange("maxFallingBlocksPerChunk", 32, 0, 1024);
 
             builder.pop().push("performance");
 
@@ -103,13 +113,33 @@ public class ARConfig {
                     .comment("Radius around changed blocks to recalculate support")
                     .defineInRange("calculationRadius", 8, 1, 32);
 
-            maxCalculationsPerTick = builder
-                    .comment("Maximum number of block calculations per tick (higher values may impact performance)")
-                    .defineInRange("maxCalculationsPerTick", 1000, 100, 10000);
+            tickTimeBudgetMs = builder
+                    .comment("Maximum time spent on structural updates each tick, in milliseconds. The budget shrinks automatically while the server is running behind, and work that doesn't fit carries over to the next tick")
+                    .defineInRange("tickTimeBudgetMs", 5.0, 0.5, 40.0);
+                    
+            cascadeBlocksPerTick = builder
+                    .comment("Maximum number of collapsed blocks whose surroundings are re-checked each tick, per dimension. Chain reactions spread one wave at a time and carry over to later ticks instead of running all at once")
+                    .defineInRange("cascadeBlocksPerTick", 64, 1, 4096);
+                    
+            supportCacheMemoryMb = builder
+                    .comment("Memory limit for cached support values, in megabytes, shared by all dimensions. When it is reached, the least used chunk sections are evicted first")
+                    .defineInRange("supportCacheMemoryMb", 64, 1, 4096);
+                    
+            solverMode = builder
+                    .comment("Where support calculations run: MAIN_THREAD (on the server thread) or ASYNC (on worker threads against chunk snapshots, only collapses are applied on the server thread)")
+                    .defineEnum("solverMode", SolverMode.MAIN_THREAD);
+                    
+            solverThreads = builder
+                    .comment("Number of worker threads used for support calculations when solverMode is ASYNC")
+                    .defineInRange("solverThreads", 2, 1, 16);
                     
-            supportCacheSize = builder
-                    .comment("Maximum number of block positions to cache support values for (per dimension)")
-                    .defineInRange("supportCacheSize", 5000, 1000, 50000);
+            supportSolver = builder
+                    .comment("How ASYNC solves propagate support: QUEUE (spreads outward from foundations, one block at a time) or SWEEP (relaxes the whole region in repeated data-parallel sweeps, faster on large dense regions but slower on sparse ones and on long winding structures such as spiral stairs, which need another sweep for every turn; uses SIMD instructions when the server is started with --add-modules=jdk.incubator.vector). Solves on the main thread always use QUEUE, since only it can pause between ticks")
+                    .defineEnum("supportSolver", SupportSolver.QUEUE);
+                    
+            parallelSolveMinBlocks = builder
+                    .comment("ASYNC solves over at least this many blocks are split along chunk section borders and propagated on every CPU core at once, whichever supportSolver is set. The default covers calculationRadius 18 and up; raise it past 274625 (radius 32) to always solve on one thread. Only applies when solverMode is ASYNC: MAIN_THREAD solves of any size run on the server thread alone, since a tiled solve can't pause between ticks and would stall the server until it finished")
+                    .defineInRange("parallelSolveMinBlocks", 50000, 4096, Integer.MAX_VALUE);
 
             builder.pop().push("visual");
 
@@ -126,4 +156,14 @@ public class ARConfig {
         SIMPLE,
         NONE
     }
+
+    public enum SolverMode {
+        MAIN_THREAD,
+        ASYNC
+    }
+
+    public enum SupportSolver {
+        QUEUE,
+        SWEEP
+    }
 }
@@ -0,0 +1,43 @@
+package com.jake404notfound.architecturalrealism.event;
+
+import com.jake404notfound.architecturalrealism.ArchitecturalRealism;
+import com.jake404notfound.architecturalrealism.physics.StructuralIntegrityManager;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.level.ChunkEvent;
+
+/**
+ * Handles chunk events for the Architectural Realism mod.
+ * Support fields saved with chunks are restored as they load, so structures don't need to be
+ * solved again from scratch after a restart, and updates waiting for a chunk resume once it loads.
+ * Everything held for a chunk is saved with it or dropped as it unloads, and dimensions being
+ * unloaded take all of their state with them.
+ */
+@EventBusSubscriber(modid = ArchitecturalRealism.MOD_ID)
+public class ChunkEventHandler {
+    
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        if (manager == null) return;
+        
+        if (event.getLevel() instanceof ServerLevel level && event.getChunk() instanceof LevelChunk chunk) {
+            if (!event.isNewChunk()) {
+                manager.restoreSupport(level, chunk);
+            }
+            manager.resumeParkedTasks(level, chunk);
+        }
+    }
+    
+    @SubscribeEvent
+    public static void onChunkUnload(ChunkEvent.Unload event) {
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        if (manager == null) return;
+        
+        if (event.getLevel() instanceof ServerLevel level && event.getChunk() instanceof LevelChunk chunk) {
+            manager.onChunkUnload(level, chunk);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.jake404notfound.architecturalrealism.event;
+
+import com.jake404notfound.architecturalrealism.ArchitecturalRealism;
+import com.jake404notfound.architecturalrealism.physics.LevelUpdateState;
+import com.jake404notfound.architecturalrealism.physics.StructuralIntegrityManager;
+import com.jake404notfound.architecturalrealism.physics.SupportCache;
+import com.jake404notfound.architecturalrealism.physics.SupportField;
+import com.mojang.brigadier.context.CommandContext;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+import net.minecraft.world.level.Level;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.RegisterCommandsEvent;
+
+import java.util.Map;
+
+/**
+ * Registers the Architectural Realism server commands.
+ * {@code /architecturalrealism cache} reports how much memory the support cache uses in each dimension,
+ * and {@code /architecturalrealism queue} reports each dimension's pending updates and tick time.
+ */
+@EventBusSubscriber(modid = ArchitecturalRealism.MOD_ID)
+public class CommandEventHandler {
+    
+    @SubscribeEvent
+    public static void onRegisterCommands(RegisterCommandsEvent event) {
+        event.getDispatcher().register(Commands.literal(ArchitecturalRealism.MOD_ID)
+            .requires(source -> source.hasPermission(2))
+            .then(Commands.literal("cache").executes(CommandEventHandler::showCacheStats))
+            .then(Commands.literal("queue").executes(CommandEventHandler::showQueueStats)));
+    }
+    
+    private static int showCacheStats(CommandContext<CommandSourceStack> context) {
+        SupportCache cache = StructuralIntegrityManager.getInstance().getSupportCache();
+        CommandSourceStack source = context.getSource();
+        
+        source.sendSuccess(() -> Component.literal(String.format("Support cache: %s of %s",
+            formatBytes(cache.getTotalBytes()), formatBytes(cache.getMaxBytes()))), false);
+        
+        for (Map.Entry<Level, SupportField> entry : cache.getFields().entrySet()) {
+            Level level = entry.getKey();
+            SupportField field = entry.getValue();
+            source.sendSuccess(() -> Component.literal(String.format(
+                "  %s: %s, %d blocks in %d sections, %.1f%% hit rate, %d evictions",
+                level.dimension().location(), formatBytes(field.getEstimatedBytes()), field.size(),
+                field.getSectionCount(), field.getHitRate() * 100.0, field.getEvictions())), false);
+        }
+        
+        return cache.getFields().size();
+    }
+    
+    private static int showQueueStats(CommandContext<CommandSourceStack> context) {
+        Map<Level, LevelUpdateState> states = StructuralIntegrityManager.getInstance().getLevelStates();
+        CommandSourceStack source = context.getSource();
+        
+        source.sendSuccess(() -> Component.literal("Structural updates:"), false);
+        for (Map.Entry<Level, LevelUpdateState> entry : states.entrySet()) {
+            Level level = entry.getKey();
+            LevelUpdateState state = entry.getValue();
+            source.sendSuccess(() -> Component.literal(String.format(
+                "  %s: %d queued, %d waiting for chunks, %d run last tick in %.2f of %.2f ms, %d total, %d ticks skipped, %d collapsed blocks to re-check after %d waves",
+                level.dimension().location(), state.getQueuedTasks(), state.getParkedTasks(), state.getTasksLastTick(),
+                state.getNanosLastTick() / 1_000_000.0, state.getBudgetNanos() / 1_000_000.0,
+                state.getTotalTasks(), state.getSkippedTicks(), state.getCascadePositions(),
+                state.getTotalCascadeWaves())), false);
+        }
+        
+        return states.size();
+    }
+    
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KB", bytes / 1024.0);
+        }
+        return String.format("%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -0,0 +1,32 @@
+package com.jake404notfound.architecturalrealism.event;
+
+import com.jake404notfound.architecturalrealism.ArchitecturalRealism;
+import com.jake404notfound.architecturalrealism.physics.BlockPropertyLoader;
+import com.jake404notfound.architecturalrealism.physics.StructuralIntegrityManager;
+import net.neoforged.bus.api.SubscribeEvent;
+import net.neoforged.fml.common.EventBusSubscriber;
+import net.neoforged.neoforge.event.AddReloadListenerEvent;
+import net.neoforged.neoforge.event.TagsUpdatedEvent;
+
+/**
+ * Handles datapack loading for the Architectural Realism mod.
+ * Structural block properties are read from datapacks and compiled once the block tags they refer to are bound.
+ */
+@EventBusSubscriber(modid = ArchitecturalRealism.MOD_ID)
+public class DataEventHandler {
+    
+    @SubscribeEvent
+    public static void onAddReloadListeners(AddReloadListenerEvent event) {
+        event.addListener(new BlockPropertyLoader(StructuralIntegrityManager.getInstance().getBlockPropertyManager()));
+    }
+    
+    /**
+     * Tags are bound after every reload listener has run, so the loaded definitions are compiled here.
+     */
+    @SubscribeEvent
+    public static void onTagsUpdated(TagsUpdatedEvent event) {
+        if (event.getUpdateCause() == TagsUpdatedEvent.UpdateCause.SERVER_DATA_LOAD) {
+            StructuralIntegrityManager.getInstance().onBlockPropertiesReloaded();
+        }
+    }
+}
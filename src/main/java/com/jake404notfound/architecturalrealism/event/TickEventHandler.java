@@ -14,26 +14,33 @@ import net.neoforged.neoforge.event.tick.LevelTickEvent;
  */
 @EventBusSubscriber(modid = ArchitecturalRealism.MOD_ID)
 public class TickEventHandler {
-    
+
     /**
-     * Handles the server tick event to process structural integrity updates.
-     * This ensures that our physics calculations are spread out over time.
+     * Handles the start of a server tick, before any level ticks.
+     * This works out how the tick's time budget is shared between levels.
+     */
+    @SubscribeEvent
+    public static void onServerTickStart(ServerTickEvent.Pre event) {
+        StructuralIntegrityManager.getInstance().startTick(event.getServer());
+    }
+
+    /**
+     * Handles the end of a server tick, after every level has ticked.
+     * This saves changed support and keeps the support cache within its memory limit.
      */
     @SubscribeEvent
     public static void onServerTick(ServerTickEvent.Post event) {
-        // Process pending structural updates
-        StructuralIntegrityManager.getInstance().processPendingUpdates();
+        StructuralIntegrityManager.getInstance().finishTick();
     }
-    
+
     /**
-     * Handles the level tick event for additional level-specific processing.
-     * This could be used for level-specific physics calculations in the future.
+     * Handles the level tick event to process the level's structural integrity updates.
+     * Each level works through its own queue within its own share of the tick budget.
      */
     @SubscribeEvent
     public static void onLevelTick(LevelTickEvent.Post event) {
-        if (event.getLevel() instanceof ServerLevel) {
-            // Currently no level-specific processing needed
-            // This hook is here for future expansion
+        if (event.getLevel() instanceof ServerLevel serverLevel) {
+            StructuralIntegrityManager.getInstance().processLevelUpdates(serverLevel);
         }
     }
 }
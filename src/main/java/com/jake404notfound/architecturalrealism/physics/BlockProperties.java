@@ -1,5 +1,7 @@
 package com.jake404notfound.architecturalrealism.physics;
 
+import java.util.Objects;
+
 /**
  * Represents the physical properties of a block for structural integrity calculations.
  */
@@ -90,4 +92,21 @@ public class BlockProperties {
     public double getFragility() {
         return fragility;
     }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BlockProperties other)) return false;
+        return Double.compare(weight, other.weight) == 0
+            && Double.compare(compressionStrength, other.compressionStrength) == 0
+            && Double.compare(tensileStrength, other.tensileStrength) == 0
+            && Double.compare(shearStrength, other.shearStrength) == 0
+            && Double.compare(maxLoad, other.maxLoad) == 0
+            && Double.compare(fragility, other.fragility) == 0;
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(weight, compressionStrength, tensileStrength, shearStrength, maxLoad, fragility);
+    }
 }
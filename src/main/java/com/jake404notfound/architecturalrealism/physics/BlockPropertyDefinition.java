@@ -0,0 +1,34 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import net.minecraft.tags.TagKey;
+import net.minecraft.world.level.block.Block;
+
+import java.util.List;
+
+/**
+ * One entry of a structural properties datapack file: a set of properties and the blocks and block tags
+ * they apply to. Tags are only resolved when the definitions are compiled, once the tags are bound.
+ */
+public class BlockPropertyDefinition {
+    private final List<Block> blocks;
+    private final List<TagKey<Block>> tags;
+    private final BlockProperties properties;
+
+    public BlockPropertyDefinition(List<Block> blocks, List<TagKey<Block>> tags, BlockProperties properties) {
+        this.blocks = List.copyOf(blocks);
+        this.tags = List.copyOf(tags);
+        this.properties = properties;
+    }
+
+    public List<Block> getBlocks() {
+        return blocks;
+    }
+
+    public List<TagKey<Block>> getTags() {
+        return tags;
+    }
+
+    public BlockProperties getProperties() {
+        return properties;
+    }
+}
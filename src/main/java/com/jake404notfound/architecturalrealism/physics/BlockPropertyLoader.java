@@ -0,0 +1,99 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.jake404notfound.architecturalrealism.ArchitecturalRealism;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.core.registries.Registries;
+import net.minecraft.resources.ResourceLocation;
+import net.minecraft.server.packs.resources.ResourceManager;
+import net.minecraft.server.packs.resources.SimpleJsonResourceReloadListener;
+import net.minecraft.tags.TagKey;
+import net.minecraft.util.GsonHelper;
+import net.minecraft.util.profiling.ProfilerFiller;
+import net.minecraft.world.level.block.Block;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Loads structural block properties from the {@code structural_properties} directory of every datapack.
+ * Each file holds a list of entries, each naming blocks by id or by tag ({@code #namespace:tag}):
+ * <pre>
+ * {
+ *   "entries": [
+ *     {
+ *       "blocks": ["minecraft:stone", "#minecraft:stone_bricks"],
+ *       "weight": 8, "compression_strength": 10, "tensile_strength": 2,
+ *       "shear_strength": 4, "max_load": 20, "fragility": 0.1
+ *     }
+ *   ]
+ * }
+ * </pre>
+ * Files are applied in order of their id, so a later file overrides an earlier one for the same block.
+ * The parsed definitions are handed to the {@link BlockPropertyManager}, which compiles them once tags are bound.
+ */
+public class BlockPropertyLoader extends SimpleJsonResourceReloadListener {
+    public static final String DIRECTORY = "structural_properties";
+    private static final Gson GSON = new GsonBuilder().create();
+
+    private final BlockPropertyManager blockPropertyManager;
+
+    public BlockPropertyLoader(BlockPropertyManager blockPropertyManager) {
+        super(GSON, DIRECTORY);
+        this.blockPropertyManager = blockPropertyManager;
+    }
+
+    @Override
+    protected void apply(Map<ResourceLocation, JsonElement> files, ResourceManager resourceManager, ProfilerFiller profiler) {
+        List<BlockPropertyDefinition> definitions = new ArrayList<>();
+
+        // Sorted, so overrides between files don't depend on load order
+        for (Map.Entry<ResourceLocation, JsonElement> file : new TreeMap<>(files).entrySet()) {
+            try {
+                JsonObject json = GsonHelper.convertToJsonObject(file.getValue(), "structural properties");
+                for (JsonElement entry : GsonHelper.getAsJsonArray(json, "entries")) {
+                    definitions.add(parseEntry(GsonHelper.convertToJsonObject(entry, "entry"), file.getKey()));
+                }
+            } catch (RuntimeException e) {
+                ArchitecturalRealism.LOGGER.error("Failed to load structural properties {}: {}", file.getKey(), e.getMessage());
+            }
+        }
+
+        blockPropertyManager.setDefinitions(definitions);
+        ArchitecturalRealism.LOGGER.info("Loaded {} structural property definitions", definitions.size());
+    }
+
+    private static BlockPropertyDefinition parseEntry(JsonObject json, ResourceLocation file) {
+        List<Block> blocks = new ArrayList<>();
+        List<TagKey<Block>> tags = new ArrayList<>();
+        for (JsonElement element : GsonHelper.getAsJsonArray(json, "blocks")) {
+            String name = GsonHelper.convertToString(element, "block");
+            if (name.startsWith("#")) {
+                tags.add(TagKey.create(Registries.BLOCK, ResourceLocation.parse(name.substring(1))));
+                continue;
+            }
+
+            // Blocks from mods that aren't installed are skipped, so one file can cover optional mods
+            ResourceLocation id = ResourceLocation.parse(name);
+            if (BuiltInRegistries.BLOCK.containsKey(id)) {
+                blocks.add(BuiltInRegistries.BLOCK.get(id));
+            } else {
+                ArchitecturalRealism.LOGGER.debug("Skipping unknown block {} in structural properties {}", id, file);
+            }
+        }
+
+        BlockProperties properties = new BlockProperties(
+            GsonHelper.getAsDouble(json, "weight"),
+            GsonHelper.getAsDouble(json, "compression_strength"),
+            GsonHelper.getAsDouble(json, "tensile_strength"),
+            GsonHelper.getAsDouble(json, "shear_strength"),
+            GsonHelper.getAsDouble(json, "max_load"),
+            GsonHelper.getAsDouble(json, "fragility"));
+        return new BlockPropertyDefinition(blocks, tags, properties);
+    }
+}
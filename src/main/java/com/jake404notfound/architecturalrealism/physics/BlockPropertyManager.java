@@ -1,290 +1,137 @@
 package com.jake404notfound.architecturalrealism.physics;
 
 import com.jake404notfound.architecturalrealism.ArchitecturalRealism;
+import net.minecraft.core.Holder;
+import net.minecraft.core.registries.BuiltInRegistries;
+import net.minecraft.tags.TagKey;
 import net.minecraft.world.level.block.Block;
-import net.minecraft.world.level.block.Blocks;
 
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Manages block properties for the structural integrity system.
- * This class loads and provides access to the physical properties of different block types.
+ * Properties are defined in datapacks (see {@link BlockPropertyLoader}) and compiled into a
+ * {@link BlockStateTable} whenever datapacks are reloaded. Blocks without a definition use the default properties.
  */
 public class BlockPropertyManager {
     
-    private final Map<Block, BlockProperties> blockPropertiesMap = new HashMap<>();
+    // Default properties for any block not specifically defined
+    private static final BlockProperties DEFAULT_PROPERTIES = new BlockProperties(5, 5, 2, 2, 10, 0.5);
+    
+    // Replaced as a whole on every compile, never modified in place
+    private volatile Map<Block, BlockProperties> blockPropertiesMap = new HashMap<>();
+    // Definitions from the last datapack load, compiled once their tags are bound
+    private List<BlockPropertyDefinition> definitions = List.of();
+    // Properties of every block state, compiled from the map once it is loaded
+    private volatile BlockStateTable stateTable;
     
     /**
-     * Loads block properties for all relevant blocks.
-     * In a production version, this would load from configuration files.
+     * Loads the default properties, which every block uses until datapack definitions are compiled.
+     * Must run after the block registry is frozen, so every state has its final id.
      */
     public void loadBlockProperties() {
         ArchitecturalRealism.LOGGER.info("Loading block properties for structural integrity calculations");
-        
-        // Initialize with default properties
-        initializeDefaultProperties();
-        
-        // Load stone-based materials
-        loadStoneBasedMaterials();
-        
-        // Load wood-based materials
-        loadWoodBasedMaterials();
-        
-        // Load earth materials
-        loadEarthMaterials();
-        
-        // Load metal materials
-        loadMetalMaterials();
-        
-        // Load glass and fragile materials
-        loadGlassMaterials();
-        
-        // Load special building materials
-        loadSpecialBuildingMaterials();
-        
-        ArchitecturalRealism.LOGGER.info("Loaded properties for {} block types", blockPropertiesMap.size());
+        compileDefinitions();
     }
     
-    /**
-     * Gets the structural properties for a specific block.
-     * If no specific properties are defined, returns default properties.
-     */
-    public BlockProperties getBlockProperties(Block block) {
-        return blockPropertiesMap.getOrDefault(block, getDefaultProperties());
+    public List<BlockPropertyDefinition> getDefinitions() {
+        return definitions;
     }
     
     /**
-     * Gets the support factor for a specific block.
-     * This factor determines how well the block can transfer support to adjacent blocks.
-     * 
-     * @param block The block to get the support factor for
-     * @return The support factor value (higher is better at transferring support)
+     * Replaces the datapack definitions. They take effect on the next {@link #compileDefinitions()}.
      */
-    public double getSupportFactor(Block block) {
-        BlockProperties props = getBlockProperties(block);
-        // Calculate support factor based on compression and tensile strength
-        return (props.getCompressionStrength() + props.getTensileStrength()) / 20.0;
+    public void setDefinitions(List<BlockPropertyDefinition> definitions) {
+        this.definitions = List.copyOf(definitions);
     }
     
     /**
-     * Initialize default properties for unknown blocks
-     */
-    private void initializeDefaultProperties() {
-        // Default properties for any block not specifically defined
-        BlockProperties defaultProps = new BlockProperties(5, 5, 2, 2, 10, 0.5);
-        blockPropertiesMap.put(null, defaultProps); // Null key for default properties
-    }
-    
-    /**
-     * Get default properties for blocks not specifically defined
+     * Compiles the current definitions into the property map and the per-state table.
+     * Blocks named directly take precedence over blocks matched through a tag; otherwise later
+     * definitions override earlier ones. Block tags must be bound.
+     *
+     * @return The ids of every block state whose support factor or flags changed
      */
-    private BlockProperties getDefaultProperties() {
-        return blockPropertiesMap.get(null);
+    public BitSet compileDefinitions() {
+        Map<Block, BlockProperties> map = new HashMap<>();
+        map.put(null, DEFAULT_PROPERTIES); // Null key for default properties
+        
+        for (BlockPropertyDefinition definition : definitions) {
+            for (TagKey<Block> tag : definition.getTags()) {
+                for (Holder<Block> holder : BuiltInRegistries.BLOCK.getTagOrEmpty(tag)) {
+                    map.put(holder.value(), definition.getProperties());
+                }
+            }
+        }
+        for (BlockPropertyDefinition definition : definitions) {
+            for (Block block : definition.getBlocks()) {
+                map.put(block, definition.getProperties());
+            }
+        }
+        blockPropertiesMap = map;
+        
+        BlockStateTable previous = stateTable;
+        stateTable = BlockStateTable.build(this);
+        ArchitecturalRealism.LOGGER.info("Compiled structural properties of {} block types for {} block states",
+            map.size() - 1, stateTable.size());
+        return stateTable.diff(previous);
     }
     
     /**
-     * Load properties for stone-based materials
+     * Gets the structural properties of every block state, indexed by block state id.
+     * Only available once {@link #loadBlockProperties()} has run.
      */
-    private void loadStoneBasedMaterials() {
-        // Stone
-        blockPropertiesMap.put(Blocks.STONE, new BlockProperties(8, 10, 2, 4, 20, 0.1));
-        blockPropertiesMap.put(Blocks.GRANITE, new BlockProperties(9, 11, 2, 4, 22, 0.1));
-        blockPropertiesMap.put(Blocks.DIORITE, new BlockProperties(8, 10, 2, 4, 20, 0.1));
-        blockPropertiesMap.put(Blocks.ANDESITE, new BlockProperties(8, 10, 2, 4, 20, 0.1));
-        
-        // Cobblestone
-        blockPropertiesMap.put(Blocks.COBBLESTONE, new BlockProperties(7, 8, 1, 3, 16, 0.3));
-        
-        // Stone bricks
-        blockPropertiesMap.put(Blocks.STONE_BRICKS, new BlockProperties(8, 12, 3, 5, 24, 0.1));
-        
-        // Deepslate
-        blockPropertiesMap.put(Blocks.DEEPSLATE, new BlockProperties(10, 14, 3, 6, 28, 0.1));
-        blockPropertiesMap.put(Blocks.COBBLED_DEEPSLATE, new BlockProperties(9, 12, 2, 5, 24, 0.2));
-        blockPropertiesMap.put(Blocks.DEEPSLATE_BRICKS, new BlockProperties(10, 15, 4, 6, 30, 0.1));
-        
-        // Blackstone
-        blockPropertiesMap.put(Blocks.BLACKSTONE, new BlockProperties(9, 12, 2, 5, 24, 0.1));
-        
-        // Basalt
-        blockPropertiesMap.put(Blocks.BASALT, new BlockProperties(8, 11, 2, 4, 22, 0.3));
-        
-        // Obsidian
-        blockPropertiesMap.put(Blocks.OBSIDIAN, new BlockProperties(12, 20, 5, 8, 40, 0.05));
-        
-        // Bedrock - indestructible
-        blockPropertiesMap.put(Blocks.BEDROCK, new BlockProperties(100, 100, 100, 100, 100, 0.0));
+    public BlockStateTable getStateTable() {
+        return stateTable;
     }
     
     /**
-     * Load properties for wood-based materials
+     * Gets the structural properties for a specific block.
+     * If no specific properties are defined, returns default properties.
      */
-    private void loadWoodBasedMaterials() {
-        // Logs
-        BlockProperties oakLogProps = new BlockProperties(4, 6, 8, 5, 12, 0.3);
-        blockPropertiesMap.put(Blocks.OAK_LOG, oakLogProps);
-        blockPropertiesMap.put(Blocks.SPRUCE_LOG, new BlockProperties(4, 6, 8, 5, 12, 0.3));
-        blockPropertiesMap.put(Blocks.BIRCH_LOG, new BlockProperties(3, 5, 7, 4, 10, 0.3));
-        blockPropertiesMap.put(Blocks.JUNGLE_LOG, new BlockProperties(4, 6, 8, 5, 12, 0.3));
-        blockPropertiesMap.put(Blocks.ACACIA_LOG, new BlockProperties(5, 7, 9, 6, 14, 0.3));
-        blockPropertiesMap.put(Blocks.DARK_OAK_LOG, new BlockProperties(5, 7, 9, 6, 14, 0.3));
-        blockPropertiesMap.put(Blocks.MANGROVE_LOG, new BlockProperties(4, 6, 8, 5, 12, 0.3));
-        blockPropertiesMap.put(Blocks.CHERRY_LOG, new BlockProperties(3, 5, 7, 4, 10, 0.3));
-        
-        // Wood
-        blockPropertiesMap.put(Blocks.OAK_WOOD, oakLogProps);
-        blockPropertiesMap.put(Blocks.SPRUCE_WOOD, new BlockProperties(4, 6, 8, 5, 12, 0.3));
-        blockPropertiesMap.put(Blocks.BIRCH_WOOD, new BlockProperties(3, 5, 7, 4, 10, 0.3));
-        blockPropertiesMap.put(Blocks.JUNGLE_WOOD, new BlockProperties(4, 6, 8, 5, 12, 0.3));
-        blockPropertiesMap.put(Blocks.ACACIA_WOOD, new BlockProperties(5, 7, 9, 6, 14, 0.3));
-        blockPropertiesMap.put(Blocks.DARK_OAK_WOOD, new BlockProperties(5, 7, 9, 6, 14, 0.3));
-        blockPropertiesMap.put(Blocks.MANGROVE_WOOD, new BlockProperties(4, 6, 8, 5, 12, 0.3));
-        blockPropertiesMap.put(Blocks.CHERRY_WOOD, new BlockProperties(3, 5, 7, 4, 10, 0.3));
-        
-        // Planks
-        BlockProperties plankProps = new BlockProperties(3, 4, 7, 4, 8, 0.3);
-        blockPropertiesMap.put(Blocks.OAK_PLANKS, plankProps);
-        blockPropertiesMap.put(Blocks.SPRUCE_PLANKS, plankProps);
-        blockPropertiesMap.put(Blocks.BIRCH_PLANKS, plankProps);
-        blockPropertiesMap.put(Blocks.JUNGLE_PLANKS, plankProps);
-        blockPropertiesMap.put(Blocks.ACACIA_PLANKS, plankProps);
-        blockPropertiesMap.put(Blocks.DARK_OAK_PLANKS, plankProps);
-        blockPropertiesMap.put(Blocks.MANGROVE_PLANKS, plankProps);
-        blockPropertiesMap.put(Blocks.CHERRY_PLANKS, plankProps);
-        
-        // Bamboo
-        blockPropertiesMap.put(Blocks.BAMBOO, new BlockProperties(2, 4, 6, 3, 8, 0.7));
-        blockPropertiesMap.put(Blocks.BAMBOO_PLANKS, plankProps);
+    public BlockProperties getBlockProperties(Block block) {
+        return blockPropertiesMap.getOrDefault(block, getDefaultProperties());
     }
     
     /**
-     * Load properties for earth materials
+     * Gets the support factor for a specific block.
+     * This factor determines how well the block can transfer support to adjacent blocks.
+     * 
+     * @param block The block to get the support factor for
+     * @return The support factor value (higher is better at transferring support)
      */
-    private void loadEarthMaterials() {
-        // Dirt
-        BlockProperties dirtProps = new BlockProperties(5, 3, 0, 1, 6, 0.7);
-        blockPropertiesMap.put(Blocks.DIRT, dirtProps);
-        blockPropertiesMap.put(Blocks.GRASS_BLOCK, dirtProps);
-        blockPropertiesMap.put(Blocks.PODZOL, dirtProps);
-        blockPropertiesMap.put(Blocks.MYCELIUM, dirtProps);
-        
-        // Sand
-        BlockProperties sandProps = new BlockProperties(6, 1, 0, 0, 2, 0.9);
-        blockPropertiesMap.put(Blocks.SAND, sandProps);
-        blockPropertiesMap.put(Blocks.RED_SAND, sandProps);
-        
-        // Gravel
-        blockPropertiesMap.put(Blocks.GRAVEL, new BlockProperties(6, 2, 0, 1, 4, 0.9));
-        
-        // Clay
-        blockPropertiesMap.put(Blocks.CLAY, new BlockProperties(5, 2, 0, 1, 4, 0.7));
+    public double getSupportFactor(Block block) {
+        return computeSupportFactor(getBlockProperties(block));
     }
     
-    /**
-     * Load properties for metal materials
-     */
-    private void loadMetalMaterials() {
-        // Iron
-        blockPropertiesMap.put(Blocks.IRON_BLOCK, new BlockProperties(9, 15, 15, 10, 30, 0.05));
-        
-        // Gold
-        blockPropertiesMap.put(Blocks.GOLD_BLOCK, new BlockProperties(12, 10, 8, 6, 20, 0.1));
-        
-        // Copper
-        blockPropertiesMap.put(Blocks.COPPER_BLOCK, new BlockProperties(8, 12, 12, 8, 24, 0.1));
-        
-        // Netherite
-        blockPropertiesMap.put(Blocks.NETHERITE_BLOCK, new BlockProperties(14, 20, 20, 15, 40, 0.0));
-        
-        // Chain
-        blockPropertiesMap.put(Blocks.CHAIN, new BlockProperties(3, 2, 12, 2, 15, 0.1));
-        
-        // Iron Bars
-        blockPropertiesMap.put(Blocks.IRON_BARS, new BlockProperties(2, 3, 8, 4, 10, 0.1));
+    static double computeSupportFactor(BlockProperties props) {
+        // Calculate support factor based on compression and tensile strength
+        return (props.getCompressionStrength() + props.getTensileStrength()) / 20.0;
     }
     
     /**
-     * Load properties for glass and fragile materials
+     * Computes a hash of every loaded block property.
+     * Saved support values are stamped with it, so they can be recognised as stale once the properties change.
+     * The result does not depend on map iteration order, so it is stable across restarts.
+     *
+     * @return The hash of all loaded properties
      */
-    private void loadGlassMaterials() {
-        // Glass
-        BlockProperties glassProps = new BlockProperties(4, 4, 1, 1, 8, 0.9);
-        blockPropertiesMap.put(Blocks.GLASS, glassProps);
-        
-        // Stained Glass
-        blockPropertiesMap.put(Blocks.WHITE_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.ORANGE_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.MAGENTA_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.LIGHT_BLUE_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.YELLOW_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.LIME_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.PINK_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.GRAY_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.LIGHT_GRAY_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.CYAN_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.PURPLE_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.BLUE_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.BROWN_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.GREEN_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.RED_STAINED_GLASS, glassProps);
-        blockPropertiesMap.put(Blocks.BLACK_STAINED_GLASS, glassProps);
-        
-        // Glass Panes
-        BlockProperties glassPaneProps = new BlockProperties(2, 2, 1, 1, 4, 0.9);
-        blockPropertiesMap.put(Blocks.GLASS_PANE, glassPaneProps);
-        
-        // Ice
-        blockPropertiesMap.put(Blocks.ICE, new BlockProperties(5, 3, 1, 1, 6, 0.9));
-        blockPropertiesMap.put(Blocks.PACKED_ICE, new BlockProperties(6, 5, 2, 2, 10, 0.7));
-        blockPropertiesMap.put(Blocks.BLUE_ICE, new BlockProperties(7, 6, 3, 3, 12, 0.3));
+    public int getPropertiesHash() {
+        int hash = 0;
+        for (Map.Entry<Block, BlockProperties> entry : blockPropertiesMap.entrySet()) {
+            String name = entry.getKey() == null ? "default" : BuiltInRegistries.BLOCK.getKey(entry.getKey()).toString();
+            hash += 31 * name.hashCode() + entry.getValue().hashCode();
+        }
+        return hash;
     }
     
     /**
-     * Load properties for special building materials
+     * Get default properties for blocks not specifically defined
      */
-    private void loadSpecialBuildingMaterials() {
-        // Brick
-        blockPropertiesMap.put(Blocks.BRICKS, new BlockProperties(7, 9, 2, 4, 18, 0.3));
-        
-        // Nether Brick
-        blockPropertiesMap.put(Blocks.NETHER_BRICKS, new BlockProperties(7, 9, 2, 4, 18, 0.3));
-        
-        // Terracotta
-        BlockProperties terracottaProps = new BlockProperties(6, 7, 1, 3, 14, 0.3);
-        blockPropertiesMap.put(Blocks.TERRACOTTA, terracottaProps);
-        
-        // Concrete
-        BlockProperties concreteProps = new BlockProperties(8, 13, 3, 5, 26, 0.1);
-        blockPropertiesMap.put(Blocks.WHITE_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.ORANGE_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.MAGENTA_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.LIGHT_BLUE_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.YELLOW_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.LIME_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.PINK_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.GRAY_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.LIGHT_GRAY_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.CYAN_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.PURPLE_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.BLUE_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.BROWN_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.GREEN_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.RED_CONCRETE, concreteProps);
-        blockPropertiesMap.put(Blocks.BLACK_CONCRETE, concreteProps);
-        
-        // Concrete Powder
-        BlockProperties concretePowderProps = new BlockProperties(6, 1, 0, 0, 2, 0.9);
-        blockPropertiesMap.put(Blocks.WHITE_CONCRETE_POWDER, concretePowderProps);
-        
-        // Wool
-        BlockProperties woolProps = new BlockProperties(2, 1, 1, 1, 2, 0.7);
-        blockPropertiesMap.put(Blocks.WHITE_WOOL, woolProps);
-        
-        // Slime Block
-        blockPropertiesMap.put(Blocks.SLIME_BLOCK, new BlockProperties(4, 2, 6, 6, 8, 0.1));
-        
-        // Honey Block
-        blockPropertiesMap.put(Blocks.HONEY_BLOCK, new BlockProperties(5, 3, 4, 4, 6, 0.1));
+    private BlockProperties getDefaultProperties() {
+        return DEFAULT_PROPERTIES;
     }
 }
@@ -0,0 +1,131 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.state.BlockState;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+
+/**
+ * Structural properties of every block state, flattened into arrays indexed by the global block state id
+ * ({@link Block#getId}). Built from the loaded {@link BlockProperties} once the block registry is frozen and again
+ * whenever datapacks are reloaded, so the solvers look up a state's support factor or flags with a single array read instead of a map lookup.
+ * Tables are immutable; a reload builds a new one, so solver threads can keep reading the one they started with.
+ */
+public final class BlockStateTable {
+    /** Flag set on states that are air. */
+    public static final byte AIR = 1;
+    /** Flag set on states that can't be broken, such as bedrock, and always count as a foundation. */
+    public static final byte FOUNDATION_MATERIAL = 2;
+    /** Flag set on states that can hold up a block, so not air, liquids or replaceable plants such as grass and flowers. */
+    public static final byte SOLID = 4;
+
+    private final float[] supportFactors;
+    private final float[] weights;
+    private final float[] maxLoads;
+    private final byte[] flags;
+
+    private BlockStateTable(int size) {
+        supportFactors = new float[size];
+        weights = new float[size];
+        maxLoads = new float[size];
+        flags = new byte[size];
+    }
+
+    /**
+     * Builds the table for every registered block state.
+     *
+     * @param blockPropertyManager Provides the properties of each block
+     * @return The table
+     */
+    static BlockStateTable build(BlockPropertyManager blockPropertyManager) {
+        BlockStateTable table = new BlockStateTable(Block.BLOCK_STATE_REGISTRY.size());
+        for (BlockState state : Block.BLOCK_STATE_REGISTRY) {
+            int id = Block.getId(state);
+            BlockProperties props = blockPropertyManager.getBlockProperties(state.getBlock());
+
+            table.supportFactors[id] = (float) BlockPropertyManager.computeSupportFactor(props);
+            table.weights[id] = (float) props.getWeight();
+            table.maxLoads[id] = (float) props.getMaxLoad();
+            if (state.isAir()) {
+                table.flags[id] |= AIR;
+            } else if (state.getBlock().defaultDestroyTime() < 0) {
+                table.flags[id] |= FOUNDATION_MATERIAL;
+            }
+            if (!state.isAir() && !state.canBeReplaced()) {
+                table.flags[id] |= SOLID;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Finds the states whose support factor or flags differ from an earlier table.
+     * Those are the properties cached support values depend on; weight and max load changes are not reported.
+     *
+     * @param previous The earlier table, or null if there was none
+     * @return The ids of the states that changed; every state if there was no earlier table
+     */
+    public BitSet diff(@Nullable BlockStateTable previous) {
+        BitSet changed = new BitSet(size());
+        if (previous == null || previous.size() != size()) {
+            changed.set(0, size());
+            return changed;
+        }
+        for (int id = 0; id < size(); id++) {
+            if (supportFactors[id] != previous.supportFactors[id] || flags[id] != previous.flags[id]) {
+                changed.set(id);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Gets how well a state transfers support to adjacent blocks.
+     */
+    public float getSupportFactor(int stateId) {
+        return supportFactors[stateId];
+    }
+
+    public float getSupportFactor(BlockState state) {
+        return supportFactors[Block.getId(state)];
+    }
+
+    public float getWeight(int stateId) {
+        return weights[stateId];
+    }
+
+    public float getMaxLoad(int stateId) {
+        return maxLoads[stateId];
+    }
+
+    /**
+     * Gets the {@link #AIR}, {@link #FOUNDATION_MATERIAL} and {@link #SOLID} flags of a state.
+     */
+    public byte getFlags(int stateId) {
+        return flags[stateId];
+    }
+
+    public boolean isAir(int stateId) {
+        return (flags[stateId] & AIR) != 0;
+    }
+
+    public boolean isSolid(int stateId) {
+        return (flags[stateId] & SOLID) != 0;
+    }
+
+    public boolean isFoundationMaterial(int stateId) {
+        return (flags[stateId] & FOUNDATION_MATERIAL) != 0;
+    }
+
+    public boolean isFoundationMaterial(BlockState state) {
+        return isFoundationMaterial(Block.getId(state));
+    }
+
+    /**
+     * Gets the number of block states in the table.
+     */
+    public int size() {
+        return flags.length;
+    }
+}
@@ -0,0 +1,208 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.HolderLookup;
+import net.minecraft.core.SectionPos;
+import net.minecraft.nbt.CompoundTag;
+import net.neoforged.neoforge.attachment.IAttachmentHolder;
+import net.neoforged.neoforge.attachment.IAttachmentSerializer;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+
+/**
+ * The support field of one chunk, attached to the chunk so it is saved and loaded with it.
+ * Each section's entries are kept in a compact binary form of 7 bytes per tracked block:
+ * a short holding the block's index within the section and its parent direction, a byte distance
+ * and the float support value. The data is stamped with the version of the block properties and
+ * config it was computed with, so it can be discarded once either changes.
+ * <p>
+ * Blocks that changed while their structural update was still queued when the chunk unloaded are saved with it
+ * too, so the update can be queued again once the chunk is back. So are the blocks the SIMPLE mode
+ * {@link ConnectivityEngine} tracks as player-built, since nothing in the world tells them apart from terrain.
+ */
+public class ChunkSupportData {
+    private static final int BYTES_PER_ENTRY = 2 + 1 + 4;
+    // Stored in the 3 parent bits of an entry when it has no parent
+    private static final int NO_PARENT_BITS = 7;
+    private static final int NO_DISTANCE_BYTE = 0xFF;
+
+    public static final IAttachmentSerializer<CompoundTag, ChunkSupportData> SERIALIZER = new IAttachmentSerializer<>() {
+        @Override
+        public ChunkSupportData read(IAttachmentHolder holder, CompoundTag tag, HolderLookup.Provider provider) {
+            ChunkSupportData data = new ChunkSupportData();
+            data.version = tag.getInt("version");
+            CompoundTag sections = tag.getCompound("sections");
+            for (String key : sections.getAllKeys()) {
+                data.sections.put(Integer.parseInt(key), sections.getByteArray(key));
+            }
+            data.pendingChanges.addElements(0, tag.getLongArray("pending"));
+            data.trackedBlocks.addElements(0, tag.getLongArray("tracked"));
+            return data;
+        }
+
+        @Nullable
+        @Override
+        public CompoundTag write(ChunkSupportData data, HolderLookup.Provider provider) {
+            if (data.sections.isEmpty() && data.pendingChanges.isEmpty() && data.trackedBlocks.isEmpty()) {
+                return null;
+            }
+
+            CompoundTag sections = new CompoundTag();
+            for (Int2ObjectMap.Entry<byte[]> entry : data.sections.int2ObjectEntrySet()) {
+                sections.putByteArray(Integer.toString(entry.getIntKey()), entry.getValue());
+            }
+
+            CompoundTag tag = new CompoundTag();
+            tag.putInt("version", data.version);
+            tag.put("sections", sections);
+            if (!data.pendingChanges.isEmpty()) {
+                tag.putLongArray("pending", data.pendingChanges.toLongArray());
+            }
+            if (!data.trackedBlocks.isEmpty()) {
+                tag.putLongArray("tracked", data.trackedBlocks.toLongArray());
+            }
+            return tag;
+        }
+    };
+
+    private final Int2ObjectMap<byte[]> sections = new Int2ObjectOpenHashMap<>();
+    // Packed positions of changed blocks whose update hadn't run yet when the chunk unloaded
+    private final LongArrayList pendingChanges = new LongArrayList();
+    // Packed positions of the blocks the connectivity engine tracks in this chunk
+    private final LongArrayList trackedBlocks = new LongArrayList();
+    private int version;
+
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Drops all saved sections if they were computed with a different version.
+     *
+     * @param version The current support field version
+     */
+    public void resetIfOutdated(int version) {
+        if (this.version != version) {
+            sections.clear();
+            this.version = version;
+        }
+    }
+
+    /**
+     * Stores the entries of a section, or forgets the section if it has none.
+     *
+     * @param sectionY The section's Y coordinate
+     * @param section The section's entries, or null
+     */
+    public void putSection(int sectionY, @Nullable SupportMap section) {
+        if (section == null || section.isEmpty()) {
+            sections.remove(sectionY);
+        } else {
+            sections.put(sectionY, encode(section));
+        }
+    }
+
+    /**
+     * Gets the Y coordinates of all saved sections.
+     */
+    public int[] getSectionYs() {
+        return sections.keySet().toIntArray();
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    /**
+     * Records changed blocks whose structural update has to run once the chunk is loaded again.
+     * They stay valid whatever version the sections were saved with.
+     *
+     * @param positions The packed positions of the changed blocks
+     */
+    public void addPendingChanges(LongArrayList positions) {
+        pendingChanges.addAll(positions);
+    }
+
+    /**
+     * Removes and returns the changed blocks recorded while the chunk was unloading.
+     */
+    public LongArrayList takePendingChanges() {
+        LongArrayList positions = new LongArrayList(pendingChanges);
+        pendingChanges.clear();
+        return positions;
+    }
+
+    /**
+     * Replaces the blocks saved as tracked by the connectivity engine.
+     * They stay valid whatever version the sections were saved with.
+     *
+     * @param positions The packed positions of the chunk's tracked blocks
+     */
+    public void setTrackedBlocks(LongArrayList positions) {
+        trackedBlocks.clear();
+        trackedBlocks.addAll(positions);
+    }
+
+    /**
+     * Gets the blocks saved as tracked by the connectivity engine.
+     */
+    public LongArrayList getTrackedBlocks() {
+        return new LongArrayList(trackedBlocks);
+    }
+
+    /**
+     * Restores a saved section into a support field.
+     *
+     * @param sectionKey The packed position of the section ({@code SectionPos.asLong()})
+     * @param field The field to restore into
+     * @return The number of entries restored
+     */
+    public int restoreSection(long sectionKey, SupportField field) {
+        byte[] bytes = sections.get(SectionPos.y(sectionKey));
+        if (bytes == null) {
+            return 0;
+        }
+
+        int minX = SectionPos.sectionToBlockCoord(SectionPos.x(sectionKey));
+        int minY = SectionPos.sectionToBlockCoord(SectionPos.y(sectionKey));
+        int minZ = SectionPos.sectionToBlockCoord(SectionPos.z(sectionKey));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int count = bytes.length / BYTES_PER_ENTRY;
+        for (int i = 0; i < count; i++) {
+            int packed = buffer.getShort() & 0xFFFF;
+            int distance = buffer.get() & 0xFF;
+            float support = buffer.getFloat();
+
+            int index = packed & 0xFFF;
+            int parent = packed >>> 12;
+            long pos = BlockPos.asLong(minX + (index & 15), minY + (index >>> 8), minZ + ((index >>> 4) & 15));
+            field.put(pos, support,
+                distance == NO_DISTANCE_BYTE ? SupportMap.NO_DISTANCE : (short) distance,
+                parent == NO_PARENT_BITS ? SupportMap.NO_PARENT : (byte) parent);
+        }
+        return count;
+    }
+
+    private static byte[] encode(SupportMap section) {
+        ByteBuffer buffer = ByteBuffer.allocate(section.size() * BYTES_PER_ENTRY);
+        for (int slot = 0; slot < section.capacity(); slot++) {
+            if (!section.isOccupied(slot)) continue;
+
+            long pos = section.keyAt(slot);
+            int index = (SectionPos.sectionRelative(BlockPos.getY(pos)) << 8)
+                | (SectionPos.sectionRelative(BlockPos.getZ(pos)) << 4)
+                | SectionPos.sectionRelative(BlockPos.getX(pos));
+            byte parent = section.parentAt(slot);
+            short distance = section.distanceAt(slot);
+
+            buffer.putShort((short) (index | (parent == SupportMap.NO_PARENT ? NO_PARENT_BITS : parent) << 12));
+            buffer.put((byte) (distance == SupportMap.NO_DISTANCE ? NO_DISTANCE_BYTE : distance));
+            buffer.putFloat(section.valueAt(slot));
+        }
+        return buffer.array();
+    }
+}
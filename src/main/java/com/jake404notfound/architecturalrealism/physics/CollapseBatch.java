@@ -0,0 +1,247 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.network.protocol.Packet;
+import net.minecraft.network.protocol.game.ClientGamePacketListener;
+import net.minecraft.network.protocol.game.ClientboundBlockUpdatePacket;
+import net.minecraft.network.protocol.game.ClientboundSectionBlocksUpdatePacket;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.item.FallingBlockEntity;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.FallingBlock;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.phys.AABB;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Removes a set of collapsing blocks from a level in one batch.
+ * Each block is replaced on its own without neighbor, shape or client updates, which would otherwise bounce
+ * between blocks that are all collapsing. Once every block is gone, only the blocks left standing next to the
+ * collapse are notified, and each changed chunk section is sent to the players tracking it in one packet.
+ * Light checks are queued by the level as usual and the light engine works through them together.
+ * <p>
+ * Falling block entities are capped per chunk, counting the ones already falling there. Blocks past the cap land
+ * straight away where an entity would have come to rest, as part of the same batch, so a large collapse leaves the
+ * same pile of debris without hundreds of entities ticking on the way down. A block with nowhere to fall is put
+ * back where it was and not counted as removed.
+ * Only used on the server thread.
+ */
+public final class CollapseBatch {
+    // Only the block itself changes; everything around it is updated once the whole batch is done
+    private static final int CHANGE_FLAGS = Block.UPDATE_KNOWN_SHAPE;
+    // The flags vanilla passes on to neighbors reshaping after a block change
+    private static final int SHAPE_FLAGS = Block.UPDATE_ALL & ~(Block.UPDATE_NEIGHBORS | Block.UPDATE_SUPPRESS_DROPS);
+    private static final int SHAPE_RECURSION = 511;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private CollapseBatch() {
+    }
+
+    /**
+     * Removes blocks from a level, turning each into a falling block or dropping it as items.
+     * Blocks that are already gone are skipped.
+     *
+     * @param level The level to remove blocks from
+     * @param blocks The blocks to remove, in the order they should start falling
+     * @param fallingBlocks Whether blocks fall rather than break
+     * @param maxFallingPerChunk The most falling block entities a chunk may hold; further blocks land at once
+     * @return The positions of the blocks that were removed, and of the blocks that landed at once
+     */
+    public static Result apply(ServerLevel level, List<BlockPos> blocks, boolean fallingBlocks, int maxFallingPerChunk) {
+        Changes changes = new Changes();
+        // Falling block entities each chunk can still take
+        Long2IntOpenHashMap fallingRoom = new Long2IntOpenHashMap();
+        List<BlockPos> landing = new ArrayList<>();
+        List<BlockState> landingStates = new ArrayList<>();
+
+        for (BlockPos pos : blocks) {
+            BlockState state = level.getBlockState(pos);
+            if (state.isAir()) continue;
+
+            if (!fallingBlocks) {
+                Block.dropResources(state, level, pos, level.getBlockEntity(pos));
+            }
+            // Waterlogged blocks leave their water behind, as they do when they fall normally
+            if (!level.setBlock(pos, state.getFluidState().createLegacyBlock(), CHANGE_FLAGS)) continue;
+
+            changes.add(pos, state.getBlock());
+            if (!fallingBlocks) continue;
+
+            long chunkKey = ChunkPos.asLong(pos);
+            int room = fallingRoom.containsKey(chunkKey) ? fallingRoom.get(chunkKey)
+                : maxFallingPerChunk - countFalling(level, pos);
+            if (room > 0) {
+                // The block is already replaced, so this only spawns the entity
+                FallingBlockEntity.fall(level, pos, state);
+            } else {
+                landing.add(pos);
+                landingStates.add(state);
+            }
+            fallingRoom.put(chunkKey, room - 1);
+        }
+        LongArrayList removed = new LongArrayList(changes.positions);
+        LongArrayList landed = new LongArrayList();
+        LongOpenHashSet stayed = new LongOpenHashSet();
+
+        land(level, landing, landingStates, changes, landed, stayed);
+        if (!stayed.isEmpty()) {
+            removed.removeIf(stayed::contains);
+        }
+        notifyNeighbors(level, changes);
+        sendSectionUpdates(level, changes.sections);
+        return new Result(removed, landed);
+    }
+
+    private static int countFalling(ServerLevel level, BlockPos pos) {
+        int minX = SectionPos.sectionToBlockCoord(SectionPos.blockToSectionCoord(pos.getX()));
+        int minZ = SectionPos.sectionToBlockCoord(SectionPos.blockToSectionCoord(pos.getZ()));
+        AABB chunkBox = new AABB(minX, level.getMinBuildHeight(), minZ, minX + 16, level.getMaxBuildHeight(), minZ + 16);
+        return level.getEntitiesOfClass(FallingBlockEntity.class, chunkBox).size();
+    }
+
+    /**
+     * Places blocks where they would come to rest falling straight down, lowest first so blocks from the same
+     * column pile up on each other. A block that can't stay where it lands drops as items instead, and one that
+     * falls out of the world is lost, the same as for a falling block entity.
+     * A block that would come to rest where it started is put back and recorded as stayed rather than landed.
+     */
+    private static void land(ServerLevel level, List<BlockPos> blocks, List<BlockState> states, Changes changes,
+                             LongArrayList landed, LongOpenHashSet stayed) {
+        List<Integer> order = new ArrayList<>(blocks.size());
+        for (int i = 0; i < blocks.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt(i -> blocks.get(i).getY()));
+
+        int minY = level.getMinBuildHeight();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int i : order) {
+            BlockPos start = blocks.get(i);
+            int y = start.getY();
+            while (y > minY && FallingBlock.isFree(level.getBlockState(pos.set(start.getX(), y - 1, start.getZ())))) {
+                y--;
+            }
+            // Nothing stopped the block above the bottom of the world
+            if (y == minY) continue;
+
+            BlockState state = states.get(i);
+            if (y == start.getY()) {
+                // Nothing below it is free; its removal is already recorded, so the update sends it back to clients
+                level.setBlock(start, state, CHANGE_FLAGS);
+                stayed.add(start.asLong());
+                continue;
+            }
+
+            pos.set(start.getX(), y, start.getZ());
+            BlockState replaced = level.getBlockState(pos);
+            if (!state.canSurvive(level, pos)) {
+                Block.dropResources(state, level, pos);
+            } else if (level.setBlock(pos, state, CHANGE_FLAGS)) {
+                changes.add(pos.immutable(), replaced.getBlock());
+                landed.add(pos.asLong());
+            }
+        }
+    }
+
+    /**
+     * Sends neighbor and shape updates to the blocks next to the changed ones that were not changed themselves.
+     */
+    private static void notifyNeighbors(ServerLevel level, Changes changes) {
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        BlockPos.MutableBlockPos neighborPos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < changes.positions.size(); i++) {
+            pos.set(changes.positions.getLong(i));
+            BlockState state = level.getBlockState(pos);
+            Block oldBlock = changes.oldBlocks.get(i);
+
+            for (Direction direction : DIRECTIONS) {
+                neighborPos.setWithOffset(pos, direction);
+                if (changes.positionSet.contains(neighborPos.asLong())) continue;
+
+                level.neighborChanged(neighborPos, oldBlock, pos);
+                level.neighborShapeChanged(direction.getOpposite(), state, neighborPos, pos, SHAPE_FLAGS, SHAPE_RECURSION);
+            }
+        }
+    }
+
+    private static void sendSectionUpdates(ServerLevel level, Long2ObjectLinkedOpenHashMap<ShortSet> changedSections) {
+        for (Long2ObjectMap.Entry<ShortSet> entry : changedSections.long2ObjectEntrySet()) {
+            SectionPos sectionPos = SectionPos.of(entry.getLongKey());
+            LevelChunk chunk = level.getChunkSource().getChunkNow(sectionPos.x(), sectionPos.z());
+            if (chunk == null) continue;
+
+            ShortSet positions = entry.getValue();
+            Packet<ClientGamePacketListener> packet;
+            if (positions.size() == 1) {
+                packet = new ClientboundBlockUpdatePacket(level, sectionPos.relativeToBlockPos(positions.iterator().nextShort()));
+            } else {
+                LevelChunkSection section = chunk.getSection(level.getSectionIndexFromSectionY(sectionPos.y()));
+                packet = new ClientboundSectionBlocksUpdatePacket(sectionPos, positions, section);
+            }
+            for (ServerPlayer player : level.getChunkSource().chunkMap.getPlayers(chunk.getPos(), false)) {
+                player.connection.send(packet);
+            }
+        }
+    }
+
+    /**
+     * What a batch did to the level.
+     */
+    public static final class Result {
+        private final LongArrayList removed;
+        private final LongArrayList landed;
+
+        Result(LongArrayList removed, LongArrayList landed) {
+            this.removed = removed;
+            this.landed = landed;
+        }
+
+        /**
+         * Gets the positions of the blocks that were removed.
+         */
+        public LongArrayList getRemoved() {
+            return removed;
+        }
+
+        /**
+         * Gets the positions blocks past the falling cap landed at straight away.
+         * They are placed without neighbor notify events, so nothing else reports them as changed.
+         */
+        public LongArrayList getLanded() {
+            return landed;
+        }
+    }
+
+    // Every block a batch changed, with the block that was there before it
+    private static class Changes {
+        final LongArrayList positions = new LongArrayList();
+        final LongOpenHashSet positionSet = new LongOpenHashSet();
+        final List<Block> oldBlocks = new ArrayList<>();
+        // Changed positions of each section, packed the way the section update packet expects them
+        final Long2ObjectLinkedOpenHashMap<ShortSet> sections = new Long2ObjectLinkedOpenHashMap<>();
+
+        void add(BlockPos pos, Block oldBlock) {
+            positions.add(pos.asLong());
+            positionSet.add(pos.asLong());
+            oldBlocks.add(oldBlock);
+            sections.computeIfAbsent(SectionPos.blockToSection(pos.asLong()), k -> new ShortOpenHashSet())
+                .add(SectionPos.sectionRelativePos(pos));
+        }
+    }
+}
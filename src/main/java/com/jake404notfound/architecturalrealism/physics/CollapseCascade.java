@@ -0,0 +1,91 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+
+/**
+ * The collapse frontier of one level: positions whose blocks just collapsed and whose surroundings still have to
+ * be re-evaluated. Blocks that collapse while a wave is re-evaluated join the next wave, so a progressive collapse
+ * spreads outward one wave at a time and only ever looks at blocks next to what just fell.
+ * How many positions are taken each tick is up to the caller. Only used on the server thread.
+ */
+public class CollapseCascade {
+    private LongArrayList wave = new LongArrayList();
+    private LongArrayList nextWave = new LongArrayList();
+    private int waveIndex;
+    private long totalWaves;
+    private long totalPositions;
+
+    /**
+     * Adds positions that just collapsed to the next wave.
+     */
+    public void addCollapsed(LongArrayList positions) {
+        nextWave.addAll(positions);
+    }
+
+    public boolean isEmpty() {
+        return waveIndex == wave.size() && nextWave.isEmpty();
+    }
+
+    /**
+     * Takes the next position to re-evaluate, moving on to the next wave once the current one is done.
+     * Must not be called while the cascade is empty.
+     */
+    public long poll() {
+        if (waveIndex == wave.size()) {
+            LongArrayList done = wave;
+            wave = nextWave;
+            nextWave = done;
+            nextWave.clear();
+            waveIndex = 0;
+            totalWaves++;
+        }
+        totalPositions++;
+        return wave.getLong(waveIndex++);
+    }
+
+    /**
+     * Removes every waiting position in a chunk, keeping the order of the rest.
+     *
+     * @return The removed positions
+     */
+    public LongArrayList removeChunk(int chunkX, int chunkZ) {
+        LongArrayList removed = new LongArrayList();
+        // Positions already taken from the current wave go first, so the wave restarts at its next position
+        wave.removeElements(0, waveIndex);
+        waveIndex = 0;
+        removeChunk(wave, chunkX, chunkZ, removed);
+        removeChunk(nextWave, chunkX, chunkZ, removed);
+        return removed;
+    }
+
+    private static void removeChunk(LongArrayList positions, int chunkX, int chunkZ, LongArrayList removed) {
+        int kept = 0;
+        for (int i = 0; i < positions.size(); i++) {
+            long pos = positions.getLong(i);
+            if (SectionPos.blockToSectionCoord(BlockPos.getX(pos)) == chunkX
+                    && SectionPos.blockToSectionCoord(BlockPos.getZ(pos)) == chunkZ) {
+                removed.add(pos);
+            } else {
+                positions.set(kept++, pos);
+            }
+        }
+        positions.size(kept);
+    }
+
+    /**
+     * Gets the number of positions waiting, in the current wave and the next.
+     */
+    public int size() {
+        return wave.size() - waveIndex + nextWave.size();
+    }
+
+    public long getTotalWaves() {
+        return totalWaves;
+    }
+
+    public long getTotalPositions() {
+        return totalPositions;
+    }
+}
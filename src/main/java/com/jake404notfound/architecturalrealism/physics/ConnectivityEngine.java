@@ -0,0 +1,542 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.ChunkPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ground connectivity for the SIMPLE physics mode, where a block only falls once nothing connects it to the ground.
+ * Player-built blocks are tracked in a union-find structure whose components are the groups of face-connected
+ * tracked blocks. Every other solid block, such as terrain, anchors the tracked blocks touching it; air, liquids
+ * and replaceable plants don't. Each component
+ * root holds the number of anchor contacts in its component, so most edits are settled without any search:
+ * <ul>
+ *   <li>A placement joins the components of its tracked neighbors, in near-constant time.</li>
+ *   <li>Removing an anchor only searches when a component it touched has no anchor contacts left.</li>
+ *   <li>Removing a tracked block searches the pieces around it, since its component may have split.</li>
+ * </ul>
+ * Searches flood fill the {@link SectionFloodFill} masks of tracked blocks kept for every section, a whole row at a time.
+ * They are bounded; a piece too large to search fully is assumed to still be connected. Union-find can't undo
+ * a union, so removed blocks stay in the structure as dead nodes until it is compacted.
+ * The tracked blocks of each chunk are saved with it through {@link ChunkSupportData} and restored when it loads
+ * again, so builds keep falling correctly after a restart. Only used on the server thread.
+ */
+public class ConnectivityEngine {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final int NO_NODE = -1;
+    // The structure is rebuilt without dead nodes once they outnumber live ones and there are at least this many
+    private static final int MIN_COMPACTION_SIZE = 1024;
+
+    private final Level level;
+    private final BlockPropertyManager blockPropertyManager;
+    private final Long2IntOpenHashMap ids = new Long2IntOpenHashMap();
+    // Tracked positions of every loaded chunk, so a chunk's nodes can be dropped when it unloads
+    private final Long2ObjectMap<LongOpenHashSet> chunkPositions = new Long2ObjectOpenHashMap<>();
+    // Tracked positions of every section as a flood fill mask
+    private final Long2ObjectMap<long[]> sectionMasks = new Long2ObjectOpenHashMap<>();
+    // Chunks whose tracked blocks changed since they were last saved
+    private final LongOpenHashSet dirtyChunks = new LongOpenHashSet();
+    private int[] parents = new int[64];
+    // Anchor contacts of each node, and of its whole component at a root
+    private byte[] contacts = new byte[64];
+    private int[] anchors = new int[64];
+    private int nodeCount;
+    private int deadCount;
+
+    // Scratch space for searches
+    private final Long2ObjectMap<long[]> visited = new Long2ObjectOpenHashMap<>();
+    private final Long2ObjectMap<long[]> reached = new Long2ObjectOpenHashMap<>();
+    private final LongArrayFIFOQueue sectionQueue = new LongArrayFIFOQueue();
+    private final IntArrayList piece = new IntArrayList();
+    private final LongArrayList pieceKeys = new LongArrayList();
+
+    /**
+     * Creates an engine that tracks nothing yet.
+     *
+     * @param level The level whose blocks are tracked
+     * @param blockPropertyManager Provides the state table that decides which blocks are solid
+     */
+    public ConnectivityEngine(Level level, BlockPropertyManager blockPropertyManager) {
+        this.level = level;
+        this.blockPropertyManager = blockPropertyManager;
+        ids.defaultReturnValue(NO_NODE);
+    }
+
+    /**
+     * Records a block change once it has taken effect.
+     * A solid block that isn't tracked yet is treated as placed by a player and starts being tracked.
+     *
+     * @param pos The changed position
+     * @param searchLimit The largest number of blocks a search may visit
+     * @param floating Receives the tracked blocks that are no longer connected to the ground
+     */
+    public void onBlockChanged(BlockPos pos, int searchLimit, List<BlockPos> floating) {
+        long key = pos.asLong();
+        int id = ids.get(key);
+
+        if (isSolid(key)) {
+            if (id == NO_NODE) {
+                place(key);
+            }
+            return;
+        }
+
+        if (id != NO_NODE) {
+            removeTracked(key, id, searchLimit, floating);
+        } else {
+            removeAnchor(key, searchLimit, floating);
+        }
+    }
+
+    /**
+     * Checks whether a block is tracked as player-built.
+     */
+    public boolean isTracked(BlockPos pos) {
+        return ids.containsKey(pos.asLong());
+    }
+
+    /**
+     * Gets the tracked blocks of a chunk, so they can be saved with it.
+     *
+     * @return The packed positions of the chunk's tracked blocks
+     */
+    public LongArrayList getTrackedBlocks(int chunkX, int chunkZ) {
+        LongOpenHashSet positions = chunkPositions.get(ChunkPos.asLong(chunkX, chunkZ));
+        return positions != null ? new LongArrayList(positions) : new LongArrayList();
+    }
+
+    /**
+     * Removes and returns the chunks whose tracked blocks changed since this was last called.
+     *
+     * @return The packed chunk positions ({@code ChunkPos.toLong()})
+     */
+    public long[] takeDirtyChunks() {
+        long[] chunks = dirtyChunks.toLongArray();
+        dirtyChunks.clear();
+        return chunks;
+    }
+
+    /**
+     * Stops tracking every block in a chunk, such as when it unloads. Its blocks count as anchors while
+     * it is gone; save them with {@link #getTrackedBlocks} first so {@link #restoreChunk} can track them again.
+     */
+    public void removeChunk(int chunkX, int chunkZ) {
+        long chunkKey = ChunkPos.asLong(chunkX, chunkZ);
+        dirtyChunks.remove(chunkKey);
+        LongOpenHashSet positions = chunkPositions.remove(chunkKey);
+        if (positions == null) return;
+
+        for (int sectionY = level.getMinSection(); sectionY < level.getMaxSection(); sectionY++) {
+            sectionMasks.remove(SectionPos.asLong(chunkX, sectionY, chunkZ));
+        }
+
+        LongIterator iterator = positions.iterator();
+        while (iterator.hasNext()) {
+            int id = ids.remove(iterator.nextLong());
+            if (id != NO_NODE) {
+                anchors[find(id)] -= contacts[id];
+                deadCount++;
+            }
+        }
+
+        // Tracked blocks across the chunk border now touch unloaded blocks, which count as anchors
+        iterator = positions.iterator();
+        while (iterator.hasNext()) {
+            long key = iterator.nextLong();
+            for (Direction direction : DIRECTIONS) {
+                int neighborId = ids.get(BlockPos.offset(key, direction));
+                if (neighborId != NO_NODE) {
+                    contacts[neighborId]++;
+                    anchors[find(neighborId)]++;
+                }
+            }
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Tracks the saved blocks of a chunk that just loaded again. Blocks that are no longer solid are skipped.
+     * The chunk is passed in, since the level may not hand it out yet while it is loading.
+     *
+     * @param chunk The chunk that loaded
+     * @param positions The packed positions saved from {@link #getTrackedBlocks}
+     */
+    public void restoreChunk(LevelChunk chunk, LongArrayList positions) {
+        // Every block is added before any contacts are counted, so the chunk's blocks don't anchor each other
+        LongOpenHashSet restored = new LongOpenHashSet();
+        for (int i = 0; i < positions.size(); i++) {
+            long key = positions.getLong(i);
+            if (!ids.containsKey(key) && isSolid(key, chunk)) {
+                allocate(key);
+                restored.add(key);
+            }
+        }
+
+        LongIterator iterator = restored.iterator();
+        while (iterator.hasNext()) {
+            long key = iterator.nextLong();
+            int id = ids.get(key);
+            int contactCount = 0;
+            for (Direction direction : DIRECTIONS) {
+                long neighbor = BlockPos.offset(key, direction);
+                int neighborId = ids.get(neighbor);
+                if (neighborId == NO_NODE) {
+                    if (isSolid(neighbor, chunk)) {
+                        contactCount++;
+                    }
+                } else if (!restored.contains(neighbor)) {
+                    // The neighbor counted this block as an anchor while its chunk was unloaded
+                    contacts[neighborId]--;
+                    anchors[find(neighborId)]--;
+                }
+            }
+            contacts[id] = (byte) contactCount;
+            anchors[id] = contactCount;
+        }
+
+        iterator = restored.iterator();
+        while (iterator.hasNext()) {
+            long key = iterator.nextLong();
+            int id = ids.get(key);
+            for (Direction direction : DIRECTIONS) {
+                int neighborId = ids.get(BlockPos.offset(key, direction));
+                if (neighborId != NO_NODE) {
+                    union(id, neighborId);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of tracked blocks.
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    public void clear() {
+        ids.clear();
+        chunkPositions.clear();
+        sectionMasks.clear();
+        dirtyChunks.clear();
+        nodeCount = 0;
+        deadCount = 0;
+    }
+
+    private void place(long key) {
+        int id = allocate(key);
+        int contactCount = countContacts(key);
+        contacts[id] = (byte) contactCount;
+        anchors[id] = contactCount;
+
+        for (Direction direction : DIRECTIONS) {
+            int neighborId = ids.get(BlockPos.offset(key, direction));
+            if (neighborId != NO_NODE) {
+                union(id, neighborId);
+            }
+        }
+    }
+
+    // Counts the untracked solid blocks touching a block
+    private int countContacts(long key) {
+        int contactCount = 0;
+        for (Direction direction : DIRECTIONS) {
+            long neighbor = BlockPos.offset(key, direction);
+            if (!ids.containsKey(neighbor) && isSolid(neighbor)) {
+                contactCount++;
+            }
+        }
+        return contactCount;
+    }
+
+    private void removeAnchor(long key, int searchLimit, List<BlockPos> floating) {
+        // Settle every lost contact first, so searches below count the anchors that are really left
+        boolean searchNeeded = false;
+        for (Direction direction : DIRECTIONS) {
+            int neighborId = ids.get(BlockPos.offset(key, direction));
+            if (neighborId == NO_NODE) continue;
+
+            contacts[neighborId]--;
+            searchNeeded |= --anchors[find(neighborId)] <= 0;
+        }
+        if (!searchNeeded) return;
+
+        // Only a component left without anchor contacts can have come loose
+        visited.clear();
+        for (Direction direction : DIRECTIONS) {
+            long neighbor = BlockPos.offset(key, direction);
+            int neighborId = ids.get(neighbor);
+            if (neighborId != NO_NODE && !isVisited(neighbor) && anchors[find(neighborId)] <= 0) {
+                searchPiece(neighbor, searchLimit, floating);
+            }
+        }
+    }
+
+    private void removeTracked(long key, int id, int searchLimit, List<BlockPos> floating) {
+        anchors[find(id)] -= contacts[id];
+        kill(key);
+
+        int trackedNeighbors = 0;
+        long lastNeighbor = 0;
+        for (Direction direction : DIRECTIONS) {
+            long neighbor = BlockPos.offset(key, direction);
+            if (ids.containsKey(neighbor)) {
+                trackedNeighbors++;
+                lastNeighbor = neighbor;
+            }
+        }
+
+        visited.clear();
+        if (trackedNeighbors == 1) {
+            // A block with a single tracked neighbor can't split its component
+            if (anchors[find(ids.get(lastNeighbor))] <= 0) {
+                searchPiece(lastNeighbor, searchLimit, floating);
+            }
+        } else if (trackedNeighbors > 1) {
+            for (Direction direction : DIRECTIONS) {
+                long neighbor = BlockPos.offset(key, direction);
+                if (ids.containsKey(neighbor) && !isVisited(neighbor)) {
+                    searchPiece(neighbor, searchLimit, floating);
+                }
+            }
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Searches the tracked blocks connected to a start block. A fully searched piece becomes its own component
+     * with a fresh anchor count; if it has no anchor contacts at all, its blocks are floating and stop being tracked.
+     * Blocks searched are added to {@link #visited}, which is only cleared by the caller.
+     */
+    private void searchPiece(long start, int searchLimit, List<BlockPos> floating) {
+        reached.clear();
+        sectionQueue.clear();
+        long startSection = sectionKey(start);
+        SectionFloodFill.set(reachedMask(startSection), sectionIndex(start));
+        sectionQueue.enqueue(startSection);
+
+        // Fill one section at a time, queueing a neighbor again whenever its face gains reached blocks
+        int size = 0;
+        while (!sectionQueue.isEmpty()) {
+            long section = sectionQueue.dequeueLong();
+            long[] mask = sectionMasks.get(section);
+            long[] sectionReached = reached.get(section);
+            int before = SectionFloodFill.count(sectionReached);
+            SectionFloodFill.fill(mask, sectionReached);
+            size += SectionFloodFill.count(sectionReached) - before;
+
+            // Too large to settle here; leave it as it is rather than risk dropping a connected structure
+            if (size > searchLimit) {
+                markVisited();
+                return;
+            }
+
+            for (Direction direction : DIRECTIONS) {
+                long neighbor = SectionPos.offset(section, direction);
+                long[] neighborMask = sectionMasks.get(neighbor);
+                if (neighborMask != null && SectionFloodFill.spread(sectionReached, direction, neighborMask, reachedMask(neighbor))) {
+                    sectionQueue.enqueue(neighbor);
+                }
+            }
+        }
+        markVisited();
+
+        piece.clear();
+        pieceKeys.clear();
+        int anchorCount = 0;
+        for (Long2ObjectMap.Entry<long[]> entry : reached.long2ObjectEntrySet()) {
+            long section = entry.getLongKey();
+            long[] bits = entry.getValue();
+            int minX = SectionPos.sectionToBlockCoord(SectionPos.x(section));
+            int minY = SectionPos.sectionToBlockCoord(SectionPos.y(section));
+            int minZ = SectionPos.sectionToBlockCoord(SectionPos.z(section));
+            for (int word = 0; word < SectionFloodFill.WORDS; word++) {
+                for (long remaining = bits[word]; remaining != 0; remaining &= remaining - 1) {
+                    int index = (word << 6) | Long.numberOfTrailingZeros(remaining);
+                    long key = BlockPos.asLong(minX + (index & 15), minY + (index >>> 8), minZ + ((index >>> 4) & 15));
+                    int id = ids.get(key);
+                    piece.add(id);
+                    pieceKeys.add(key);
+                    contacts[id] = (byte) countContacts(key);
+                    anchorCount += contacts[id];
+                }
+            }
+        }
+
+        // Counts can drift when blocks change without an event, or when a block that never anchored anything
+        // is removed; the contacts recounted by the search are the ones to trust
+        int root = piece.getInt(0);
+        for (int i = 0; i < piece.size(); i++) {
+            parents[piece.getInt(i)] = root;
+        }
+        anchors[root] = anchorCount;
+
+        if (anchorCount <= 0) {
+            for (int i = 0; i < pieceKeys.size(); i++) {
+                floating.add(BlockPos.of(pieceKeys.getLong(i)));
+                kill(pieceKeys.getLong(i));
+            }
+        }
+    }
+
+    private long[] reachedMask(long section) {
+        long[] mask = reached.get(section);
+        if (mask == null) {
+            mask = new long[SectionFloodFill.WORDS];
+            reached.put(section, mask);
+        }
+        return mask;
+    }
+
+    // Adds the blocks reached by the last search to the visited ones
+    private void markVisited() {
+        for (Long2ObjectMap.Entry<long[]> entry : reached.long2ObjectEntrySet()) {
+            long[] bits = entry.getValue();
+            long[] visitedBits = visited.get(entry.getLongKey());
+            if (visitedBits == null) {
+                visited.put(entry.getLongKey(), bits.clone());
+                continue;
+            }
+            for (int word = 0; word < SectionFloodFill.WORDS; word++) {
+                visitedBits[word] |= bits[word];
+            }
+        }
+    }
+
+    private boolean isVisited(long key) {
+        long[] bits = visited.get(sectionKey(key));
+        return bits != null && SectionFloodFill.get(bits, sectionIndex(key));
+    }
+
+    private int find(int id) {
+        while (parents[id] != id) {
+            // Path halving keeps later lookups short
+            parents[id] = parents[parents[id]];
+            id = parents[id];
+        }
+        return id;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) return;
+        parents[rootB] = rootA;
+        anchors[rootA] += anchors[rootB];
+    }
+
+    private int allocate(long key) {
+        if (nodeCount == parents.length) {
+            int capacity = nodeCount * 2;
+            parents = Arrays.copyOf(parents, capacity);
+            contacts = Arrays.copyOf(contacts, capacity);
+            anchors = Arrays.copyOf(anchors, capacity);
+        }
+        int id = nodeCount++;
+        parents[id] = id;
+        ids.put(key, id);
+        dirtyChunks.add(chunkKey(key));
+        chunkPositions.computeIfAbsent(chunkKey(key), k -> new LongOpenHashSet()).add(key);
+        SectionFloodFill.set(sectionMasks.computeIfAbsent(sectionKey(key), k -> new long[SectionFloodFill.WORDS]), sectionIndex(key));
+        return id;
+    }
+
+    // Stops tracking a position; its node stays in the structure until the next compaction
+    private void kill(long key) {
+        if (ids.remove(key) == NO_NODE) return;
+        deadCount++;
+
+        long chunkKey = chunkKey(key);
+        dirtyChunks.add(chunkKey);
+        LongOpenHashSet positions = chunkPositions.get(chunkKey);
+        if (positions != null && positions.remove(key) && positions.isEmpty()) {
+            chunkPositions.remove(chunkKey);
+        }
+
+        long sectionKey = sectionKey(key);
+        long[] mask = sectionMasks.get(sectionKey);
+        if (mask != null) {
+            SectionFloodFill.clear(mask, sectionIndex(key));
+            if (SectionFloodFill.isEmpty(mask)) {
+                sectionMasks.remove(sectionKey);
+            }
+        }
+    }
+
+    // Rebuilds the structure from the live nodes once most nodes are dead
+    private void compactIfNeeded() {
+        if (deadCount < MIN_COMPACTION_SIZE || deadCount < ids.size()) return;
+
+        long[] keys = ids.keySet().toLongArray();
+        byte[] oldContacts = contacts;
+        int[] oldIds = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            oldIds[i] = ids.get(keys[i]);
+        }
+
+        int capacity = Math.max(64, keys.length * 2);
+        parents = new int[capacity];
+        contacts = new byte[capacity];
+        anchors = new int[capacity];
+        nodeCount = keys.length;
+        deadCount = 0;
+        for (int id = 0; id < keys.length; id++) {
+            parents[id] = id;
+            contacts[id] = oldContacts[oldIds[id]];
+            anchors[id] = contacts[id];
+            ids.put(keys[id], id);
+        }
+        for (int id = 0; id < keys.length; id++) {
+            for (Direction direction : DIRECTIONS) {
+                int neighborId = ids.get(BlockPos.offset(keys[id], direction));
+                if (neighborId != NO_NODE) {
+                    union(id, neighborId);
+                }
+            }
+        }
+    }
+
+    // Blocks in unloaded chunks count as solid, so nothing falls because its anchor isn't loaded
+    private boolean isSolid(long key) {
+        int x = BlockPos.getX(key);
+        int z = BlockPos.getZ(key);
+        LevelChunk chunk = level.getChunkSource().getChunkNow(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(z));
+        return chunk == null || blockPropertyManager.getStateTable().isSolid(Block.getId(chunk.getBlockState(BlockPos.of(key))));
+    }
+
+    private boolean isSolid(long key, LevelChunk chunk) {
+        if (chunkKey(key) != chunk.getPos().toLong()) {
+            return isSolid(key);
+        }
+        return blockPropertyManager.getStateTable().isSolid(Block.getId(chunk.getBlockState(BlockPos.of(key))));
+    }
+
+    private static long sectionKey(long key) {
+        return SectionPos.asLong(SectionPos.blockToSectionCoord(BlockPos.getX(key)),
+            SectionPos.blockToSectionCoord(BlockPos.getY(key)), SectionPos.blockToSectionCoord(BlockPos.getZ(key)));
+    }
+
+    private static int sectionIndex(long key) {
+        return SectionFloodFill.index(SectionPos.sectionRelative(BlockPos.getX(key)),
+            SectionPos.sectionRelative(BlockPos.getY(key)), SectionPos.sectionRelative(BlockPos.getZ(key)));
+    }
+
+    private static long chunkKey(long key) {
+        return ChunkPos.asLong(SectionPos.blockToSectionCoord(BlockPos.getX(key)), SectionPos.blockToSectionCoord(BlockPos.getZ(key)));
+    }
+}
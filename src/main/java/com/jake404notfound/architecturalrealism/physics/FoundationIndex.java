@@ -0,0 +1,169 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+/**
+ * Which blocks of a level count as foundations, kept as one bit per block for every chunk section
+ * a solve has asked about. A section's bits are computed the first time it is queried, by walking each of its
+ * columns upward from {@code foundationDepth} blocks below it while tracking the length of the solid run
+ * and the distance to the nearest unbreakable block in it, the same rules {@code identifyFoundations} applies.
+ * <p>
+ * A block change can only affect the foundation status of the blocks at most {@code foundationDepth}
+ * above it in its own column, so a change just marks that column stale in the sections it reaches.
+ * Stale columns are recomputed the next time they are queried, once the change has taken effect.
+ * Only used on the server thread.
+ */
+public class FoundationIndex {
+    private static final int WORDS_PER_SECTION = 4096 / 64;
+    private static final int COLUMN_WORDS = 256 / 64;
+
+    private final Level level;
+    private final BlockPropertyManager blockPropertyManager;
+    private final int depth;
+    private final Long2ObjectMap<Section> sections = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * @param level The level to index
+     * @param blockPropertyManager Tells which blocks are unbreakable
+     * @param depth The number of solid blocks below a block that make it a foundation
+     */
+    public FoundationIndex(Level level, BlockPropertyManager blockPropertyManager, int depth) {
+        this.level = level;
+        this.blockPropertyManager = blockPropertyManager;
+        this.depth = depth;
+    }
+
+    /**
+     * Checks whether the block at a position is a foundation.
+     * Positions in unloaded chunks are never foundations.
+     */
+    public boolean isFoundation(BlockPos pos) {
+        return isFoundation(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public boolean isFoundation(int x, int y, int z) {
+        long sectionKey = SectionPos.asLong(SectionPos.blockToSectionCoord(x), SectionPos.blockToSectionCoord(y),
+            SectionPos.blockToSectionCoord(z));
+        Section section = sections.get(sectionKey);
+        if (section == null) {
+            section = buildSection(sectionKey);
+            if (section == null) return false;
+        }
+
+        int column = (SectionPos.sectionRelative(z) << 4) | SectionPos.sectionRelative(x);
+        if ((section.staleColumns[column >>> 6] & (1L << column)) != 0) {
+            LevelChunk chunk = level.getChunkSource().getChunkNow(SectionPos.x(sectionKey), SectionPos.z(sectionKey));
+            if (chunk == null) return false;
+            computeColumn(section, chunk, SectionPos.sectionToBlockCoord(SectionPos.y(sectionKey)), x, z);
+            section.staleColumns[column >>> 6] &= ~(1L << column);
+        }
+
+        int index = (SectionPos.sectionRelative(y) << 8) | column;
+        return (section.foundations[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Marks the column of a changed block stale in every indexed section whose foundations it can affect.
+     */
+    public void onBlockChanged(BlockPos pos) {
+        if (sections.isEmpty()) return;
+
+        int sectionX = SectionPos.blockToSectionCoord(pos.getX());
+        int sectionZ = SectionPos.blockToSectionCoord(pos.getZ());
+        int column = (SectionPos.sectionRelative(pos.getZ()) << 4) | SectionPos.sectionRelative(pos.getX());
+        int maxSectionY = SectionPos.blockToSectionCoord(pos.getY() + depth);
+        for (int sectionY = SectionPos.blockToSectionCoord(pos.getY()); sectionY <= maxSectionY; sectionY++) {
+            Section section = sections.get(SectionPos.asLong(sectionX, sectionY, sectionZ));
+            if (section != null) {
+                section.staleColumns[column >>> 6] |= 1L << column;
+            }
+        }
+    }
+
+    /**
+     * Forgets every section of a chunk, such as when it unloads.
+     */
+    public void removeChunk(int chunkX, int chunkZ) {
+        if (sections.isEmpty()) return;
+
+        for (int sectionY = level.getMinSection(); sectionY < level.getMaxSection(); sectionY++) {
+            sections.remove(SectionPos.asLong(chunkX, sectionY, chunkZ));
+        }
+    }
+
+    /**
+     * Gets the number of indexed sections.
+     */
+    public int getSectionCount() {
+        return sections.size();
+    }
+
+    private Section buildSection(long sectionKey) {
+        LevelChunk chunk = level.getChunkSource().getChunkNow(SectionPos.x(sectionKey), SectionPos.z(sectionKey));
+        if (chunk == null) return null;
+
+        Section section = new Section();
+        int minX = SectionPos.sectionToBlockCoord(SectionPos.x(sectionKey));
+        int minY = SectionPos.sectionToBlockCoord(SectionPos.y(sectionKey));
+        int minZ = SectionPos.sectionToBlockCoord(SectionPos.z(sectionKey));
+        for (int z = 0; z < 16; z++) {
+            for (int x = 0; x < 16; x++) {
+                computeColumn(section, chunk, minY, minX + x, minZ + z);
+            }
+        }
+        sections.put(sectionKey, section);
+        return section;
+    }
+
+    // Recomputes the foundation bits of one column of a section
+    private void computeColumn(Section section, LevelChunk chunk, int minY, int x, int z) {
+        BlockStateTable table = blockPropertyManager.getStateTable();
+        int minBuildHeight = level.getMinBuildHeight();
+        int column = (SectionPos.sectionRelative(z) << 4) | SectionPos.sectionRelative(x);
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        int solidRun = 0;
+        int unbreakableDistance = Integer.MAX_VALUE;
+
+        for (int y = minY - depth; y < minY + 16; y++) {
+            if (y < minBuildHeight) continue;
+
+            int stateId = Block.getId(chunk.getBlockState(pos.set(x, y, z)));
+            boolean solid = !table.isAir(stateId);
+            boolean unbreakable = table.isFoundationMaterial(stateId);
+
+            if (y >= minY) {
+                int index = ((y - minY) << 8) | column;
+                // Bedrock is always a foundation, ground level blocks are foundations, and so are
+                // blocks standing on foundationDepth solid blocks or on an unbreakable block
+                boolean foundation = solid && (unbreakable || y == minBuildHeight
+                    || solidRun >= depth || unbreakableDistance <= depth);
+                if (foundation) {
+                    section.foundations[index >>> 6] |= 1L << index;
+                } else {
+                    section.foundations[index >>> 6] &= ~(1L << index);
+                }
+            }
+
+            if (solid) {
+                solidRun++;
+                unbreakableDistance = unbreakable ? 1
+                    : unbreakableDistance == Integer.MAX_VALUE ? Integer.MAX_VALUE : unbreakableDistance + 1;
+            } else {
+                solidRun = 0;
+                unbreakableDistance = Integer.MAX_VALUE;
+            }
+        }
+    }
+
+    // Foundation bits of one section, indexed (y << 8 | z << 4 | x), and its columns changed since
+    private static class Section {
+        final long[] foundations = new long[WORDS_PER_SECTION];
+        final long[] staleColumns = new long[COLUMN_WORDS];
+    }
+}
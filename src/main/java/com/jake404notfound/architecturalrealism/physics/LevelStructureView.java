@@ -0,0 +1,38 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+
+/**
+ * A {@link StructureView} that reads straight from a live level.
+ * Only chunks that are already loaded are read; blocks in any other chunk read as air, so a solve never
+ * makes the server load chunks. Only safe to use on the server thread.
+ */
+public class LevelStructureView implements StructureView {
+    private final Level level;
+
+    /**
+     * Creates a view of a level.
+     *
+     * @param level The level to read from
+     */
+    public LevelStructureView(Level level) {
+        this.level = level;
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        LevelChunk chunk = level.getChunkSource().getChunkNow(SectionPos.blockToSectionCoord(pos.getX()),
+            SectionPos.blockToSectionCoord(pos.getZ()));
+        return chunk != null ? chunk.getBlockState(pos) : Blocks.AIR.defaultBlockState();
+    }
+
+    @Override
+    public int getMinBuildHeight() {
+        return level.getMinBuildHeight();
+    }
+}
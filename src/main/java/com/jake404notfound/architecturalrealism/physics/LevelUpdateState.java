@@ -0,0 +1,112 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.world.level.Level;
+
+import java.util.List;
+
+/**
+ * The structural update state one level owns: its queue of pending tasks, its collapse frontier, its share of the tick
+ * budget, the edit versions of its chunk sections and statistics about the work done for it.
+ * Each level's state is processed during that level's own tick. Only used on the server thread.
+ */
+public class LevelUpdateState {
+    final UpdateQueue queue;
+    final TickBudget budget = new TickBudget();
+    // Blocks that collapsed and whose surroundings are still to be re-checked
+    final CollapseCascade cascade = new CollapseCascade();
+    // Edit version of each chunk section, bumped on every block change so stale solves can be recognised
+    final Long2IntOpenHashMap sectionVersions = new Long2IntOpenHashMap();
+    // Tasks whose region reaches into an unloaded chunk, by the packed position of the chunk they wait for
+    final Long2ObjectMap<List<StructuralUpdateTask>> parkedTasks = new Long2ObjectOpenHashMap<>();
+
+    private int tasksLastTick;
+    private long nanosLastTick;
+    private long totalTasks;
+    private long skippedTicks;
+
+    LevelUpdateState(Level level) {
+        this.queue = new UpdateQueue(level);
+    }
+
+    /**
+     * Records the work done for the level during one tick.
+     *
+     * @param tasks The number of tasks processed
+     * @param elapsedNanos The time spent on them
+     */
+    void recordTick(int tasks, long elapsedNanos) {
+        tasksLastTick = tasks;
+        nanosLastTick = elapsedNanos;
+        totalTasks += tasks;
+    }
+
+    /**
+     * Records a tick skipped because the level had no loaded chunks.
+     */
+    void recordSkippedTick() {
+        tasksLastTick = 0;
+        nanosLastTick = 0;
+        skippedTicks++;
+    }
+
+    /**
+     * Gets the number of tasks waiting in the level's queue.
+     */
+    public int getQueuedTasks() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of tasks waiting for a chunk their region reaches into to load.
+     */
+    public int getParkedTasks() {
+        int parked = 0;
+        for (List<StructuralUpdateTask> tasks : parkedTasks.values()) {
+            parked += tasks.size();
+        }
+        return parked;
+    }
+
+    /**
+     * Gets the number of collapsed blocks whose surroundings are waiting to be re-checked.
+     */
+    public int getCascadePositions() {
+        return cascade.size();
+    }
+
+    /**
+     * Gets the number of collapse waves re-checked so far.
+     */
+    public long getTotalCascadeWaves() {
+        return cascade.getTotalWaves();
+    }
+
+    /**
+     * Gets the budget the level was given on its last processed tick.
+     */
+    public long getBudgetNanos() {
+        return budget.getBudget();
+    }
+
+    public int getTasksLastTick() {
+        return tasksLastTick;
+    }
+
+    public long getNanosLastTick() {
+        return nanosLastTick;
+    }
+
+    public long getTotalTasks() {
+        return totalTasks;
+    }
+
+    /**
+     * Gets the number of ticks skipped because the level had no loaded chunks.
+     */
+    public long getSkippedTicks() {
+        return skippedTicks;
+    }
+}
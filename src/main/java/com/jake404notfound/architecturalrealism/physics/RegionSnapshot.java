@@ -0,0 +1,140 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.state.BlockState;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
+import net.minecraft.world.level.chunk.PalettedContainer;
+
+import java.util.List;
+
+/**
+ * An immutable copy of the chunk sections covering a structural update region.
+ * Snapshots are captured on the server thread and can then be read safely from solver worker threads.
+ * Each snapshot remembers the edit version of every section it copied, so results computed
+ * against it can be recognised as stale once any of those sections has changed.
+ */
+public class RegionSnapshot implements StructureView {
+    private static final BlockState AIR = Blocks.AIR.defaultBlockState();
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Long2ObjectMap<PalettedContainer<BlockState>> sections;
+    private final Long2IntMap sectionVersions;
+    private final int minBuildHeight;
+
+    private RegionSnapshot(Long2ObjectMap<PalettedContainer<BlockState>> sections, Long2IntMap sectionVersions,
+                           int minBuildHeight) {
+        this.sections = sections;
+        this.sectionVersions = sectionVersions;
+        this.minBuildHeight = minBuildHeight;
+    }
+
+    /**
+     * Copies every loaded chunk section that intersects the given box.
+     * Must be called on the server thread.
+     *
+     * @param level The level to copy from
+     * @param min The minimum corner of the box (inclusive)
+     * @param max The maximum corner of the box (inclusive)
+     * @param versions The current edit version of each section in the level
+     * @return A snapshot of the box
+     */
+    public static RegionSnapshot capture(Level level, BlockPos min, BlockPos max, Long2IntMap versions) {
+        Long2ObjectMap<PalettedContainer<BlockState>> sections = new Long2ObjectOpenHashMap<>();
+        Long2IntMap sectionVersions = new Long2IntOpenHashMap();
+
+        int minSectionY = Math.max(SectionPos.blockToSectionCoord(min.getY()), level.getMinSection());
+        int maxSectionY = Math.min(SectionPos.blockToSectionCoord(max.getY()), level.getMaxSection() - 1);
+
+        for (int sx = SectionPos.blockToSectionCoord(min.getX()); sx <= SectionPos.blockToSectionCoord(max.getX()); sx++) {
+            for (int sz = SectionPos.blockToSectionCoord(min.getZ()); sz <= SectionPos.blockToSectionCoord(max.getZ()); sz++) {
+                // Chunks that aren't loaded are never loaded for a snapshot; their blocks read as air
+                LevelChunk chunk = level.getChunkSource().getChunkNow(sx, sz);
+                for (int sy = minSectionY; sy <= maxSectionY; sy++) {
+                    long sectionKey = SectionPos.asLong(sx, sy, sz);
+                    sectionVersions.put(sectionKey, versions.get(sectionKey));
+
+                    if (chunk == null) continue;
+
+                    // Air-only sections are not copied; reads from them fall through to air
+                    LevelChunkSection section = chunk.getSection(level.getSectionIndexFromSectionY(sy));
+                    if (!section.hasOnlyAir()) {
+                        sections.put(sectionKey, section.getStates().copy());
+                    }
+                }
+            }
+        }
+
+        return new RegionSnapshot(sections, sectionVersions, level.getMinBuildHeight());
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        PalettedContainer<BlockState> states = sections.get(SectionPos.asLong(
+            SectionPos.blockToSectionCoord(pos.getX()),
+            SectionPos.blockToSectionCoord(pos.getY()),
+            SectionPos.blockToSectionCoord(pos.getZ())));
+        if (states == null) {
+            return AIR;
+        }
+        return states.get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+    }
+
+    @Override
+    public int getMinBuildHeight() {
+        return minBuildHeight;
+    }
+
+    /**
+     * Checks whether any section copied into this snapshot has been edited since it was captured.
+     *
+     * @param versions The current edit version of each section in the level
+     * @return true if results computed from this snapshot should be discarded
+     */
+    public boolean isStale(Long2IntMap versions) {
+        for (Long2IntMap.Entry entry : sectionVersions.long2IntEntrySet()) {
+            if (versions.get(entry.getLongKey()) != entry.getIntValue()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the live level still holds the blocks this snapshot copied at and next to the given positions.
+     * Unlike {@link #isStale}, this also catches edits that never bumped a section version, such as blocks set
+     * directly by commands or other mods. Must be called on the server thread.
+     *
+     * @param level The level the snapshot was captured from
+     * @param positions The positions to check, along with their neighbors
+     * @return true if none of those blocks has changed
+     */
+    public boolean matches(Level level, List<BlockPos> positions) {
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (BlockPos center : positions) {
+            if (!matches(level, center)) return false;
+            for (Direction direction : DIRECTIONS) {
+                if (!matches(level, pos.setWithOffset(center, direction))) return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matches(Level level, BlockPos pos) {
+        // Blocks outside the snapshot were never read by the solve
+        if (!sectionVersions.containsKey(SectionPos.blockToSection(pos.asLong()))) return true;
+
+        LevelChunk chunk = level.getChunkSource().getChunkNow(SectionPos.blockToSectionCoord(pos.getX()),
+            SectionPos.blockToSectionCoord(pos.getZ()));
+        BlockState live = chunk != null ? chunk.getBlockState(pos) : AIR;
+        return live == getBlockState(pos);
+    }
+}
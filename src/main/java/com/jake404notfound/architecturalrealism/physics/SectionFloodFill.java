@@ -0,0 +1,174 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import net.minecraft.core.Direction;
+
+/**
+ * Word-parallel flood fill over chunk sections stored as 4096-bit masks of 64 longs, one bit per block, indexed
+ * (y << 8 | z << 4 | x). Each long holds four 16-bit rows along X, so a fill step moves whole rows at once
+ * instead of visiting one position at a time: runs along X are filled with shifts inside each row,
+ * Z neighbors are 16 bits away and Y neighbors four words away.
+ * Sections are filled one at a time; {@link #spread} carries a filled section's faces into its neighbors.
+ */
+public final class SectionFloodFill {
+    /** The number of longs in a section mask. */
+    public static final int WORDS = 4096 / 64;
+
+    // The first and the last bit of every 16-bit row in a word
+    private static final long ROW_LOW = 0x0001000100010001L;
+    private static final long ROW_HIGH = 0x8000800080008000L;
+
+    private SectionFloodFill() {
+    }
+
+    /**
+     * Gets the bit index of a position inside a section.
+     */
+    public static int index(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+
+    public static boolean get(long[] mask, int index) {
+        return (mask[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public static void set(long[] mask, int index) {
+        mask[index >>> 6] |= 1L << index;
+    }
+
+    public static void clear(long[] mask, int index) {
+        mask[index >>> 6] &= ~(1L << index);
+    }
+
+    public static boolean isEmpty(long[] mask) {
+        for (long word : mask) {
+            if (word != 0) return false;
+        }
+        return true;
+    }
+
+    public static int count(long[] mask) {
+        int count = 0;
+        for (long word : mask) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Grows the reached bits of a section through every face-connected set bit of its mask.
+     * Reached bits must be a subset of the mask.
+     *
+     * @param mask The bits that can be reached
+     * @param reached The bits reached so far, grown in place
+     * @return Whether any bit was added
+     */
+    public static boolean fill(long[] mask, long[] reached) {
+        boolean grew = false;
+        // Sweeps alternate between rising and falling words, so chains running either way settle in a few passes
+        for (int pass = 0; ; pass++) {
+            boolean changed = false;
+            for (int i = 0; i < WORDS; i++) {
+                int word = (pass & 1) == 0 ? i : WORDS - 1 - i;
+                long bits = mask[word];
+                if (bits == 0) continue;
+
+                long seeds = reached[word];
+                if ((word & 3) != 0) seeds |= reached[word - 1] >>> 48;
+                if ((word & 3) != 3) seeds |= reached[word + 1] << 48;
+                if (word >= 4) seeds |= reached[word - 4];
+                if (word < WORDS - 4) seeds |= reached[word + 4];
+                seeds &= bits;
+                if (seeds == 0) continue;
+
+                long filled = fillWord(bits, seeds);
+                if (filled != reached[word]) {
+                    reached[word] = filled;
+                    changed = true;
+                }
+            }
+            if (!changed) return grew;
+            grew = true;
+        }
+    }
+
+    /**
+     * Seeds a neighboring section with the reached bits on one face of a section.
+     *
+     * @param reached The reached bits of the section
+     * @param direction The face to spread through
+     * @param neighborMask The mask of the section on the other side of that face
+     * @param neighborReached The reached bits of that section, grown in place
+     * @return Whether any bit was added to the neighbor
+     */
+    public static boolean spread(long[] reached, Direction direction, long[] neighborMask, long[] neighborReached) {
+        boolean grew = false;
+        switch (direction) {
+            case DOWN, UP -> {
+                int from = direction == Direction.UP ? WORDS - 4 : 0;
+                int to = WORDS - 4 - from;
+                for (int i = 0; i < 4; i++) {
+                    grew |= seed(neighborReached, to + i, reached[from + i] & neighborMask[to + i]);
+                }
+            }
+            case NORTH, SOUTH -> {
+                boolean south = direction == Direction.SOUTH;
+                for (int y = 0; y < 16; y++) {
+                    int from = (y << 2) | (south ? 3 : 0);
+                    int to = (y << 2) | (south ? 0 : 3);
+                    long row = south ? reached[from] >>> 48 : reached[from] << 48;
+                    grew |= seed(neighborReached, to, row & neighborMask[to]);
+                }
+            }
+            case WEST, EAST -> {
+                boolean east = direction == Direction.EAST;
+                for (int word = 0; word < WORDS; word++) {
+                    long column = east ? (reached[word] & ROW_HIGH) >>> 15 : (reached[word] & ROW_LOW) << 15;
+                    grew |= seed(neighborReached, word, column & neighborMask[word]);
+                }
+            }
+        }
+        return grew;
+    }
+
+    private static boolean seed(long[] reached, int word, long bits) {
+        if ((bits & ~reached[word]) == 0) return false;
+        reached[word] |= bits;
+        return true;
+    }
+
+    // Fills one word: whole runs along X, then across its four Z rows, until nothing changes
+    private static long fillWord(long mask, long seeds) {
+        while (true) {
+            long filled = fillRows(mask, seeds);
+            long across = ((filled << 16) | (filled >>> 16)) & mask & ~filled;
+            if (across == 0) return filled;
+            seeds = filled | across;
+        }
+    }
+
+    // Occluded fill along X in both directions. A row's first bit never takes a bit from below it,
+    // and its last bit never passes one on, so nothing crosses into the next row
+    private static long fillRows(long mask, long seeds) {
+        long up = seeds;
+        long open = mask & ~ROW_LOW;
+        up |= open & (up << 1);
+        open &= open << 1;
+        up |= open & (up << 2);
+        open &= open << 2;
+        up |= open & (up << 4);
+        open &= open << 4;
+        up |= open & (up << 8);
+
+        long down = seeds;
+        open = mask & ~ROW_HIGH;
+        down |= open & (down >>> 1);
+        open &= open >>> 1;
+        down |= open & (down >>> 2);
+        open &= open >>> 2;
+        down |= open & (down >>> 4);
+        open &= open >>> 4;
+        down |= open & (down >>> 8);
+
+        return up | down;
+    }
+}
@@ -2,38 +2,112 @@ package com.jake404notfound.architecturalrealism.physics;
 
 import com.jake404notfound.architecturalrealism.ArchitecturalRealism;
 import com.jake404notfound.architecturalrealism.config.ARConfig;
+import com.jake404notfound.architecturalrealism.registry.ARAttachments;
 import net.minecraft.core.BlockPos;
 import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerLevel;
 import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.ChunkPos;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.LevelAccessor;
 import net.minecraft.world.level.block.Block;
+import net.minecraft.world.level.block.piston.PistonStructureResolver;
 import net.minecraft.world.level.block.state.BlockState;
-import net.minecraft.world.entity.item.FallingBlockEntity;
+import net.minecraft.world.level.chunk.LevelChunk;
+import net.minecraft.world.level.chunk.LevelChunkSection;
 import net.neoforged.neoforge.event.level.BlockEvent;
+import net.neoforged.neoforge.event.level.ExplosionEvent;
+import net.neoforged.neoforge.event.level.LevelEvent;
+import net.neoforged.neoforge.event.level.PistonEvent;
+import net.neoforged.neoforge.event.server.ServerStoppingEvent;
+import net.neoforged.bus.api.EventPriority;
 import net.neoforged.bus.api.SubscribeEvent;
 import net.neoforged.fml.common.EventBusSubscriber;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
+import javax.annotation.Nullable;
 import java.util.*;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @EventBusSubscriber(modid = ArchitecturalRealism.MOD_ID)
 public class StructuralIntegrityManager {
     
     private final BlockPropertyManager blockPropertyManager;
-    private final Queue<StructuralUpdateTask> updateQueue;
-    private final Map<Level, Set<BlockPos>> processedBlocks;
-    private final Map<Level, Map<BlockPos, Double>> supportCache;
-    private int maxCacheSize;
+    private final Map<Level, LevelUpdateState> levelStates;
+    // Region solves in progress on the server thread, continued each tick until they finish
+    private final Map<Level, ActiveSolve> activeSolves;
+    private final SupportCache supportCache;
+    private final Map<Level, FoundationIndex> foundationIndexes;
+    // Ground connectivity of player-built blocks, used instead of support in SIMPLE mode
+    private final Map<Level, ConnectivityEngine> connectivityEngines;
+    private final Queue<SolveResult> completedSolves;
+    private final Queue<VoxelGrid> gridPool;
+    private final AtomicInteger solvesInFlight;
+    // Scratch collections for incremental updates, only touched on the server thread
+    private final LongOpenHashSet resetBlocks;
+    private final LongArrayList resetOrder;
+    private final LongArrayFIFOQueue fieldQueue;
+    private ExecutorService solverExecutor;
+    // Shared by async solves large enough to be split into section tiles
+    private ForkJoinPool tilePool;
+    // Stamped on saved support data; changes whenever block properties or solver settings do, so saved data
+    // with another version is discarded instead of restored
+    private int fieldVersion;
+    private volatile boolean configChanged;
+    // Budget inputs for this tick, shared out between the levels that have work
+    private long tickBudgetNanos;
+    private long averageTickNanos;
+    private long nanosPerTick;
+    private int busyLevels;
+    
+    // Support value given to foundation blocks, and their distance from the nearest foundation
+    private static final float MAX_SUPPORT = 100.0f;
+    private static final short FOUNDATION_DISTANCE = 0;
+    
+    // Fraction of support kept across each block, so support always fades with distance
+    private static final double SUPPORT_DECAY = 0.9;
+    private static final double STABILITY_THRESHOLD = 10.0;
+    
+    // Ticks a piston takes to finish moving its blocks into place
+    private static final int PISTON_SETTLE_TICKS = 3;
+    
+    // Queue steps between checks of the tick budget while propagating support on the server thread
+    private static final int PROPAGATION_STEPS_PER_CHECK = 4096;
+    
+    // Bump when the solver or the saved encoding changes, so support saved by older versions is discarded
+    private static final int FIELD_FORMAT_VERSION = 1;
+    
+    private static final Direction[] DIRECTIONS = Direction.values();
     
     // Singleton instance
     private static StructuralIntegrityManager instance;
     
     public StructuralIntegrityManager() {
         this.blockPropertyManager = new BlockPropertyManager();
-        this.updateQueue = new ConcurrentLinkedQueue<>();
-        this.processedBlocks = new HashMap<>();
-        this.supportCache = new HashMap<>();
+        this.levelStates = new HashMap<>();
+        this.activeSolves = new HashMap<>();
+        this.supportCache = new SupportCache();
+        this.foundationIndexes = new HashMap<>();
+        this.connectivityEngines = new HashMap<>();
+        this.completedSolves = new ConcurrentLinkedQueue<>();
+        this.gridPool = new ConcurrentLinkedQueue<>();
+        this.solvesInFlight = new AtomicInteger();
+        this.resetBlocks = new LongOpenHashSet();
+        this.resetOrder = new LongArrayList();
+        this.fieldQueue = new LongArrayFIFOQueue();
         instance = this;
     }
     
@@ -41,10 +115,379 @@ public class StructuralIntegrityManager {
         return instance;
     }
     
+    public BlockPropertyManager getBlockPropertyManager() {
+        return blockPropertyManager;
+    }
+    
+    /**
+     * Gets the support field tracked for a level, including its lookup hit and miss counts.
+     *
+     * @param level The level to look up
+     * @return The level's support field, or null if nothing has been solved in it yet
+     */
+    @Nullable
+    public SupportField getSupportField(Level level) {
+        return supportCache.get(level);
+    }
+    
+    /**
+     * Gets the structural update state of every level that has had a block change, for reporting.
+     */
+    public Map<Level, LevelUpdateState> getLevelStates() {
+        return Collections.unmodifiableMap(levelStates);
+    }
+    
+    /**
+     * Gets the cache holding every level's support field, for memory accounting.
+     */
+    public SupportCache getSupportCache() {
+        return supportCache;
+    }
+    
     public void initialize() {
         ArchitecturalRealism.LOGGER.info("Initializing Structural Integrity Manager");
         blockPropertyManager.loadBlockProperties();
-        maxCacheSize = ARConfig.COMMON.supportCacheSize.get();
+        supportCache.setMaxBytes(ARConfig.COMMON.supportCacheMemoryMb.get() * 1024L * 1024L);
+        fieldVersion = computeFieldVersion();
+    }
+    
+    /**
+     * Called when the config file is reloaded, possibly from another thread.
+     * The new settings are applied on the next tick.
+     */
+    public void onConfigReloaded() {
+        configChanged = true;
+    }
+    
+    private int computeFieldVersion() {
+        return Objects.hash(FIELD_FORMAT_VERSION,
+            ARConfig.COMMON.supportFactor.get(),
+            ARConfig.COMMON.enableHangingSupport.get(),
+            ARConfig.COMMON.foundationDepth.get(),
+            ARConfig.COMMON.maxSupportDistance.get(),
+            blockPropertyManager.getPropertiesHash());
+    }
+    
+    private void applyConfigChanges() {
+        configChanged = false;
+        // Blocks placed while another mode was active were never tracked; start over when SIMPLE is next used
+        if (ARConfig.COMMON.physicsMode.get() != ARConfig.PhysicsMode.SIMPLE) {
+            connectivityEngines.clear();
+        }
+        supportCache.setMaxBytes(ARConfig.COMMON.supportCacheMemoryMb.get() * 1024L * 1024L);
+        
+        int version = computeFieldVersion();
+        if (version != fieldVersion) {
+            // Every cached value was solved with the old settings; saved copies are dropped as chunks load or save
+            ArchitecturalRealism.LOGGER.info("Support settings changed, discarding cached support");
+            fieldVersion = version;
+            supportCache.clear();
+            foundationIndexes.clear();
+        }
+    }
+    
+    /**
+     * Compiles the block property definitions loaded from datapacks, and drops cached support in every
+     * section holding a block whose properties changed, along with everything depending on it.
+     * Other sections keep their values. Called once block tags are bound after a datapack load.
+     */
+    public void onBlockPropertiesReloaded() {
+        long start = System.nanoTime();
+        BitSet changedStates = blockPropertyManager.compileDefinitions();
+        int version = computeFieldVersion();
+        if (version == fieldVersion) return;
+        
+        fieldVersion = version;
+        // Foundation status depends on which blocks are unbreakable
+        foundationIndexes.clear();
+        int invalidated = 0;
+        for (Map.Entry<Level, SupportField> entry : supportCache.getFields().entrySet()) {
+            Level level = entry.getKey();
+            SupportField field = entry.getValue();
+            for (long sectionKey : field.getSectionKeys()) {
+                if (!changedStates.isEmpty() && mayContainAny(level, sectionKey, changedStates)) {
+                    field.invalidateSection(sectionKey);
+                    invalidated++;
+                }
+            }
+            
+            // Saved copies carry the old version and would be dropped on load; save the sections still valid again
+            field.markAllDirty();
+        }
+        
+        ArchitecturalRealism.LOGGER.info("Block properties changed for {} block states, invalidated {} cached sections in {} ms",
+            changedStates.cardinality(), invalidated, (System.nanoTime() - start) / 1_000_000);
+    }
+    
+    private static boolean mayContainAny(Level level, long sectionKey, BitSet states) {
+        // Without the chunk there's no telling what the section holds
+        LevelChunk chunk = level.getChunkSource().getChunkNow(SectionPos.x(sectionKey), SectionPos.z(sectionKey));
+        if (chunk == null) return true;
+        
+        int sectionY = SectionPos.y(sectionKey);
+        if (sectionY < level.getMinSection() || sectionY >= level.getMaxSection()) return false;
+        
+        LevelChunkSection section = chunk.getSection(level.getSectionIndexFromSectionY(sectionY));
+        return section.getStates().maybeHas(state -> states.get(Block.getId(state)));
+    }
+    
+    /**
+     * Forgets everything held for a chunk that is unloading, so memory follows the loaded world.
+     * Its unsaved support is written to the chunk and its sections are evicted from the field.
+     * Pending updates for blocks in the chunk are saved with it and queued again when it loads.
+     */
+    public void onChunkUnload(Level level, LevelChunk chunk) {
+        int chunkX = chunk.getPos().x;
+        int chunkZ = chunk.getPos().z;
+        FoundationIndex foundations = foundationIndexes.get(level);
+        if (foundations != null) {
+            foundations.removeChunk(chunkX, chunkZ);
+        }
+        ConnectivityEngine connectivity = connectivityEngines.get(level);
+        if (connectivity != null) {
+            saveTrackedBlocks(chunk, connectivity.getTrackedBlocks(chunkX, chunkZ));
+            connectivity.removeChunk(chunkX, chunkZ);
+        }
+        
+        LevelUpdateState state = levelStates.get(level);
+        if (state != null) {
+            parkPendingChanges(level, state, chunk);
+        }
+        evictChunkSupport(level, chunk);
+    }
+    
+    /**
+     * Takes every pending change in an unloading chunk out of the level's queue and collapse cascade and
+     * saves it with the chunk. Tasks that also changed blocks elsewhere keep those changes queued.
+     */
+    private void parkPendingChanges(Level level, LevelUpdateState state, LevelChunk chunk) {
+        int chunkX = chunk.getPos().x;
+        int chunkZ = chunk.getPos().z;
+        List<StructuralUpdateTask> tasks = state.queue.removeChunk(chunkX, chunkZ);
+        
+        // A region solve paused over the chunk would cache support for sections that are about to go
+        ActiveSolve solve = activeSolves.get(level);
+        if (solve != null && solve.task.hasChangeIn(chunkX, chunkZ)) {
+            activeSolves.remove(level);
+            releaseGrid(solve.grid);
+            tasks.add(solve.task);
+        }
+        
+        // Tasks parked on another chunk go with this one if they changed blocks in it
+        ObjectIterator<List<StructuralUpdateTask>> parkedLists = state.parkedTasks.values().iterator();
+        while (parkedLists.hasNext()) {
+            List<StructuralUpdateTask> parkedTasks = parkedLists.next();
+            Iterator<StructuralUpdateTask> iterator = parkedTasks.iterator();
+            while (iterator.hasNext()) {
+                StructuralUpdateTask task = iterator.next();
+                if (task.hasChangeIn(chunkX, chunkZ)) {
+                    iterator.remove();
+                    tasks.add(task);
+                }
+            }
+            if (parkedTasks.isEmpty()) {
+                parkedLists.remove();
+            }
+        }
+        
+        LongArrayList parked = state.cascade.removeChunk(chunkX, chunkZ);
+        for (StructuralUpdateTask task : tasks) {
+            for (int i = 0; i < task.changedPositions.size(); i++) {
+                long pos = task.changedPositions.getLong(i);
+                if (SectionPos.blockToSectionCoord(BlockPos.getX(pos)) == chunkX
+                        && SectionPos.blockToSectionCoord(BlockPos.getZ(pos)) == chunkZ) {
+                    parked.add(pos);
+                } else {
+                    state.queue.add(BlockPos.of(pos), task.radius);
+                }
+            }
+        }
+        
+        if (!parked.isEmpty()) {
+            chunk.getData(ARAttachments.SUPPORT_DATA).addPendingChanges(parked);
+            chunk.setUnsaved(true);
+        }
+        
+        // Solves still reading the chunk's sections must not cache their results
+        Long2IntOpenHashMap sectionVersions = state.sectionVersions;
+        boolean solving = solvesInFlight.get() > 0 || activeSolves.containsKey(level);
+        for (int sectionY = level.getMinSection(); sectionY < level.getMaxSection(); sectionY++) {
+            long sectionKey = SectionPos.asLong(chunkX, sectionY, chunkZ);
+            if (solving) {
+                sectionVersions.addTo(sectionKey, 1);
+            } else {
+                sectionVersions.remove(sectionKey);
+            }
+        }
+    }
+    
+    /**
+     * Writes a chunk's unsaved support to the chunk before it is saved for the last time, then evicts its sections.
+     * Blocks elsewhere whose support path runs through the chunk are evicted with them.
+     */
+    private void evictChunkSupport(Level level, LevelChunk chunk) {
+        SupportField field = supportCache.get(level);
+        if (field == null) return;
+        
+        int chunkX = chunk.getPos().x;
+        int chunkZ = chunk.getPos().z;
+        for (int sectionY = level.getMinSection(); sectionY < level.getMaxSection(); sectionY++) {
+            long sectionKey = SectionPos.asLong(chunkX, sectionY, chunkZ);
+            if (!field.isDirty(sectionKey)) continue;
+            
+            ChunkSupportData data = chunk.getData(ARAttachments.SUPPORT_DATA);
+            data.resetIfOutdated(fieldVersion);
+            data.putSection(sectionY, field.getSection(sectionKey));
+            chunk.setUnsaved(true);
+        }
+        
+        // Every section is saved before any is evicted, since evicting one drops entries from the others
+        for (int sectionY = level.getMinSection(); sectionY < level.getMaxSection(); sectionY++) {
+            field.evictSection(SectionPos.asLong(chunkX, sectionY, chunkZ));
+        }
+        for (int sectionY = level.getMinSection(); sectionY < level.getMaxSection(); sectionY++) {
+            field.markSaved(SectionPos.asLong(chunkX, sectionY, chunkZ));
+        }
+    }
+    
+    /**
+     * Parks a task whose region reaches into a chunk that isn't loaded, so its solve neither loads the chunk
+     * nor reads its blocks as air. The task is queued again once that chunk loads; if another of its chunks is
+     * missing by then, it is parked on that one next.
+     *
+     * @return true if the task was parked
+     */
+    private boolean parkIfUnloaded(LevelUpdateState state, StructuralUpdateTask task) {
+        BlockPos min = task.getMin();
+        BlockPos max = task.getMax();
+        for (int sx = SectionPos.blockToSectionCoord(min.getX()); sx <= SectionPos.blockToSectionCoord(max.getX()); sx++) {
+            for (int sz = SectionPos.blockToSectionCoord(min.getZ()); sz <= SectionPos.blockToSectionCoord(max.getZ()); sz++) {
+                if (task.level.getChunkSource().getChunkNow(sx, sz) == null) {
+                    state.parkedTasks.computeIfAbsent(ChunkPos.asLong(sx, sz), k -> new ArrayList<>()).add(task);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Queues the tasks that were waiting for a chunk to load again.
+     */
+    public void resumeParkedTasks(Level level, LevelChunk chunk) {
+        LevelUpdateState state = levelStates.get(level);
+        if (state == null) return;
+        
+        List<StructuralUpdateTask> tasks = state.parkedTasks.remove(chunk.getPos().toLong());
+        if (tasks == null) return;
+        
+        for (StructuralUpdateTask task : tasks) {
+            state.queue.requeue(task);
+        }
+    }
+    
+    /**
+     * Drops all state held for a level that is being unloaded, including its queued work.
+     */
+    public void onLevelUnload(Level level) {
+        levelStates.remove(level);
+        ActiveSolve solve = activeSolves.remove(level);
+        if (solve != null) {
+            releaseGrid(solve.grid);
+        }
+        supportCache.remove(level);
+        foundationIndexes.remove(level);
+        connectivityEngines.remove(level);
+    }
+    
+    /**
+     * Restores the support field saved with a chunk that just loaded, and queues the updates that were still
+     * pending for it when it unloaded. In SIMPLE mode, the blocks the chunk's connectivity was tracking are
+     * tracked again.
+     * Sections the level's field already tracks are kept, since they may be newer than the saved copy.
+     */
+    public void restoreSupport(ServerLevel level, LevelChunk chunk) {
+        if (!chunk.hasData(ARAttachments.SUPPORT_DATA)) return;
+        
+        ChunkSupportData data = chunk.getData(ARAttachments.SUPPORT_DATA);
+        LongArrayList pending = data.takePendingChanges();
+        if (!pending.isEmpty()) {
+            chunk.setUnsaved(true);
+            if (ARConfig.COMMON.enableStructuralIntegrity.get()) {
+                int radius = ARConfig.COMMON.calculationRadius.get();
+                for (int i = 0; i < pending.size(); i++) {
+                    scheduleStructuralUpdate(level, BlockPos.of(pending.getLong(i)), radius);
+                }
+            }
+        }
+        
+        if (ARConfig.COMMON.physicsMode.get() == ARConfig.PhysicsMode.SIMPLE) {
+            LongArrayList tracked = data.getTrackedBlocks();
+            if (!tracked.isEmpty()) {
+                getConnectivity(level).restoreChunk(chunk, tracked);
+            }
+        }
+        
+        // Sections solved with other settings are dropped; pending changes and tracked blocks don't depend on them
+        if (data.getVersion() != fieldVersion) {
+            data.resetIfOutdated(fieldVersion);
+            chunk.setUnsaved(true);
+            return;
+        }
+        
+        SupportField field = supportCache.getOrCreate(level);
+        for (int sectionY : data.getSectionYs()) {
+            long sectionKey = SectionPos.asLong(chunk.getPos().x, sectionY, chunk.getPos().z);
+            if (field.getSection(sectionKey) != null || field.isDirty(sectionKey)) continue;
+            
+            data.restoreSection(sectionKey, field);
+            field.markSaved(sectionKey);
+        }
+    }
+    
+    /**
+     * Writes every section that changed this tick back to its chunk's saved support data.
+     */
+    private void saveSupportFields() {
+        for (Map.Entry<Level, SupportField> entry : supportCache.getFields().entrySet()) {
+            if (!(entry.getKey() instanceof ServerLevel level)) continue;
+            
+            entry.getValue().flushDirtySections((sectionKey, section) -> {
+                // Only chunks that are fully loaded can be written to; others keep their saved copy
+                LevelChunk chunk = level.getChunkSource().getChunkNow(SectionPos.x(sectionKey), SectionPos.z(sectionKey));
+                if (chunk == null) return;
+                
+                ChunkSupportData data = chunk.getData(ARAttachments.SUPPORT_DATA);
+                data.resetIfOutdated(fieldVersion);
+                data.putSection(SectionPos.y(sectionKey), section);
+                chunk.setUnsaved(true);
+            });
+        }
+    }
+    
+    /**
+     * Writes the tracked blocks of every chunk whose connectivity changed this tick back to the chunk.
+     */
+    private void saveConnectivity() {
+        for (Map.Entry<Level, ConnectivityEngine> entry : connectivityEngines.entrySet()) {
+            Level level = entry.getKey();
+            ConnectivityEngine connectivity = entry.getValue();
+            for (long chunkKey : connectivity.takeDirtyChunks()) {
+                int chunkX = ChunkPos.getX(chunkKey);
+                int chunkZ = ChunkPos.getZ(chunkKey);
+                LevelChunk chunk = level.getChunkSource().getChunkNow(chunkX, chunkZ);
+                if (chunk != null) {
+                    saveTrackedBlocks(chunk, connectivity.getTrackedBlocks(chunkX, chunkZ));
+                }
+            }
+        }
+    }
+    
+    private static void saveTrackedBlocks(LevelChunk chunk, LongArrayList positions) {
+        if (positions.isEmpty() && !chunk.hasData(ARAttachments.SUPPORT_DATA)) return;
+        
+        chunk.getData(ARAttachments.SUPPORT_DATA).setTrackedBlocks(positions);
+        chunk.setUnsaved(true);
     }
     
     @SubscribeEvent
@@ -85,323 +528,1250 @@ public class StructuralIntegrityManager {
         }
     }
     
+    /**
+     * Queues every block an explosion is about to destroy as one update, so the whole crater is
+     * re-checked in a single pass rather than once per block.
+     */
+    @SubscribeEvent
+    public static void onExplosionDetonate(ExplosionEvent.Detonate event) {
+        if (!ARConfig.COMMON.enableStructuralIntegrity.get()) return;
+        
+        Level level = event.getLevel();
+        if (level.isClientSide()) return;
+        
+        LongArrayList destroyed = new LongArrayList();
+        for (BlockPos pos : event.getAffectedBlocks()) {
+            if (!level.getBlockState(pos).isAir()) {
+                destroyed.add(pos.asLong());
+            }
+        }
+        if (!destroyed.isEmpty()) {
+            getInstance().scheduleGroupUpdate(level, destroyed, 0);
+        }
+    }
+    
+    /**
+     * Moves the cached support of the blocks a piston is about to push or pull along with them, and queues
+     * every block the move changes as one update. Runs last, so moves another handler cancels never get here.
+     */
+    @SubscribeEvent(priority = EventPriority.LOWEST)
+    public static void onPistonMove(PistonEvent.Pre event) {
+        if (!ARConfig.COMMON.enableStructuralIntegrity.get()) return;
+        if (!(event.getLevel() instanceof Level level) || level.isClientSide()) return;
+        
+        PistonStructureResolver resolver = event.getStructureHelper();
+        if (resolver == null || !resolver.resolve()) return;
+        
+        StructuralIntegrityManager manager = getInstance();
+        LongArrayList changes = manager.shiftSupport(level, resolver.getToPush(), resolver.getPushDirection());
+        for (BlockPos pos : resolver.getToDestroy()) {
+            changes.add(pos.asLong());
+        }
+        // The piston head extends into or retracts out of the block in front of the piston
+        changes.add(event.getFaceOffsetPos().asLong());
+        manager.scheduleGroupUpdate(level, changes, PISTON_SETTLE_TICKS);
+    }
+    
+    /**
+     * Fires after any block change that notifies its neighbors, including ones from pistons, explosions
+     * and other mods, so the foundation index never answers from blocks that are gone.
+     */
+    @SubscribeEvent
+    public static void onNeighborNotify(BlockEvent.NeighborNotifyEvent event) {
+        StructuralIntegrityManager manager = getInstance();
+        if (manager == null || !(event.getLevel() instanceof Level level) || level.isClientSide()) return;
+        
+        FoundationIndex foundations = manager.foundationIndexes.get(level);
+        if (foundations != null) {
+            foundations.onBlockChanged(event.getPos());
+        }
+    }
+    
+    @SubscribeEvent
+    public static void onLevelUnload(LevelEvent.Unload event) {
+        StructuralIntegrityManager manager = getInstance();
+        if (manager != null && event.getLevel() instanceof Level level && !level.isClientSide()) {
+            manager.onLevelUnload(level);
+        }
+    }
+    
+    @SubscribeEvent
+    public static void onServerStopping(ServerStoppingEvent event) {
+        StructuralIntegrityManager manager = getInstance();
+        if (manager != null) {
+            manager.shutdownSolver();
+        }
+    }
+    
     private void scheduleStructuralUpdate(Level level, BlockPos pos, int radius) {
-        updateQueue.add(new StructuralUpdateTask(level, pos, radius));
+        // Bump the edit version of the changed section so in-flight async solves over it are discarded
+        getSectionVersions(level).addTo(SectionPos.blockToSection(pos.asLong()), 1);
         
-        // Clear support cache for this level when a block changes
-        if (supportCache.containsKey(level)) {
-            supportCache.get(level).clear();
+        // Nearby pending edits are merged, so a burst of placements is solved once
+        getLevelState(level).queue.add(pos, radius);
+    }
+    
+    /**
+     * Schedules one update for a group of blocks that changed together.
+     *
+     * @param settleTicks Extra ticks to wait before solving, while the blocks are still moving
+     */
+    private void scheduleGroupUpdate(Level level, LongArrayList positions, int settleTicks) {
+        Long2IntOpenHashMap sectionVersions = getSectionVersions(level);
+        for (int i = 0; i < positions.size(); i++) {
+            sectionVersions.addTo(SectionPos.blockToSection(positions.getLong(i)), 1);
         }
+        getLevelState(level).queue.addAll(positions, ARConfig.COMMON.calculationRadius.get(), settleTicks);
     }
     
-    // This would be called every tick to process the update queue
-    public void processPendingUpdates() {
-        int calculationsThisTick = 0;
-        int maxCalculations = ARConfig.COMMON.maxCalculationsPerTick.get();
+    /**
+     * Moves the cached support of blocks a piston is about to move to the positions they are moving to,
+     * so the moved blocks stay tracked and their update doesn't need a region solve.
+     * Their old positions keep their entries until the update resets them, which is how the blocks
+     * that rested on the moved ones are found.
+     *
+     * @param level The level the piston is in
+     * @param moved The blocks about to move, at their current positions
+     * @param direction The direction they move in
+     * @return The packed positions whose support has to be re-checked once the move is done
+     */
+    private LongArrayList shiftSupport(Level level, List<BlockPos> moved, Direction direction) {
+        LongLinkedOpenHashSet changes = new LongLinkedOpenHashSet();
+        LongOpenHashSet movedFrom = new LongOpenHashSet(moved.size());
+        LongOpenHashSet movedTo = new LongOpenHashSet(moved.size());
+        for (BlockPos pos : moved) {
+            movedFrom.add(pos.asLong());
+            movedTo.add(pos.relative(direction).asLong());
+        }
         
-        while (!updateQueue.isEmpty() && calculationsThisTick < maxCalculations) {
-            StructuralUpdateTask task = updateQueue.poll();
-            if (task != null) {
-                processStructuralUpdate(task);
-                calculationsThisTick++;
+        SupportField field = supportCache.get(level);
+        float[] values = new float[moved.size()];
+        short[] distances = new short[moved.size()];
+        byte[] parents = new byte[moved.size()];
+        for (int i = 0; i < moved.size(); i++) {
+            long from = moved.get(i).asLong();
+            
+            // Every moved block's support path runs through blocks that didn't move with it
+            changes.add(BlockPos.offset(from, direction));
+            if (!movedTo.contains(from)) {
+                changes.add(from);
+            }
+            if (field == null) continue;
+            
+            values[i] = field.peek(from);
+            distances[i] = field.getDistance(from);
+            parents[i] = field.getParent(from);
+            
+            // Blocks left behind that took their support from the moved block
+            for (Direction side : DIRECTIONS) {
+                long neighbor = BlockPos.offset(from, side);
+                if (!movedFrom.contains(neighbor) && field.containsKey(neighbor)
+                        && field.getParent(neighbor) == oppositeOf(side.ordinal())) {
+                    changes.add(neighbor);
+                }
+            }
+        }
+        
+        if (field != null) {
+            for (int i = 0; i < moved.size(); i++) {
+                long to = BlockPos.offset(moved.get(i).asLong(), direction);
+                if (Float.isNaN(values[i])) {
+                    field.remove(to);
+                } else {
+                    field.put(to, values[i], distances[i], parents[i]);
+                }
             }
         }
+        return new LongArrayList(changes);
     }
     
-    private void processStructuralUpdate(StructuralUpdateTask task) {
-        Level level = task.level;
-        BlockPos center = task.position;
-        int radius = task.radius;
+    /**
+     * Prepares for a new server tick: applies config changes and finished async solves, and works out
+     * how the tick budget is shared between levels. Called at the start of every server tick.
+     */
+    public void startTick(MinecraftServer server) {
+        supportCache.tick();
+        if (configChanged) {
+            applyConfigChanges();
+        }
+        
+        // Apply the results of async solves that finished since the last tick
+        applyCompletedSolves();
         
-        // Clear processed blocks for this level if not already initialized
-        processedBlocks.computeIfAbsent(level, k -> new HashSet<>());
+        // Levels with nothing queued don't need a share of the budget
+        busyLevels = 0;
+        for (Map.Entry<Level, LevelUpdateState> entry : levelStates.entrySet()) {
+            if (!entry.getValue().queue.isEmpty() || !entry.getValue().cascade.isEmpty()
+                    || activeSolves.containsKey(entry.getKey())) {
+                busyLevels++;
+            }
+        }
+        tickBudgetNanos = (long) (ARConfig.COMMON.tickTimeBudgetMs.get() * 1_000_000L);
+        averageTickNanos = server.getAverageTickTimeNanos();
+        nanosPerTick = server.tickRateManager().nanosecondsPerTick();
+    }
+    
+    /**
+     * Processes a level's queued structural updates within its share of the tick budget.
+     * Called at the end of the level's tick.
+     * The most urgent ready task always runs, unless it is low priority, and waiting tasks grow more urgent
+     * as they age, so nothing near a player waits forever behind newer work. After it, tasks only run if
+     * their estimated cost fits in what is left of the budget, and the rest carry over.
+     */
+    public void processLevelUpdates(ServerLevel level) {
+        LevelUpdateState state = levelStates.get(level);
+        if (state == null) return;
         
-        // Identify foundation blocks in the area
-        Set<BlockPos> foundations = identifyFoundations(level, center, radius);
+        UpdateQueue queue = state.queue;
+        TickBudget budget = state.budget;
+        queue.tick();
+        if (queue.isEmpty() && state.cascade.isEmpty() && !activeSolves.containsKey(level)) return;
         
-        // Calculate support values
-        Map<BlockPos, Double> supportMap = calculateSupport(level, center, radius, foundations);
+        // Nothing in a level without loaded chunks can be solved; keep its work until chunks load again
+        if (level.getChunkSource().getLoadedChunksCount() == 0) {
+            state.recordSkippedTick();
+            return;
+        }
         
-        // Check for unstable blocks
-        List<BlockPos> unstableBlocks = findUnstableBlocks(level, supportMap);
+        ARConfig.PhysicsMode mode = ARConfig.COMMON.physicsMode.get();
+        boolean async = ARConfig.COMMON.solverMode.get() == ARConfig.SolverMode.ASYNC;
+        int maxInFlight = ARConfig.COMMON.solverThreads.get() * 2;
+        budget.start(tickBudgetNanos, averageTickNanos, nanosPerTick, Math.max(busyLevels, 1));
+        long tickStart = System.nanoTime();
+        int tasks = 0;
         
-        // Handle collapse of unstable blocks
-        if (!unstableBlocks.isEmpty()) {
-            handleCollapse(level, unstableBlocks);
+        // A solve paused on an earlier tick goes first; new tasks wait until it is done
+        if (activeSolves.containsKey(level)) {
+            continueActiveSolve(level, state);
+        }
+        
+        // Blocks next to earlier collapses are re-checked before new edits are looked at
+        if (!state.cascade.isEmpty() && mode == ARConfig.PhysicsMode.REALISTIC) {
+            continueCascade(level, state);
+        }
+        
+        while (!activeSolves.containsKey(level) && !queue.isEmpty()) {
+            // Leave the rest of the queue for later if the workers are saturated
+            if (async && solvesInFlight.get() >= maxInFlight) break;
+            if (tasks > 0 && budget.getRemaining() <= 0) break;
+            
+            // Tasks still receiving edits wait until the burst is over, and smaller tasks can
+            // run ahead of one that doesn't fit in what's left of the tick. Work away from players
+            // only ever gets what's left of the budget
+            boolean mustRun = tasks == 0;
+            StructuralUpdateTask task = queue.poll(t -> (mustRun && !t.isLowPriority())
+                || fitsBudget(budget, t, async));
+            if (task == null) break;
+            
+            long start = System.nanoTime();
+            tasks++;
+            
+            // Connectivity updates cost little next to a support solve and aren't measured against its estimates
+            if (mode == ARConfig.PhysicsMode.SIMPLE) {
+                updateConnectivity(task);
+                continue;
+            }
+            if (mode == ARConfig.PhysicsMode.NONE) continue;
+            
+            // Most edits only affect a few tracked blocks; fall back to one region solve over the whole
+            // task when any change is outside what the support field covers
+            if (updateChangesIncrementally(task)) {
+                budget.record(TickBudget.Work.INCREMENTAL, task.getChangeCount(), System.nanoTime() - start);
+            } else if (parkIfUnloaded(state, task)) {
+                // The region reaches into chunks that aren't loaded; it is solved once they are
+                continue;
+            } else if (async) {
+                submitStructuralUpdate(task);
+                budget.record(TickBudget.Work.SUBMIT, estimateCost(task), System.nanoTime() - start);
+            } else {
+                // Records its own cost once it finishes, which may be on a later tick
+                startStructuralUpdate(task, state, start);
+            }
         }
+        
+        state.recordTick(tasks, System.nanoTime() - tickStart);
     }
     
-    private Set<BlockPos> identifyFoundations(Level level, BlockPos center, int radius) {
-        Set<BlockPos> foundations = new HashSet<>();
+    /**
+     * Finishes a server tick: saves changed support and keeps the cache within its memory limit.
+     * Called at the end of every server tick, after all levels have ticked.
+     */
+    public void finishTick() {
+        // Save before evicting, so evicted sections can still be restored from their chunks later
+        saveSupportFields();
+        saveConnectivity();
         
-        // Scan the area around the center position
-        BlockPos.betweenClosed(
-            center.offset(-radius, -radius, -radius),
-            center.offset(radius, radius, radius)
-        ).forEach(pos -> {
-            // Skip air blocks
-            if (level.isEmptyBlock(pos)) return;
+        // Evict the least used sections if this tick's solves pushed the cache over its memory limit
+        int evicted = supportCache.enforceLimit();
+        if (evicted > 0) {
+            ArchitecturalRealism.LOGGER.debug("Evicted {} cached support sections", evicted);
+        }
+    }
+    
+    /**
+     * Checks whether a task is expected to fit in what is left of the budget, estimated as the kind of work
+     * it will most likely take: an incremental update if the support field covers its changes, otherwise
+     * copying its region for an async solve or solving it on the server thread.
+     */
+    private boolean fitsBudget(TickBudget budget, StructuralUpdateTask task, boolean async) {
+        SupportField field = supportCache.get(task.level);
+        if (field != null && coversChanges(field, task.level, task.changedPositions)) {
+            return budget.fits(TickBudget.Work.INCREMENTAL, task.getChangeCount());
+        }
+        return budget.fits(async ? TickBudget.Work.SUBMIT : TickBudget.Work.SOLVE, estimateCost(task));
+    }
+    
+    /**
+     * Estimates the work of a task as the number of blocks in its box, including the foundation scan below
+     * it, that lie in loaded sections holding anything but air. Cached on the task until it changes again.
+     */
+    private long estimateCost(StructuralUpdateTask task) {
+        if (task.estimatedBlocks >= 0) {
+            return task.estimatedBlocks;
+        }
+        
+        Level level = task.level;
+        BlockPos min = task.getMin().below(ARConfig.COMMON.foundationDepth.get());
+        BlockPos max = task.getMax();
+        int minSectionY = Math.max(SectionPos.blockToSectionCoord(min.getY()), level.getMinSection());
+        int maxSectionY = Math.min(SectionPos.blockToSectionCoord(max.getY()), level.getMaxSection() - 1);
+        long blocks = 0;
+        
+        for (int sx = SectionPos.blockToSectionCoord(min.getX()); sx <= SectionPos.blockToSectionCoord(max.getX()); sx++) {
+            int spanX = overlap(min.getX(), max.getX(), SectionPos.sectionToBlockCoord(sx));
+            for (int sz = SectionPos.blockToSectionCoord(min.getZ()); sz <= SectionPos.blockToSectionCoord(max.getZ()); sz++) {
+                // Unloaded chunks are never read by the solve, so they cost nothing
+                LevelChunk chunk = level.getChunkSource().getChunkNow(sx, sz);
+                if (chunk == null) continue;
+                
+                int spanZ = overlap(min.getZ(), max.getZ(), SectionPos.sectionToBlockCoord(sz));
+                for (int sy = minSectionY; sy <= maxSectionY; sy++) {
+                    LevelChunkSection section = chunk.getSection(level.getSectionIndexFromSectionY(sy));
+                    if (!section.hasOnlyAir()) {
+                        blocks += (long) spanX * spanZ * overlap(min.getY(), max.getY(), SectionPos.sectionToBlockCoord(sy));
+                    }
+                }
+            }
+        }
+        
+        task.estimatedBlocks = blocks;
+        return blocks;
+    }
+    
+    // Number of coordinates in [min, max] that fall within the section starting at sectionMin
+    private static int overlap(int min, int max, int sectionMin) {
+        return Math.min(max, sectionMin + 15) - Math.max(min, sectionMin) + 1;
+    }
+    
+    /**
+     * Applies every change merged into a task to the level's ground connectivity, dropping whatever
+     * lost its connection to the ground.
+     */
+    private void updateConnectivity(StructuralUpdateTask task) {
+        ConnectivityEngine connectivity = getConnectivity(task.level);
+        int searchLimit = (2 * task.radius + 1) * (2 * task.radius + 1) * (2 * task.radius + 1);
+        List<BlockPos> floating = new ArrayList<>();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < task.changedPositions.size(); i++) {
+            connectivity.onBlockChanged(pos.set(task.changedPositions.getLong(i)), searchLimit, floating);
+        }
+        
+        if (!floating.isEmpty()) {
+            handleCollapse(task.level, floating);
+        }
+    }
+    
+    /**
+     * Applies every change merged into a task to the support field incrementally, all at once.
+     *
+     * @return false if a region solve over the task's box is needed instead
+     */
+    private boolean updateChangesIncrementally(StructuralUpdateTask task) {
+        int maxBlocks = (int) Math.min(blocksInBox(task.getMin(), task.getMax()), Integer.MAX_VALUE);
+        return updateSupportIncrementally(task.level, task.changedPositions, maxBlocks);
+    }
+    
+    /**
+     * Re-checks the surroundings of blocks that collapsed, wave by wave, up to cascadeBlocksPerTick blocks and
+     * while the tick budget lasts. Each collapsed block is handled like a broken block: everything whose support
+     * ran through it is reset and re-seeded, and whatever turns out unstable collapses and joins the next wave.
+     */
+    private void continueCascade(Level level, LevelUpdateState state) {
+        CollapseCascade cascade = state.cascade;
+        int radius = ARConfig.COMMON.calculationRadius.get();
+        int maxBlocks = (2 * radius + 1) * (2 * radius + 1) * (2 * radius + 1);
+        int limit = ARConfig.COMMON.cascadeBlocksPerTick.get();
+        LongArrayList collapsed = new LongArrayList(1);
+        
+        // The first block always goes, so a cascade keeps moving while the server is under load
+        for (int i = 0; i < limit && !cascade.isEmpty(); i++) {
+            if (i > 0 && state.budget.getRemaining() <= 0) break;
             
-            // Bedrock is always a foundation
-            BlockState state = level.getBlockState(pos);
-            if (state.getBlock().defaultDestroyTime() < 0) {
-                foundations.add(pos.immutable());
-                return;
+            collapsed.clear();
+            collapsed.add(cascade.poll());
+            if (!updateSupportIncrementally(level, collapsed, maxBlocks)) {
+                // The field doesn't cover the collapse; solve the area around it like any other change
+                state.queue.add(BlockPos.of(collapsed.getLong(0)), radius);
             }
+        }
+    }
+    
+    /**
+     * Starts a region solve on the server thread and runs as much of it as fits in this tick.
+     * Anything left over continues on the following ticks through {@link #continueActiveSolve}.
+     *
+     * @param task The task to solve
+     * @param state The state of the task's level
+     * @param start When work on the task started, in {@link System#nanoTime()} time
+     */
+    private void startStructuralUpdate(StructuralUpdateTask task, LevelUpdateState state, long start) {
+        Level level = task.level;
+        BlockPos min = task.getMin();
+        BlockPos max = task.getMax();
+        
+        StructureView view = new LevelStructureView(level);
+        VoxelGrid grid = acquireGrid();
+        
+        try {
+            // Remember which section versions the grid was read from, in case the solve spans several ticks
+            Long2IntOpenHashMap versions = captureSectionVersions(level, min.below(ARConfig.COMMON.foundationDepth.get()), max);
             
-            // Ground level blocks are foundations
-            if (pos.getY() == level.getMinBuildHeight()) {
-                foundations.add(pos.immutable());
+            // Read the region into the grid once; everything below works on grid indices
+            grid.load(view, min, max, blockPropertyManager);
+            
+            // Identify foundation blocks in the area
+            markFoundations(getFoundationIndex(level), grid);
+            
+            ActiveSolve solve = new ActiveSolve(task, grid, startPropagation(grid), versions);
+            solve.elapsedNanos = System.nanoTime() - start;
+            activeSolves.put(level, solve);
+        } catch (RuntimeException e) {
+            releaseGrid(grid);
+            throw e;
+        }
+        
+        continueActiveSolve(level, state);
+    }
+    
+    /**
+     * Propagates the active solve until it finishes or the tick budget runs out.
+     * Results are only applied once propagation is complete, so a half-finished grid never causes collapses.
+     */
+    private void continueActiveSolve(Level level, LevelUpdateState state) {
+        ActiveSolve solve = activeSolves.get(level);
+        long start = System.nanoTime();
+        
+        boolean done;
+        do {
+            done = propagateSupport(solve.propagation, PROPAGATION_STEPS_PER_CHECK);
+        } while (!done && state.budget.getRemaining() > 0);
+        
+        solve.elapsedNanos += System.nanoTime() - start;
+        solve.ticks++;
+        if (!done) return;
+        
+        activeSolves.remove(level);
+        
+        try {
+            // Blocks or block properties changed while the solve was paused; check the region again
+            if (isStale(solve.sectionVersions, getSectionVersions(level))
+                    || solve.grid.getStateTable() != blockPropertyManager.getStateTable()) {
+                ArchitecturalRealism.LOGGER.debug("Dropping stale structural solve at {}", solve.task.getMin());
+                state.queue.requeue(solve.task);
                 return;
             }
             
-            // Check if block has solid ground beneath it
-            if (hasGroundSupport(level, pos)) {
-                foundations.add(pos.immutable());
+            // Cache support values for future use
+            cacheSupport(level, solve.grid);
+            
+            // Check for unstable blocks
+            List<BlockPos> unstableBlocks = findUnstableBlocks(solve.grid);
+            
+            // Handle collapse of unstable blocks
+            if (!unstableBlocks.isEmpty()) {
+                handleCollapse(level, unstableBlocks);
             }
-        });
+        } finally {
+            releaseGrid(solve.grid);
+        }
         
-        return foundations;
+        state.budget.record(TickBudget.Work.SOLVE, estimateCost(solve.task), solve.elapsedNanos);
+        if (solve.ticks > 1) {
+            ArchitecturalRealism.LOGGER.debug("Structural solve at {} took {} ticks", solve.task.getMin(), solve.ticks);
+        }
     }
     
-    private boolean hasGroundSupport(Level level, BlockPos pos) {
-        // Check if there are solid blocks beneath this position down to bedrock or for a significant depth
-        int depth = 0;
-        int maxDepth = ARConfig.COMMON.foundationDepth.get(); // Configurable depth for ground support
-        
-        BlockPos checkPos = pos.below();
-        while (depth < maxDepth && checkPos.getY() >= level.getMinBuildHeight()) {
-            if (level.isEmptyBlock(checkPos)) {
-                // Found a gap, not supported by ground
-                return false;
+    /**
+     * Records the current edit version of every section intersecting a box.
+     */
+    private Long2IntOpenHashMap captureSectionVersions(Level level, BlockPos min, BlockPos max) {
+        Long2IntOpenHashMap levelVersions = getSectionVersions(level);
+        Long2IntOpenHashMap versions = new Long2IntOpenHashMap();
+        for (int sx = SectionPos.blockToSectionCoord(min.getX()); sx <= SectionPos.blockToSectionCoord(max.getX()); sx++) {
+            for (int sy = SectionPos.blockToSectionCoord(min.getY()); sy <= SectionPos.blockToSectionCoord(max.getY()); sy++) {
+                for (int sz = SectionPos.blockToSectionCoord(min.getZ()); sz <= SectionPos.blockToSectionCoord(max.getZ()); sz++) {
+                    long sectionKey = SectionPos.asLong(sx, sy, sz);
+                    versions.put(sectionKey, levelVersions.get(sectionKey));
+                }
             }
-            
-            BlockState state = level.getBlockState(checkPos);
-            if (state.getBlock().defaultDestroyTime() < 0) {
-                // Found bedrock, definitely supported
+        }
+        return versions;
+    }
+    
+    private static boolean isStale(Long2IntOpenHashMap captured, Long2IntOpenHashMap current) {
+        for (Long2IntMap.Entry entry : captured.long2IntEntrySet()) {
+            if (current.get(entry.getLongKey()) != entry.getIntValue()) {
                 return true;
             }
-            
-            depth++;
-            checkPos = checkPos.below();
         }
-        
-        // If we checked the maximum depth without finding a gap, consider it ground-supported
-        return depth >= maxDepth;
+        return false;
     }
     
-    private Map<BlockPos, Double> calculateSupport(Level level, BlockPos center, int radius, Set<BlockPos> foundations) {
-        Map<BlockPos, Double> supportMap = new HashMap<>();
+    /**
+     * Copies the task's region on the server thread and hands the solve to the worker pool.
+     * Only the collapse list comes back to the server thread, through {@link #applyCompletedSolves()}.
+     */
+    private void submitStructuralUpdate(StructuralUpdateTask task) {
+        Level level = task.level;
+        BlockPos min = task.getMin();
+        BlockPos max = task.getMax();
         
-        // Initialize support values
-        BlockPos.betweenClosed(
-            center.offset(-radius, -radius, -radius),
-            center.offset(radius, radius, radius)
-        ).forEach(pos -> {
-            if (level.isEmptyBlock(pos)) {
-                supportMap.put(pos.immutable(), 0.0);
-            } else if (foundations.contains(pos)) {
-                supportMap.put(pos.immutable(), 100.0); // Maximum support for foundations
-            } else {
-                // Check if we have a cached support value
-                Double cachedSupport = getCachedSupport(level, pos);
-                if (cachedSupport != null) {
-                    supportMap.put(pos.immutable(), cachedSupport);
+        // The foundation scan looks up to foundationDepth blocks below the region
+        RegionSnapshot snapshot = RegionSnapshot.capture(level, min.below(ARConfig.COMMON.foundationDepth.get()), max,
+            getSectionVersions(level));
+        
+        solvesInFlight.incrementAndGet();
+        getSolverExecutor().execute(() -> {
+            VoxelGrid grid = acquireGrid();
+            try {
+                grid.load(snapshot, min, max, blockPropertyManager);
+                identifyFoundations(snapshot, grid);
+                if (blocksInBox(min, max) >= ARConfig.COMMON.parallelSolveMinBlocks.get()) {
+                    solveTiles(grid);
+                } else if (ARConfig.COMMON.supportSolver.get() == ARConfig.SupportSolver.SWEEP) {
+                    sweepSupport(grid);
                 } else {
-                    supportMap.put(pos.immutable(), 0.0);
+                    calculateSupport(grid);
                 }
+                List<BlockPos> unstableBlocks = findUnstableBlocks(grid);
+                completedSolves.add(new SolveResult(task, snapshot, grid, unstableBlocks));
+            } catch (Exception e) {
+                releaseGrid(grid);
+                ArchitecturalRealism.LOGGER.error("Structural solve from {} to {} failed: {}", min, max, e.getMessage());
+            } finally {
+                solvesInFlight.decrementAndGet();
             }
         });
+    }
+    
+    private static long blocksInBox(BlockPos min, BlockPos max) {
+        return (long) (max.getX() - min.getX() + 1) * (max.getY() - min.getY() + 1) * (max.getZ() - min.getZ() + 1);
+    }
+    
+    /**
+     * Applies finished async solves on the server thread.
+     * A result is dropped if any section it was computed from changed while it was being solved, or if any block
+     * it would collapse or its neighbors no longer match the live level; its task is queued again so the region
+     * is re-checked against the current blocks.
+     */
+    private void applyCompletedSolves() {
+        SolveResult result;
+        while ((result = completedSolves.poll()) != null) {
+            Level level = result.task.level;
+            
+            try {
+                // The level was unloaded while the solve ran
+                if (!levelStates.containsKey(level)) continue;
+                
+                // Section versions only move with the edits this mod hears about, so the blocks about to
+                // collapse are also compared against the live level
+                if (result.snapshot.isStale(getSectionVersions(level))
+                        || result.grid.getStateTable() != blockPropertyManager.getStateTable()
+                        || !result.snapshot.matches(level, result.unstableBlocks)) {
+                    ArchitecturalRealism.LOGGER.debug("Dropping stale structural solve at {}", result.task.getMin());
+                    getLevelState(level).queue.requeue(result.task);
+                    continue;
+                }
+                
+                cacheSupport(level, result.grid);
+                
+                if (!result.unstableBlocks.isEmpty()) {
+                    handleCollapse(level, result.unstableBlocks);
+                }
+            } finally {
+                releaseGrid(result.grid);
+            }
+        }
+    }
+    
+    private LevelUpdateState getLevelState(Level level) {
+        return levelStates.computeIfAbsent(level, LevelUpdateState::new);
+    }
+    
+    private ConnectivityEngine getConnectivity(Level level) {
+        return connectivityEngines.computeIfAbsent(level, key -> new ConnectivityEngine(key, blockPropertyManager));
+    }
+    
+    private Long2IntOpenHashMap getSectionVersions(Level level) {
+        return getLevelState(level).sectionVersions;
+    }
+    
+    private VoxelGrid acquireGrid() {
+        VoxelGrid grid = gridPool.poll();
+        return grid != null ? grid : new VoxelGrid();
+    }
+    
+    private void releaseGrid(VoxelGrid grid) {
+        gridPool.offer(grid);
+    }
+    
+    private synchronized ExecutorService getSolverExecutor() {
+        if (solverExecutor == null) {
+            AtomicInteger threadId = new AtomicInteger();
+            solverExecutor = Executors.newFixedThreadPool(ARConfig.COMMON.solverThreads.get(), runnable -> {
+                Thread thread = new Thread(runnable, "ArchitecturalRealism-Solver-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return solverExecutor;
+    }
+    
+    private synchronized ForkJoinPool getTilePool() {
+        if (tilePool == null) {
+            AtomicInteger threadId = new AtomicInteger();
+            tilePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("ArchitecturalRealism-Tiles-" + threadId.incrementAndGet());
+                // Set explicitly so code running on the pool always resolves mod classes
+                thread.setContextClassLoader(StructuralIntegrityManager.class.getClassLoader());
+                return thread;
+            }, null, false);
+        }
+        return tilePool;
+    }
+    
+    private synchronized void shutdownSolver() {
+        if (solverExecutor != null) {
+            solverExecutor.shutdownNow();
+            solverExecutor = null;
+        }
+        if (tilePool != null) {
+            tilePool.shutdownNow();
+            tilePool = null;
+        }
+        completedSolves.clear();
+        solvesInFlight.set(0);
+    }
+    
+    /**
+     * Marks every foundation block in the grid.
+     * Each column is walked bottom-up once, tracking how many solid blocks lie directly below the
+     * current cell and how far down the nearest unbreakable block in that run is. That answers the
+     * foundationDepth check for every cell without probing downward again.
+     */
+    private void identifyFoundations(StructureView level, VoxelGrid grid) {
+        int maxDepth = ARConfig.COMMON.foundationDepth.get(); // Configurable depth for ground support
+        int minBuildHeight = level.getMinBuildHeight();
+        int sizeX = grid.getSizeX();
+        int sizeY = grid.getSizeY();
+        int sizeZ = grid.getSizeZ();
+        int up = grid.neighborOffset(Direction.UP);
+        BlockPos min = grid.getMinCorner();
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
         
-        // Propagate support using a queue-based approach
-        Queue<BlockPos> queue = new LinkedList<>(foundations);
-        Set<BlockPos> processed = new HashSet<>(foundations);
-        
-        int maxSupportDistance = ARConfig.COMMON.maxSupportDistance.get();
-        Map<BlockPos, Integer> distanceFromFoundation = new HashMap<>();
+        for (int z = 1; z < sizeZ - 1; z++) {
+            for (int x = 1; x < sizeX - 1; x++) {
+                int worldX = min.getX() + x - 1;
+                int worldZ = min.getZ() + z - 1;
+                int solidRun = 0;
+                int unbreakableDistance = Integer.MAX_VALUE;
+                
+                // Seed the column with the blocks just below the grid
+                for (int y = min.getY() - maxDepth; y < min.getY(); y++) {
+                    if (y < minBuildHeight) continue;
+                    
+                    BlockState state = level.getBlockState(pos.set(worldX, y, worldZ));
+                    if (state.isAir()) {
+                        solidRun = 0;
+                        unbreakableDistance = Integer.MAX_VALUE;
+                    } else {
+                        solidRun++;
+                        unbreakableDistance = isUnbreakable(state) ? 1 : saturatedIncrement(unbreakableDistance);
+                    }
+                }
+                
+                int index = grid.indexOf(x, 1, z);
+                for (int y = 1; y < sizeY - 1; y++, index += up) {
+                    int worldY = min.getY() + y - 1;
+                    
+                    if (grid.isSolid(index)) {
+                        // Bedrock is always a foundation, ground level blocks are foundations, and so are
+                        // blocks standing on foundationDepth solid blocks or on an unbreakable block
+                        if (grid.isUnbreakable(index) || worldY == minBuildHeight
+                                || solidRun >= maxDepth || unbreakableDistance <= maxDepth) {
+                            grid.markFoundation(index);
+                        }
+                        
+                        solidRun++;
+                        unbreakableDistance = grid.isUnbreakable(index) ? 1 : saturatedIncrement(unbreakableDistance);
+                    } else {
+                        // Found a gap, the cell above it is not supported by ground
+                        solidRun = 0;
+                        unbreakableDistance = Integer.MAX_VALUE;
+                    }
+                }
+            }
+        }
+    }
+    
+    private static int saturatedIncrement(int value) {
+        return value == Integer.MAX_VALUE ? value : value + 1;
+    }
+    
+    /**
+     * Propagates support outward from the foundations marked in the grid, all in one go.
+     * Each block ends up with the best support any neighbor can pass it, and remembers that neighbor
+     * as its parent along with its distance from the foundation. A block is queued again whenever its
+     * support improves, so the result is the same whatever order blocks are visited in.
+     */
+    private void calculateSupport(VoxelGrid grid) {
+        propagateSupport(startPropagation(grid), Long.MAX_VALUE);
+    }
+    
+    /**
+     * Solves the same support as {@link #calculateSupport} with {@link SupportSweep}, all in one go.
+     */
+    private void sweepSupport(VoxelGrid grid) {
+        seedFoundations(grid);
+        SupportSweep.solve(grid, ARConfig.COMMON.maxSupportDistance.get(), getDirectionalTransferFactors(), SUPPORT_DECAY);
+    }
+    
+    /**
+     * Solves the same support as {@link #calculateSupport} with {@link TiledSupportSolve}, one chunk section
+     * of the grid per task on every core, and waits for it to finish.
+     */
+    private void solveTiles(VoxelGrid grid) {
+        seedFoundations(grid);
+        int rounds = TiledSupportSolve.solve(getTilePool(), grid, ARConfig.COMMON.maxSupportDistance.get(),
+            getDirectionalTransferFactors(), SUPPORT_DECAY);
+        ArchitecturalRealism.LOGGER.debug("Tiled structural solve at {} took {} rounds", grid.getMinCorner(), rounds);
+    }
+    
+    private static void seedFoundations(VoxelGrid grid) {
+        for (int index = grid.nextSolid(0); index >= 0; index = grid.nextSolid(index + 1)) {
+            if (grid.isFoundation(index)) {
+                grid.setSupport(index, MAX_SUPPORT);
+                grid.setDistance(index, FOUNDATION_DISTANCE);
+            }
+        }
+    }
+    
+    /**
+     * Seeds support propagation from the foundations of a grid.
+     * The settings that shape propagation are read once here, so a paused solve isn't affected by a config
+     * reload halfway through.
+     *
+     * @param grid A loaded grid with its foundations marked
+     * @return The propagation state, to be advanced with {@link #propagateSupport}
+     */
+    private SupportPropagation startPropagation(VoxelGrid grid) {
+        SupportPropagation state = new SupportPropagation(grid, ARConfig.COMMON.maxSupportDistance.get(),
+            getDirectionalTransferFactors());
+        int volume = grid.getVolume();
+        int[] queue = grid.getQueue();
         
-        // Initialize distances for foundations
-        for (BlockPos foundation : foundations) {
-            distanceFromFoundation.put(foundation, 0);
+        // Initialize support values; everything else starts unsupported from grid.load
+        for (int index = 0; index < volume; index++) {
+            if (grid.isSolid(index) && grid.isFoundation(index)) {
+                // Maximum support for foundations
+                grid.setSupport(index, MAX_SUPPORT);
+                grid.setDistance(index, FOUNDATION_DISTANCE);
+                grid.setQueued(index, true);
+                queue[state.queued++] = index;
+            }
         }
+        return state;
+    }
+    
+    /**
+     * Propagates support through a grid for at most the given number of queue steps.
+     * All progress lives in the state and the grid, so propagation can stop at any step and continue later.
+     *
+     * @param state The propagation to advance
+     * @param maxSteps The most blocks to take from the queue
+     * @return true if propagation is complete
+     */
+    private boolean propagateSupport(SupportPropagation state, long maxSteps) {
+        VoxelGrid grid = state.grid;
+        int volume = grid.getVolume();
+        int[] queue = grid.getQueue();
+        int[] neighborOffsets = state.neighborOffsets;
+        double[] directionalFactors = state.directionalFactors;
+        int head = state.head;
+        int queued = state.queued;
         
-        while (!queue.isEmpty()) {
-            BlockPos current = queue.poll();
-            double currentSupport = supportMap.get(current);
-            int currentDistance = distanceFromFoundation.getOrDefault(current, 0);
+        // Propagate support using a queue-based approach; the queue is a ring buffer since
+        // a block is never in it twice at the same time
+        for (long step = 0; queued > 0 && step < maxSteps; step++) {
+            int current = queue[head];
+            head = head + 1 == volume ? 0 : head + 1;
+            queued--;
+            grid.setQueued(current, false);
+            
+            float currentSupport = grid.getSupport(current);
+            int currentDistance = grid.getDistance(current);
             
             // Skip if no support to propagate or we've reached max distance
-            if (currentSupport <= 0 || currentDistance >= maxSupportDistance) continue;
+            if (currentSupport <= 0 || currentDistance >= state.maxSupportDistance) continue;
             
             // Check all six adjacent blocks
-            for (Direction direction : Direction.values()) {
-                BlockPos neighbor = current.relative(direction);
+            for (int d = 0; d < neighborOffsets.length; d++) {
+                int neighbor = current + neighborOffsets[d];
                 
-                // Skip if outside calculation radius
-                if (neighbor.distSqr(center) > radius * radius) continue;
-                
-                // Skip if air
-                if (level.isEmptyBlock(neighbor)) continue;
+                // Skip if air (padding cells around the cube are always air)
+                if (!grid.isSolid(neighbor)) continue;
                 
                 // Calculate support transfer
-                double transferredSupport = calculateSupportTransfer(level, current, neighbor, currentSupport, direction);
+                float transferredSupport = SupportTransfer.transfer(currentSupport,
+                    grid.getSupportFactor(current), grid.getSupportFactor(neighbor), directionalFactors[d], SUPPORT_DECAY);
                 
                 // If this provides more support than the neighbor already has
-                if (transferredSupport > supportMap.getOrDefault(neighbor, 0.0)) {
-                    // Update support value
-                    supportMap.put(neighbor.immutable(), transferredSupport);
+                if (SupportTransfer.isBetter(transferredSupport, currentDistance + 1,
+                        grid.getSupport(neighbor), grid.getDistance(neighbor))) {
+                    grid.setSupport(neighbor, transferredSupport);
+                    grid.setDistance(neighbor, (short) (currentDistance + 1));
+                    grid.setParent(neighbor, oppositeOf(d));
                     
-                    // Add to queue for further propagation if not already processed
-                    if (!processed.contains(neighbor)) {
-                        queue.add(neighbor.immutable());
-                        processed.add(neighbor.immutable());
-                        distanceFromFoundation.put(neighbor, currentDistance + 1);
+                    if (!grid.isQueued(neighbor)) {
+                        grid.setQueued(neighbor, true);
+                        queue[(head + queued++) % volume] = neighbor;
                     }
                 }
             }
         }
         
-        // Cache support values for future use
-        cacheSupport(level, supportMap);
+        state.head = head;
+        state.queued = queued;
+        return queued == 0;
+    }
+    
+    private static byte oppositeOf(int direction) {
+        // Direction ordinals come in opposite pairs: down/up, north/south, west/east
+        return (byte) (direction ^ 1);
+    }
+    
+    /**
+     * Updates a level's support field in place after the blocks at the given positions changed.
+     * Only the changed blocks, the blocks whose best-support path ran through them, and the blocks above them
+     * whose foundation status may have changed are reset. They are re-seeded from their intact neighbors,
+     * and any support gain is then propagated outward, so the work grows with the number of affected
+     * blocks rather than with the size of the region. All changes are reset together and propagated once.
+     *
+     * @param level The level the changes happened in
+     * @param changes The packed positions of the changed blocks
+     * @param maxBlocks The most blocks to update incrementally before falling back to a region solve
+     * @return false if the field does not cover the changes and a region solve is needed instead
+     */
+    private boolean updateSupportIncrementally(Level level, LongArrayList changes, int maxBlocks) {
+        SupportField field = supportCache.get(level);
+        if (field == null) return false;
+        
+        if (!coversChanges(field, level, changes)) return false;
         
-        return supportMap;
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        BlockPos.MutableBlockPos neighborPos = new BlockPos.MutableBlockPos();
+        
+        int maxSupportDistance = ARConfig.COMMON.maxSupportDistance.get();
+        double[] directionalFactors = getDirectionalTransferFactors();
+        FoundationIndex foundations = getFoundationIndex(level);
+        
+        // Collect the blocks to reset: the changed blocks, everything that depended on them, and the
+        // blocks standing on them that may have gained or lost ground support
+        resetBlocks.clear();
+        resetOrder.clear();
+        for (int i = 0; i < changes.size(); i++) {
+            long changed = changes.getLong(i);
+            if (field.containsKey(changed) && resetBlocks.add(changed)) {
+                resetOrder.add(changed);
+            }
+            for (int dy = 1; dy <= ARConfig.COMMON.foundationDepth.get(); dy++) {
+                long above = BlockPos.offset(changed, 0, dy, 0);
+                if (field.containsKey(above) && resetBlocks.add(above)) {
+                    resetOrder.add(above);
+                }
+            }
+        }
+        if (!field.collectDependents(resetBlocks, resetOrder, maxBlocks)) {
+            return abortIncrementalUpdate(field);
+        }
+        
+        for (int i = 0; i < resetOrder.size(); i++) {
+            field.remove(resetOrder.getLong(i));
+        }
+        for (int i = 0; i < changes.size(); i++) {
+            long changed = changes.getLong(i);
+            if (!level.getBlockState(pos.set(changed)).isAir() && resetBlocks.add(changed)) {
+                resetOrder.add(changed);
+            }
+        }
+        
+        // Re-seed each reset block from its best intact neighbor; reset neighbors feed each other
+        // through the propagation below
+        fieldQueue.clear();
+        for (int i = 0; i < resetOrder.size(); i++) {
+            long key = resetOrder.getLong(i);
+            BlockState state = level.getBlockState(pos.set(key));
+            if (state.isAir()) continue;
+            
+            if (foundations.isFoundation(pos)) {
+                field.put(key, MAX_SUPPORT, FOUNDATION_DISTANCE, SupportMap.NO_PARENT);
+                fieldQueue.enqueue(key);
+                continue;
+            }
+            
+            float factor = getSupportFactor(state);
+            float bestSupport = 0.0f;
+            short bestDistance = SupportMap.NO_DISTANCE;
+            byte bestParent = SupportMap.NO_PARENT;
+            for (Direction direction : DIRECTIONS) {
+                long neighbor = BlockPos.offset(key, direction);
+                if (resetBlocks.contains(neighbor)) continue;
+                
+                // Reading a block in an unloaded chunk would load it; leave the area to a region solve
+                if (!isChunkLoaded(level, neighborPos.set(neighbor))) {
+                    return abortIncrementalUpdate(field);
+                }
+                BlockState neighborState = level.getBlockState(neighborPos);
+                if (neighborState.isAir()) continue;
+                
+                // A solid neighbor the field has never seen may hold support we don't know about
+                float neighborSupport = field.peek(neighbor);
+                if (Float.isNaN(neighborSupport)) {
+                    return abortIncrementalUpdate(field);
+                }
+                
+                short neighborDistance = field.getDistance(neighbor);
+                if (neighborSupport <= 0 || neighborDistance >= maxSupportDistance) continue;
+                
+                // Support flows from the neighbor back towards this block
+                float transferredSupport = SupportTransfer.transfer(neighborSupport,
+                    getSupportFactor(neighborState), factor,
+                    directionalFactors[oppositeOf(direction.ordinal())], SUPPORT_DECAY);
+                if (SupportTransfer.isBetter(transferredSupport, neighborDistance + 1, bestSupport, bestDistance)) {
+                    bestSupport = transferredSupport;
+                    bestDistance = (short) (neighborDistance + 1);
+                    bestParent = (byte) direction.ordinal();
+                }
+            }
+            
+            field.put(key, bestSupport, bestDistance, bestParent);
+            if (bestSupport > 0) {
+                fieldQueue.enqueue(key);
+            }
+        }
+        
+        // Propagate from the re-seeded blocks; a placed block can also raise support beyond the reset set
+        int work = 0;
+        while (!fieldQueue.isEmpty()) {
+            if (++work > maxBlocks) {
+                return abortIncrementalUpdate(field);
+            }
+            
+            long current = fieldQueue.dequeueLong();
+            float currentSupport = field.peek(current);
+            int currentDistance = field.getDistance(current);
+            if (currentSupport <= 0 || currentDistance >= maxSupportDistance) continue;
+            
+            float currentFactor = getSupportFactor(level.getBlockState(pos.set(current)));
+            for (Direction direction : DIRECTIONS) {
+                long neighbor = BlockPos.offset(current, direction);
+                if (!isChunkLoaded(level, neighborPos.set(neighbor))) {
+                    return abortIncrementalUpdate(field);
+                }
+                BlockState neighborState = level.getBlockState(neighborPos);
+                if (neighborState.isAir()) continue;
+                
+                float neighborSupport = field.peek(neighbor);
+                if (Float.isNaN(neighborSupport)) {
+                    return abortIncrementalUpdate(field);
+                }
+                
+                float transferredSupport = SupportTransfer.transfer(currentSupport, currentFactor,
+                    getSupportFactor(neighborState), directionalFactors[direction.ordinal()], SUPPORT_DECAY);
+                if (SupportTransfer.isBetter(transferredSupport, currentDistance + 1,
+                        neighborSupport, field.getDistance(neighbor))) {
+                    field.put(neighbor, transferredSupport, (short) (currentDistance + 1), oppositeOf(direction.ordinal()));
+                    fieldQueue.enqueue(neighbor);
+                    if (resetBlocks.add(neighbor)) {
+                        resetOrder.add(neighbor);
+                    }
+                }
+            }
+        }
+        
+        // Support only dropped for reset blocks, so only they can have become unstable
+        List<BlockPos> unstableBlocks = new ArrayList<>();
+        for (int i = 0; i < resetOrder.size(); i++) {
+            long key = resetOrder.getLong(i);
+            float support = field.peek(key);
+            if (!Float.isNaN(support) && support < STABILITY_THRESHOLD) {
+                unstableBlocks.add(BlockPos.of(key));
+            }
+        }
+        if (!unstableBlocks.isEmpty()) {
+            handleCollapse(level, unstableBlocks);
+        }
+        return true;
+    }
+    
+    private static boolean isChunkLoaded(Level level, BlockPos pos) {
+        return level.getChunkSource().getChunkNow(SectionPos.blockToSectionCoord(pos.getX()),
+            SectionPos.blockToSectionCoord(pos.getZ())) != null;
+    }
+    
+    /**
+     * Drops everything an unfinished incremental update touched, along with anything depending on it,
+     * so the field never keeps half-updated values.
+     */
+    /**
+     * Checks whether the support field knows enough about a set of changes to update them incrementally.
+     * Nothing is known about an untracked block that was removed, so its area needs a full solve.
+     */
+    private static boolean coversChanges(SupportField field, Level level, LongArrayList changes) {
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < changes.size(); i++) {
+            long changed = changes.getLong(i);
+            if (!field.containsKey(changed) && level.getBlockState(pos.set(changed)).isAir()) return false;
+        }
+        return true;
+    }
+    
+    private boolean abortIncrementalUpdate(SupportField field) {
+        field.collectDependents(resetBlocks, resetOrder, Integer.MAX_VALUE);
+        for (int i = 0; i < resetOrder.size(); i++) {
+            field.remove(resetOrder.getLong(i));
+        }
+        return false;
     }
     
-    private Double getCachedSupport(Level level, BlockPos pos) {
-        if (supportCache.containsKey(level)) {
-            return supportCache.get(level).get(pos);
+    /**
+     * Marks every foundation block in a grid loaded from the live level, reading each cell's status from
+     * the level's foundation index instead of walking the columns below the grid.
+     */
+    private void markFoundations(FoundationIndex foundations, VoxelGrid grid) {
+        BlockPos min = grid.getMinCorner();
+        for (int y = 1; y < grid.getSizeY() - 1; y++) {
+            for (int z = 1; z < grid.getSizeZ() - 1; z++) {
+                int index = grid.indexOf(1, y, z);
+                for (int x = 1; x < grid.getSizeX() - 1; x++, index++) {
+                    if (grid.isSolid(index) && foundations.isFoundation(min.getX() + x - 1, min.getY() + y - 1, min.getZ() + z - 1)) {
+                        grid.markFoundation(index);
+                    }
+                }
+            }
         }
-        return null;
     }
     
-    private void cacheSupport(Level level, Map<BlockPos, Double> supportMap) {
+    private FoundationIndex getFoundationIndex(Level level) {
+        return foundationIndexes.computeIfAbsent(level,
+            k -> new FoundationIndex(k, blockPropertyManager, ARConfig.COMMON.foundationDepth.get()));
+    }
+    
+    private boolean isUnbreakable(BlockState state) {
+        return blockPropertyManager.getStateTable().isFoundationMaterial(state);
+    }
+    
+    private float getSupportFactor(BlockState state) {
+        // Read from the same table VoxelGrid is loaded from, so both solvers produce identical values
+        return blockPropertyManager.getStateTable().getSupportFactor(state);
+    }
+    
+    /**
+     * Writes a solved grid into the level's support field.
+     * Blocks outside the cube whose parent link points into it were solved against the old blocks,
+     * so they and everything depending on them are dropped from the field.
+     */
+    private void cacheSupport(Level level, VoxelGrid grid) {
         // Initialize cache for this level if needed
-        supportCache.computeIfAbsent(level, k -> new HashMap<>());
-        Map<BlockPos, Double> levelCache = supportCache.get(level);
+        SupportField levelCache = supportCache.getOrCreate(level);
         
-        // Add new values to cache
-        for (Map.Entry<BlockPos, Double> entry : supportMap.entrySet()) {
-            levelCache.put(entry.getKey(), entry.getValue());
+        resetBlocks.clear();
+        resetOrder.clear();
+        for (int index = 0; index < grid.getVolume(); index++) {
+            long pos = grid.asLong(index);
+            
+            if (!grid.isInside(index)) {
+                byte parent = levelCache.getParent(pos);
+                if (parent != SupportMap.NO_PARENT && grid.isInside(index + grid.neighborOffset(DIRECTIONS[parent]))
+                        && resetBlocks.add(pos)) {
+                    resetOrder.add(pos);
+                }
+            } else if (grid.isSolid(index)) {
+                levelCache.put(pos, grid.getSupport(index), grid.getDistance(index), grid.getParent(index));
+            } else {
+                levelCache.remove(pos);
+            }
         }
         
-        // Trim cache if it gets too large
-        if (levelCache.size() > maxCacheSize) {
-            // Simple approach: just clear the cache when it gets too big
-            // A more sophisticated approach would be to use a LRU cache
-            levelCache.clear();
+        levelCache.collectDependents(resetBlocks, resetOrder, Integer.MAX_VALUE);
+        for (int i = 0; i < resetOrder.size(); i++) {
+            levelCache.remove(resetOrder.getLong(i));
         }
     }
     
-    private double calculateSupportTransfer(Level level, BlockPos source, BlockPos target, double sourceSupport, Direction direction) {
-        // Get block properties
-        BlockState sourceState = level.getBlockState(source);
-        BlockState targetState = level.getBlockState(target);
-        
-        // Get support factors for the blocks
-        double sourceFactor = blockPropertyManager.getSupportFactor(sourceState.getBlock());
-        double targetFactor = blockPropertyManager.getSupportFactor(targetState.getBlock());
-        
-        // Base support transfer is the minimum of the two factors
-        double transferFactor = Math.min(sourceFactor, targetFactor);
+    private double[] getDirectionalTransferFactors() {
+        double[] factors = new double[DIRECTIONS.length];
+        for (Direction direction : DIRECTIONS) {
+            factors[direction.ordinal()] = getDirectionalTransferFactor(direction);
+        }
+        return factors;
+    }
+    
+    /**
+     * Gets the multiplier applied to support crossing into a neighbor in the given direction.
+     * Zero means no support flows that way.
+     */
+    private double getDirectionalTransferFactor(Direction direction) {
+        double transferFactor;
         
         // Apply direction-specific modifiers
         if (direction == Direction.UP) {
             // Support from below is strongest
-            transferFactor *= ARConfig.COMMON.supportFactor.get();
+            transferFactor = ARConfig.COMMON.supportFactor.get();
         } else if (direction == Direction.DOWN) {
             // Support from above (hanging) is weaker
             if (ARConfig.COMMON.enableHangingSupport.get()) {
-                transferFactor *= ARConfig.COMMON.supportFactor.get() * 0.5;
+                transferFactor = ARConfig.COMMON.supportFactor.get() * 0.5;
             } else {
                 return 0.0; // No hanging support if disabled
             }
         } else {
             // Horizontal support
-            transferFactor *= ARConfig.COMMON.supportFactor.get() * 0.7;
+            transferFactor = ARConfig.COMMON.supportFactor.get() * 0.7;
         }
         
-        // Calculate final support value
-        double supportTransfer = sourceSupport * transferFactor;
-        
-        // Apply distance decay
-        supportTransfer *= 0.9; // 10% decay per block
-        
-        return supportTransfer;
+        return transferFactor;
     }
     
-    private List<BlockPos> findUnstableBlocks(Level level, Map<BlockPos, Double> supportMap) {
+    private List<BlockPos> findUnstableBlocks(VoxelGrid grid) {
         List<BlockPos> unstableBlocks = new ArrayList<>();
-        double stabilityThreshold = 10.0; // Minimum support needed for stability
         
-        for (Map.Entry<BlockPos, Double> entry : supportMap.entrySet()) {
-            BlockPos pos = entry.getKey();
-            double support = entry.getValue();
-            
-            // Skip air blocks
-            if (level.isEmptyBlock(pos)) continue;
-            
-            // Check if block has enough support
-            if (support < stabilityThreshold) {
+        // Walk the solid cells only, skipping empty space a mask word at a time
+        for (int index = grid.nextSolid(0); index >= 0; index = grid.nextSolid(index + 1)) {
+            if (grid.getSupport(index) < STABILITY_THRESHOLD) {
                 // Block is unstable
-                unstableBlocks.add(pos);
+                unstableBlocks.add(grid.getPos(index));
             }
         }
         
         return unstableBlocks;
     }
     
+    /**
+     * Removes unstable blocks from the level as one batch, see {@link CollapseBatch}.
+     */
     private void handleCollapse(Level level, List<BlockPos> unstableBlocks) {
+        if (!(level instanceof ServerLevel serverLevel)) return;
+        
         // Sort blocks by height (top to bottom) to simulate natural collapse
         unstableBlocks.sort((a, b) -> Integer.compare(b.getY(), a.getY()));
+        CollapseBatch.Result result = CollapseBatch.apply(serverLevel, unstableBlocks,
+            ARConfig.COMMON.enableFallingBlocks.get(), ARConfig.COMMON.maxFallingBlocksPerChunk.get());
+        LongArrayList removed = result.getRemoved();
         
-        for (BlockPos pos : unstableBlocks) {
-            // Skip if block has been processed already (might have been destroyed by another falling block)
-            if (level.isEmptyBlock(pos)) continue;
-            
-            BlockState blockState = level.getBlockState(pos);
-            
-            // Create falling block entity
-            boolean enableFallingBlocks = true; // Default to true if config option not available
-            
-            if (enableFallingBlocks) {
-                try {
-                    // Use the appropriate constructor for FallingBlockEntity in 1.21.1
-                    FallingBlockEntity fallingBlock = FallingBlockEntity.fall(
-                        level, 
-                        pos, 
-                        blockState
-                    );
-                    
-                    // Remove the original block
-                    level.removeBlock(pos, false);
-                    
-                    // Add the falling block entity to the level
-                    level.addFreshEntity(fallingBlock);
-                    
-                    ArchitecturalRealism.LOGGER.debug("Block at {} collapsed and is now falling", pos);
-                } catch (Exception e) {
-                    ArchitecturalRealism.LOGGER.error("Error creating falling block at {}: {}", pos, e.getMessage());
-                    // Fallback: just destroy the block
-                    level.destroyBlock(pos, true);
+        // Removed blocks don't fire neighbor notify events, so nothing else tells the index about them,
+        // and async solves that read them before they fell are now stale
+        LevelUpdateState state = getLevelState(level);
+        FoundationIndex foundations = foundationIndexes.get(level);
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < removed.size(); i++) {
+            state.sectionVersions.addTo(SectionPos.blockToSection(removed.getLong(i)), 1);
+            if (foundations != null) {
+                foundations.onBlockChanged(pos.set(removed.getLong(i)));
+            }
+        }
+        
+        // Debris that landed at once is new to the level the same way, and gets its own check like a placed block
+        LongArrayList landed = result.getLanded();
+        if (!landed.isEmpty()) {
+            if (foundations != null) {
+                for (int i = 0; i < landed.size(); i++) {
+                    foundations.onBlockChanged(pos.set(landed.getLong(i)));
                 }
-            } else {
-                // Just destroy the block if falling blocks are disabled
-                level.destroyBlock(pos, true);
-                ArchitecturalRealism.LOGGER.debug("Unstable block at {} was destroyed", pos);
             }
+            scheduleGroupUpdate(level, landed, 0);
+        }
+        
+        // Collapsed blocks stay in the field until the cascade re-checks them, so what depended on them can
+        // still be found; in SIMPLE mode everything disconnected has already fallen
+        SupportField levelCache = supportCache.get(level);
+        boolean cascade = ARConfig.COMMON.physicsMode.get() == ARConfig.PhysicsMode.REALISTIC;
+        if (cascade) {
+            state.cascade.addCollapsed(removed);
+        }
+        if (levelCache != null) {
+            LongOpenHashSet kept = cascade ? new LongOpenHashSet(removed) : new LongOpenHashSet();
+            for (BlockPos unstable : unstableBlocks) {
+                if (!kept.contains(unstable.asLong())) {
+                    levelCache.remove(unstable.asLong());
+                }
+            }
+        }
+        ArchitecturalRealism.LOGGER.debug("{} blocks collapsed in {}", removed.size(), level.dimension().location());
+    }
+    
+    // Progress of support propagation through a grid, so it can be paused and resumed
+    private static class SupportPropagation {
+        final VoxelGrid grid;
+        final int maxSupportDistance;
+        final double[] directionalFactors;
+        final int[] neighborOffsets = new int[DIRECTIONS.length];
+        // Start and length of the ring buffer in grid.getQueue()
+        int head;
+        int queued;
+        
+        SupportPropagation(VoxelGrid grid, int maxSupportDistance, double[] directionalFactors) {
+            this.grid = grid;
+            this.maxSupportDistance = maxSupportDistance;
+            this.directionalFactors = directionalFactors;
+            for (Direction direction : DIRECTIONS) {
+                neighborOffsets[direction.ordinal()] = grid.neighborOffset(direction);
+            }
+        }
+    }
+    
+    // A region solve on the server thread that may span several ticks
+    private static class ActiveSolve {
+        final StructuralUpdateTask task;
+        final VoxelGrid grid;
+        final SupportPropagation propagation;
+        final Long2IntOpenHashMap sectionVersions;
+        long elapsedNanos;
+        int ticks;
+        
+        ActiveSolve(StructuralUpdateTask task, VoxelGrid grid, SupportPropagation propagation,
+                    Long2IntOpenHashMap sectionVersions) {
+            this.task = task;
+            this.grid = grid;
+            this.propagation = propagation;
+            this.sectionVersions = sectionVersions;
         }
     }
     
-    // Helper class to store structural update tasks
-    private static class StructuralUpdateTask {
-        final Level level;
-        final BlockPos position;
-        final int radius;
+    // Helper class to carry a finished async solve back to the server thread
+    private static class SolveResult {
+        final StructuralUpdateTask task;
+        final RegionSnapshot snapshot;
+        final VoxelGrid grid;
+        final List<BlockPos> unstableBlocks;
         
-        StructuralUpdateTask(Level level, BlockPos position, int radius) {
-            this.level = level;
-            this.position = position;
-            this.radius = radius;
+        SolveResult(StructuralUpdateTask task, RegionSnapshot snapshot, VoxelGrid grid,
+                    List<BlockPos> unstableBlocks) {
+            this.task = task;
+            this.snapshot = snapshot;
+            this.grid = grid;
+            this.unstableBlocks = unstableBlocks;
         }
     }
 }
@@ -0,0 +1,143 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.level.Level;
+
+/**
+ * A pending structural update: the blocks that changed in one area of a level and the box around them
+ * that a region solve has to cover. Edits close to each other are merged into one task by
+ * {@link UpdateQueue}, so the box grows to the bounding box of every merged edit.
+ */
+public class StructuralUpdateTask {
+    final Level level;
+    final int radius;
+    final long createdTick;
+    long lastEditTick;
+    // Non-air blocks covered by the task, or -1 if not estimated since the last change
+    long estimatedBlocks = -1;
+    // Distance from the box's center to the nearest player, refreshed periodically by the queue
+    double playerDistance = Double.MAX_VALUE;
+    boolean lowPriority;
+
+    // Changed positions in the order they were first edited, without duplicates
+    final LongArrayList changedPositions = new LongArrayList();
+    private final LongOpenHashSet changedSet = new LongOpenHashSet();
+    // Sections of the changed positions, which the queue indexes the task under
+    final LongOpenHashSet sections = new LongOpenHashSet();
+
+    private int minX;
+    private int minY;
+    private int minZ;
+    private int maxX;
+    private int maxY;
+    private int maxZ;
+
+    StructuralUpdateTask(Level level, BlockPos position, int radius, long tick) {
+        this.level = level;
+        this.radius = radius;
+        this.createdTick = tick;
+        this.minX = position.getX() - radius;
+        this.minY = position.getY() - radius;
+        this.minZ = position.getZ() - radius;
+        this.maxX = position.getX() + radius;
+        this.maxY = position.getY() + radius;
+        this.maxZ = position.getZ() + radius;
+        addChange(position, tick);
+    }
+
+    /**
+     * Records another changed block and grows the box to cover the area around it.
+     */
+    void addChange(BlockPos position, long tick) {
+        long pos = position.asLong();
+        if (changedSet.add(pos)) {
+            changedPositions.add(pos);
+            sections.add(SectionPos.blockToSection(pos));
+        }
+        minX = Math.min(minX, position.getX() - radius);
+        minY = Math.min(minY, position.getY() - radius);
+        minZ = Math.min(minZ, position.getZ() - radius);
+        maxX = Math.max(maxX, position.getX() + radius);
+        maxY = Math.max(maxY, position.getY() + radius);
+        maxZ = Math.max(maxZ, position.getZ() + radius);
+        lastEditTick = tick;
+        estimatedBlocks = -1;
+    }
+
+    /**
+     * Gets the number of blocks in the box after the area around another change was added to it.
+     */
+    long getVolumeWith(BlockPos position) {
+        long sizeX = Math.max(maxX, position.getX() + radius) - Math.min(minX, position.getX() - radius) + 1;
+        long sizeY = Math.max(maxY, position.getY() + radius) - Math.min(minY, position.getY() - radius) + 1;
+        long sizeZ = Math.max(maxZ, position.getZ() + radius) - Math.min(minZ, position.getZ() - radius) + 1;
+        return sizeX * sizeY * sizeZ;
+    }
+
+    /**
+     * Checks whether the area around a change overlaps or touches the box.
+     */
+    boolean touches(BlockPos position) {
+        return position.getX() - radius <= maxX + 1 && position.getX() + radius >= minX - 1
+            && position.getY() - radius <= maxY + 1 && position.getY() + radius >= minY - 1
+            && position.getZ() - radius <= maxZ + 1 && position.getZ() + radius >= minZ - 1;
+    }
+
+    /**
+     * Checks whether any changed block lies in the given chunk.
+     */
+    boolean hasChangeIn(int chunkX, int chunkZ) {
+        LongIterator iterator = sections.iterator();
+        while (iterator.hasNext()) {
+            long sectionKey = iterator.nextLong();
+            if (SectionPos.x(sectionKey) == chunkX && SectionPos.z(sectionKey) == chunkZ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * Gets the lowest corner of the box a region solve has to cover, inclusive.
+     */
+    public BlockPos getMin() {
+        return new BlockPos(minX, minY, minZ);
+    }
+
+    /**
+     * Gets the highest corner of the box a region solve has to cover, inclusive.
+     */
+    public BlockPos getMax() {
+        return new BlockPos(maxX, maxY, maxZ);
+    }
+
+    /**
+     * Gets the block at the center of the box.
+     */
+    public BlockPos getCenter() {
+        return new BlockPos((minX + maxX) >> 1, (minY + maxY) >> 1, (minZ + maxZ) >> 1);
+    }
+
+    /**
+     * Checks whether the task is far from every player or in chunks that aren't ticking, so it only
+     * runs when nothing more urgent is waiting.
+     */
+    public boolean isLowPriority() {
+        return lowPriority;
+    }
+
+    /**
+     * Gets the number of distinct blocks whose changes were merged into this task.
+     */
+    public int getChangeCount() {
+        return changedPositions.size();
+    }
+}
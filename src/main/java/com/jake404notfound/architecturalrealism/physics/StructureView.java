@@ -0,0 +1,37 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.world.level.block.state.BlockState;
+
+/**
+ * Read-only view of the blocks that a structural solve works on.
+ * The solver only ever reads the world through this interface, so the same code can run
+ * against the live level on the server thread or against a {@link RegionSnapshot} on a worker thread.
+ */
+public interface StructureView {
+
+    /**
+     * Gets the block state at the given position.
+     *
+     * @param pos The position to read
+     * @return The block state at that position
+     */
+    BlockState getBlockState(BlockPos pos);
+
+    /**
+     * Checks whether the given position is air.
+     *
+     * @param pos The position to check
+     * @return true if the position contains no block
+     */
+    default boolean isEmptyBlock(BlockPos pos) {
+        return getBlockState(pos).isAir();
+    }
+
+    /**
+     * Gets the lowest buildable Y coordinate of the level this view was taken from.
+     *
+     * @return The minimum build height
+     */
+    int getMinBuildHeight();
+}
@@ -0,0 +1,136 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import net.minecraft.world.level.Level;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the {@link SupportField} of every level and keeps their combined size under a memory limit.
+ * When the limit is exceeded, whole sections are evicted until usage drops a little below it.
+ * Sections used on only a few separate ticks go first, least recently used first, so one-off solves
+ * in the wilderness are dropped before busy areas such as builds around spawn.
+ * Only used on the server thread.
+ */
+public class SupportCache {
+    // Sections used on at least this many separate ticks are only evicted once no others are left
+    private static final int PROTECTED_USES = 4;
+    // Evicting down to below the limit keeps the cache from evicting again on the very next write
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final Map<Level, SupportField> fields = new HashMap<>();
+    private long maxBytes = Long.MAX_VALUE;
+    private long clock;
+
+    /**
+     * Sets the memory limit shared by all levels.
+     *
+     * @param maxBytes The limit in bytes
+     */
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Advances the clock sections are stamped with when used. Called once per server tick.
+     */
+    public void tick() {
+        clock++;
+    }
+
+    @Nullable
+    public SupportField get(Level level) {
+        return fields.get(level);
+    }
+
+    public SupportField getOrCreate(Level level) {
+        return fields.computeIfAbsent(level, k -> new SupportField(() -> clock));
+    }
+
+    /**
+     * Gets the field of every level that has one, for reporting.
+     */
+    public Map<Level, SupportField> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Gets the estimated memory held by all levels' fields.
+     */
+    public long getTotalBytes() {
+        long total = 0;
+        for (SupportField field : fields.values()) {
+            total += field.getEstimatedBytes();
+        }
+        return total;
+    }
+
+    /**
+     * Evicts sections until the fields fit in the memory limit again.
+     *
+     * @return The number of sections evicted
+     */
+    public int enforceLimit() {
+        long total = getTotalBytes();
+        if (total <= maxBytes) {
+            return 0;
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (SupportField field : fields.values()) {
+            field.forEachSection((sectionKey, lastUsed, uses) ->
+                candidates.add(new Candidate(field, sectionKey, lastUsed, uses >= PROTECTED_USES)));
+        }
+        candidates.sort(Comparator.comparing((Candidate candidate) -> candidate.isProtected)
+            .thenComparingLong(candidate -> candidate.lastUsed));
+
+        long target = (long) (maxBytes * EVICTION_TARGET);
+        int evicted = 0;
+        for (Candidate candidate : candidates) {
+            if (total <= target) break;
+            total -= candidate.field.evictSection(candidate.sectionKey);
+            evicted++;
+        }
+
+        // Let use counts fade so protection follows where players are building now
+        for (SupportField field : fields.values()) {
+            field.ageSections();
+        }
+        return evicted;
+    }
+
+    /**
+     * Drops the field of a level that is being unloaded.
+     */
+    public void remove(Level level) {
+        fields.remove(level);
+    }
+
+    public void clear() {
+        fields.clear();
+    }
+
+    // A section that could be evicted
+    private static class Candidate {
+        final SupportField field;
+        final long sectionKey;
+        final long lastUsed;
+        final boolean isProtected;
+
+        Candidate(SupportField field, long sectionKey, long lastUsed, boolean isProtected) {
+            this.field = field;
+            this.sectionKey = sectionKey;
+            this.lastUsed = lastUsed;
+            this.isProtected = isProtected;
+        }
+    }
+}
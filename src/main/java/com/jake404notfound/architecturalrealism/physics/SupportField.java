@@ -0,0 +1,433 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+
+import javax.annotation.Nullable;
+import java.util.function.LongSupplier;
+
+/**
+ * The support values tracked for one level, stored per chunk section.
+ * Each section keeps its own {@link SupportMap}, so dropping part of the field only touches the sections
+ * involved and the rest of the level keeps its cached support. Lookups through {@link #get(long)} are
+ * counted, so the hit rate of the field can be checked, and each section remembers when and on how many
+ * separate ticks it was created or looked up, which {@link SupportCache} uses to pick sections to evict.
+ * The solver reads and writes the field through {@link #peek(long)} and the other accessors, which leave
+ * these statistics alone so they only reflect lookups from outside the solver.
+ * Sections whose entries changed are marked dirty until they are written back to their chunk's
+ * {@link ChunkSupportData}.
+ * Only used on the server thread.
+ */
+public class SupportField {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private final Long2ObjectMap<Section> sections = new Long2ObjectOpenHashMap<>();
+    private final LongOpenHashSet dirtySections = new LongOpenHashSet();
+    private final LongSupplier clock;
+    private int size;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    // Consecutive lookups are almost always in the same section, so remember the last one
+    private long lastSectionKey = Long.MIN_VALUE;
+    @Nullable
+    private Section lastSection;
+
+    /**
+     * Creates an empty field.
+     *
+     * @param clock Supplies the current tick, used to record when each section was last used
+     */
+    public SupportField(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Gets the support value stored for a position, counting the lookup as a hit or a miss.
+     *
+     * @param pos The packed block position
+     * @return The support value, or {@link SupportMap#NO_VALUE} if the position is not tracked
+     */
+    public float get(long pos) {
+        Section section = findSection(SectionPos.blockToSection(pos));
+        float value = section != null ? section.map.get(pos) : SupportMap.NO_VALUE;
+        if (Float.isNaN(value)) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Gets the support value stored for a position without counting the lookup or marking its section used.
+     *
+     * @param pos The packed block position
+     * @return The support value, or {@link SupportMap#NO_VALUE} if the position is not tracked
+     */
+    public float peek(long pos) {
+        Section section = peekSection(SectionPos.blockToSection(pos));
+        return section != null ? section.map.get(pos) : SupportMap.NO_VALUE;
+    }
+
+    public short getDistance(long pos) {
+        Section section = peekSection(SectionPos.blockToSection(pos));
+        return section != null ? section.map.getDistance(pos) : SupportMap.NO_DISTANCE;
+    }
+
+    public byte getParent(long pos) {
+        Section section = peekSection(SectionPos.blockToSection(pos));
+        return section != null ? section.map.getParent(pos) : SupportMap.NO_PARENT;
+    }
+
+    public boolean containsKey(long pos) {
+        Section section = peekSection(SectionPos.blockToSection(pos));
+        return section != null && section.map.containsKey(pos);
+    }
+
+    /**
+     * Stores a support value, distance and parent direction for a position.
+     */
+    public void put(long pos, float value, short distance, byte parent) {
+        long sectionKey = SectionPos.blockToSection(pos);
+        Section section = peekSection(sectionKey);
+        if (section == null) {
+            section = new Section();
+            sections.put(sectionKey, section);
+            bytes += section.map.estimateBytes();
+            lastSectionKey = sectionKey;
+            lastSection = section;
+            touch(section);
+        }
+
+        int sizeBefore = section.map.size();
+        long bytesBefore = section.map.estimateBytes();
+        section.map.put(pos, value, distance, parent);
+        size += section.map.size() - sizeBefore;
+        bytes += section.map.estimateBytes() - bytesBefore;
+        dirtySections.add(sectionKey);
+    }
+
+    /**
+     * Removes the entry for a position, dropping its section once it is empty.
+     *
+     * @return true if an entry was removed
+     */
+    public boolean remove(long pos) {
+        long sectionKey = SectionPos.blockToSection(pos);
+        Section section = peekSection(sectionKey);
+        if (section == null || !section.map.remove(pos)) {
+            return false;
+        }
+
+        size--;
+        dirtySections.add(sectionKey);
+        if (section.map.isEmpty()) {
+            removeSection(sectionKey);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the entries stored for a chunk section.
+     *
+     * @param sectionKey The packed section position ({@code SectionPos.asLong()})
+     * @return The section's entries, or null if none of its blocks are tracked
+     */
+    @Nullable
+    public SupportMap getSection(long sectionKey) {
+        Section section = peekSection(sectionKey);
+        return section != null ? section.map : null;
+    }
+
+    /**
+     * Drops every entry of a chunk section.
+     * Entries in other sections whose parent links lead into it are left alone; use
+     * {@link #evictSection(long)} when those must go too.
+     *
+     * @param sectionKey The packed section position ({@code SectionPos.asLong()})
+     * @return The number of entries removed
+     */
+    public int removeSection(long sectionKey) {
+        Section section = sections.remove(sectionKey);
+        if (sectionKey == lastSectionKey) {
+            lastSection = null;
+        }
+        if (section == null) {
+            return 0;
+        }
+
+        size -= section.map.size();
+        bytes -= section.map.estimateBytes();
+        dirtySections.add(sectionKey);
+        return section.map.size();
+    }
+
+    /**
+     * Drops a chunk section together with every tracked block elsewhere whose support path runs through
+     * it. Those blocks could otherwise keep stale values after the section's blocks change, since the
+     * field would no longer know they depend on them.
+     * The section's saved copy in its chunk is still correct, so it is not marked dirty.
+     *
+     * @param sectionKey The packed section position ({@code SectionPos.asLong()})
+     * @return The number of bytes freed
+     */
+    public long evictSection(long sectionKey) {
+        if (!sections.containsKey(sectionKey)) {
+            return 0;
+        }
+
+        long bytesBefore = bytes;
+        boolean wasDirty = dirtySections.contains(sectionKey);
+        removeWithDependents(sectionKey);
+        if (!wasDirty) {
+            dirtySections.remove(sectionKey);
+        }
+
+        evictions++;
+        return bytesBefore - bytes;
+    }
+
+    /**
+     * Drops a chunk section whose values are no longer correct, together with every tracked block elsewhere
+     * whose support path runs through it. Unlike {@link #evictSection(long)}, the section's saved copy is
+     * dropped as well on the next flush.
+     *
+     * @param sectionKey The packed section position ({@code SectionPos.asLong()})
+     * @return The number of entries removed
+     */
+    public int invalidateSection(long sectionKey) {
+        if (!sections.containsKey(sectionKey)) {
+            return 0;
+        }
+        int sizeBefore = size;
+        removeWithDependents(sectionKey);
+        return sizeBefore - size;
+    }
+
+    private void removeWithDependents(long sectionKey) {
+        LongOpenHashSet removed = new LongOpenHashSet();
+        LongArrayList order = new LongArrayList();
+        SupportMap map = sections.get(sectionKey).map;
+        for (int slot = 0; slot < map.capacity(); slot++) {
+            if (map.isOccupied(slot)) {
+                removed.add(map.keyAt(slot));
+                order.add(map.keyAt(slot));
+            }
+        }
+
+        collectDependents(removed, order, Integer.MAX_VALUE);
+        removeSection(sectionKey);
+        for (int i = 0; i < order.size(); i++) {
+            remove(order.getLong(i));
+        }
+    }
+
+    /**
+     * Extends a set of positions with every tracked block whose best-support path runs through one of
+     * them, by following parent links backwards.
+     *
+     * @param blocks The positions collected so far
+     * @param order The same positions in the order they were added; dependents are appended
+     * @param limit The largest number of positions to collect
+     * @return false if more than limit positions were collected
+     */
+    public boolean collectDependents(LongOpenHashSet blocks, LongArrayList order, int limit) {
+        for (int i = 0; i < order.size(); i++) {
+            long current = order.getLong(i);
+            for (Direction direction : DIRECTIONS) {
+                long neighbor = BlockPos.offset(current, direction);
+
+                // The neighbor depends on this block if its parent link points back here
+                if (getParent(neighbor) == direction.getOpposite().ordinal() && blocks.add(neighbor)) {
+                    order.add(neighbor);
+                    if (order.size() > limit) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a section changed since it was last written back to its chunk.
+     *
+     * @param sectionKey The packed section position ({@code SectionPos.asLong()})
+     */
+    public boolean isDirty(long sectionKey) {
+        return dirtySections.contains(sectionKey);
+    }
+
+    /**
+     * Marks a section as matching the copy saved in its chunk, such as right after restoring it.
+     *
+     * @param sectionKey The packed section position ({@code SectionPos.asLong()})
+     */
+    public void markSaved(long sectionKey) {
+        dirtySections.remove(sectionKey);
+    }
+
+    /**
+     * Marks every section as changed, so all of them are written back on the next flush.
+     * Used when the saved copies were stamped with an outdated version.
+     */
+    public void markAllDirty() {
+        dirtySections.addAll(sections.keySet());
+    }
+
+    /**
+     * Gets the packed positions of every section that has at least one tracked block.
+     */
+    public long[] getSectionKeys() {
+        return sections.keySet().toLongArray();
+    }
+
+    /**
+     * Calls the visitor for every section that changed since the last flush, then marks them all saved.
+     * Sections that were emptied are passed with a null map so their saved copy can be dropped.
+     */
+    public void flushDirtySections(DirtySectionVisitor visitor) {
+        if (dirtySections.isEmpty()) return;
+
+        LongIterator iterator = dirtySections.iterator();
+        while (iterator.hasNext()) {
+            long sectionKey = iterator.nextLong();
+            Section section = sections.get(sectionKey);
+            visitor.visit(sectionKey, section != null ? section.map : null);
+        }
+        dirtySections.clear();
+    }
+
+    /**
+     * Calls the visitor for every section with its usage statistics.
+     */
+    public void forEachSection(SectionVisitor visitor) {
+        for (Long2ObjectMap.Entry<Section> entry : sections.long2ObjectEntrySet()) {
+            Section section = entry.getValue();
+            visitor.visit(entry.getLongKey(), section.lastUsed, section.uses);
+        }
+    }
+
+    /**
+     * Halves the use count of every section, so sections that were busy long ago lose their protection.
+     */
+    public void ageSections() {
+        for (Section section : sections.values()) {
+            section.uses >>= 1;
+        }
+    }
+
+    /**
+     * Gets the number of sections that have at least one tracked block.
+     */
+    public int getSectionCount() {
+        return sections.size();
+    }
+
+    /**
+     * Gets the number of tracked blocks across all sections.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets an estimate of the heap memory held by the field's sections.
+     */
+    public long getEstimatedBytes() {
+        return bytes;
+    }
+
+    public void clear() {
+        sections.clear();
+        dirtySections.clear();
+        lastSectionKey = Long.MIN_VALUE;
+        lastSection = null;
+        size = 0;
+        bytes = 0;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Gets the fraction of lookups that found a tracked block, or 0 if there were none.
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Gets the number of sections evicted from this field to stay within the cache's memory limit.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    // Finds a section and marks it used
+    @Nullable
+    private Section findSection(long sectionKey) {
+        Section section = peekSection(sectionKey);
+        if (section != null) {
+            touch(section);
+        }
+        return section;
+    }
+
+    @Nullable
+    private Section peekSection(long sectionKey) {
+        if (sectionKey != lastSectionKey) {
+            lastSection = sections.get(sectionKey);
+            lastSectionKey = sectionKey;
+        }
+        return lastSection;
+    }
+
+    private void touch(Section section) {
+        long now = clock.getAsLong();
+        if (section.lastUsed != now) {
+            section.lastUsed = now;
+            section.uses++;
+        }
+    }
+
+    /**
+     * Receives the usage statistics of one section.
+     */
+    @FunctionalInterface
+    public interface SectionVisitor {
+        void visit(long sectionKey, long lastUsed, int uses);
+    }
+
+    /**
+     * Receives a section that changed since it was last saved.
+     */
+    @FunctionalInterface
+    public interface DirtySectionVisitor {
+        void visit(long sectionKey, @Nullable SupportMap section);
+    }
+
+    // A section's entries and when it was used
+    private static class Section {
+        final SupportMap map = new SupportMap();
+        long lastUsed = Long.MIN_VALUE;
+        int uses;
+    }
+}
@@ -0,0 +1,239 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from packed block positions ({@code BlockPos.asLong()}) to support values.
+ * Each entry holds a float support value, a short distance from the nearest foundation and a byte
+ * parent: the ordinal of the {@link net.minecraft.core.Direction} pointing at the neighbor the support
+ * came from. Keys and values live in flat primitive arrays, so lookups never box and a cleared map
+ * can be refilled without allocating.
+ */
+public class SupportMap {
+    /** Returned by {@link #get(long)} when a position has no entry. */
+    public static final float NO_VALUE = Float.NaN;
+    /** Returned by {@link #getDistance(long)} when a position has no entry. */
+    public static final short NO_DISTANCE = -1;
+    /** Returned by {@link #getParent(long)} when a position has no entry or no parent. */
+    public static final byte NO_PARENT = -1;
+
+    // Packs to x = -2^25, which is outside any world border, so it never collides with a real position
+    private static final long EMPTY_KEY = Long.MIN_VALUE;
+    private static final float MAX_LOAD_FACTOR = 0.5f;
+    private static final int DEFAULT_CAPACITY = 64;
+    // One long key, float value, short distance and byte parent per slot, plus the object and array headers
+    private static final int BYTES_PER_SLOT = 8 + 4 + 2 + 1;
+    private static final int BYTES_OVERHEAD = 96;
+
+    private long[] keys;
+    private float[] values;
+    private short[] distances;
+    private byte[] parents;
+    private int mask;
+    private int size;
+
+    public SupportMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a map sized to hold the given number of entries without growing.
+     *
+     * @param expectedSize The expected number of entries
+     */
+    public SupportMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Gets the support value stored for a position.
+     *
+     * @param pos The packed block position
+     * @return The support value, or {@link #NO_VALUE} if the position has no entry
+     */
+    public float get(long pos) {
+        int slot = findSlot(pos);
+        return keys[slot] == EMPTY_KEY ? NO_VALUE : values[slot];
+    }
+
+    /**
+     * Gets the distance stored for a position.
+     *
+     * @param pos The packed block position
+     * @return The distance, or {@link #NO_DISTANCE} if the position has no entry
+     */
+    public short getDistance(long pos) {
+        int slot = findSlot(pos);
+        return keys[slot] == EMPTY_KEY ? NO_DISTANCE : distances[slot];
+    }
+
+    /**
+     * Gets the parent direction stored for a position.
+     *
+     * @param pos The packed block position
+     * @return The parent direction ordinal, or {@link #NO_PARENT} if there is none
+     */
+    public byte getParent(long pos) {
+        int slot = findSlot(pos);
+        return keys[slot] == EMPTY_KEY ? NO_PARENT : parents[slot];
+    }
+
+    public boolean containsKey(long pos) {
+        return keys[findSlot(pos)] != EMPTY_KEY;
+    }
+
+    /**
+     * Stores a support value, distance and parent direction for a position.
+     */
+    public void put(long pos, float value, short distance, byte parent) {
+        int slot = findSlot(pos);
+        if (keys[slot] == EMPTY_KEY) {
+            insertAt(slot, pos, value, distance);
+            slot = findSlot(pos);
+        } else {
+            values[slot] = value;
+            distances[slot] = distance;
+        }
+        parents[slot] = parent;
+    }
+
+    /**
+     * Removes the entry for a position, if there is one.
+     *
+     * @return true if an entry was removed
+     */
+    public boolean remove(long pos) {
+        int slot = findSlot(pos);
+        if (keys[slot] == EMPTY_KEY) {
+            return false;
+        }
+
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != EMPTY_KEY) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                distances[gap] = distances[next];
+                parents[gap] = parents[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = EMPTY_KEY;
+        size--;
+        return true;
+    }
+
+    /**
+     * Removes all entries while keeping the allocated arrays for reuse.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, EMPTY_KEY);
+            size = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of slots in the backing arrays.
+     * Entries can be iterated with {@link #isOccupied(int)}, {@link #keyAt(int)} and {@link #valueAt(int)}.
+     */
+    public int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * Estimates the heap memory held by this map, including unused slots.
+     */
+    public long estimateBytes() {
+        return (long) keys.length * BYTES_PER_SLOT + BYTES_OVERHEAD;
+    }
+
+    public boolean isOccupied(int slot) {
+        return keys[slot] != EMPTY_KEY;
+    }
+
+    public long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    public float valueAt(int slot) {
+        return values[slot];
+    }
+
+    public short distanceAt(int slot) {
+        return distances[slot];
+    }
+
+    public byte parentAt(int slot) {
+        return parents[slot];
+    }
+
+    private int findSlot(long pos) {
+        int slot = mix(pos) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != pos) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void insertAt(int slot, long pos, float value, short distance) {
+        keys[slot] = pos;
+        values[slot] = value;
+        distances[slot] = distance;
+        parents[slot] = NO_PARENT;
+        if (++size > keys.length * MAX_LOAD_FACTOR) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        float[] oldValues = values;
+        short[] oldDistances = distances;
+        byte[] oldParents = parents;
+        allocate(newCapacity);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY_KEY) {
+                int target = findSlot(oldKeys[slot]);
+                keys[target] = oldKeys[slot];
+                values[target] = oldValues[slot];
+                distances[target] = oldDistances[slot];
+                parents[target] = oldParents[slot];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new float[capacity];
+        distances = new short[capacity];
+        parents = new byte[capacity];
+        Arrays.fill(keys, EMPTY_KEY);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 1) / MAX_LOAD_FACTOR);
+        return Math.max(DEFAULT_CAPACITY, Integer.highestOneBit(needed - 1) << 1);
+    }
+
+    private static int mix(long key) {
+        // Packed positions share most of their high bits, so spread them before masking
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,218 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import com.jake404notfound.architecturalrealism.ArchitecturalRealism;
+import net.minecraft.core.Direction;
+
+import java.util.Arrays;
+
+/**
+ * Support propagation as repeated sweeps over a whole grid instead of a queue of changed cells.
+ * Each cell's support is the best any neighbor passes it, a max-product relaxation, so sweeping the grid along
+ * each direction in turn until nothing improves reaches the same support and distances as the queue.
+ * <p>
+ * Sweeps along Y and Z relax a whole row at once, since every cell in it reads from the row before,
+ * and run on SIMD lanes through the incubating Vector API when the JVM was started with
+ * {@code --add-modules jdk.incubator.vector}. Without it, and along X where each cell reads the one just
+ * updated, plain loops are used. Both apply {@link SupportTransfer} exactly as the queue does, so support and
+ * distances match it bit for bit. Where two neighbors pass the same support at the same distance, the parent
+ * may name the other one.
+ * <p>
+ * Every round visits each row the last round changed, solid or not, where the queue only ever touches solid
+ * blocks that improve. Sweeps win on dense regions where support spreads in straight lines; they lose on
+ * sparse regions, mostly air, and on long winding paths such as stairs and bridges that turn, which need
+ * another round for every turn. {@code PerformanceTests#testSweepSolverPerformance} times both kinds.
+ * <p>
+ * Sweeps can't stop halfway the way the queue can, so each call solves the whole grid.
+ * Safe to use from several threads at once.
+ */
+public final class SupportSweep {
+    private static final boolean VECTORIZED = detectVectorSupport();
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private SupportSweep() {
+    }
+
+    /**
+     * Relaxes support through a grid until no cell can improve.
+     * Cells start from the support and distance the grid holds, so its foundations must already be seeded.
+     *
+     * @param grid The grid to solve
+     * @param maxSupportDistance The distance past which support no longer spreads
+     * @param directionalFactors The transfer factor for each direction ordinal, from source to target
+     * @param decay How much support is kept on each step
+     */
+    public static void solve(VoxelGrid grid, int maxSupportDistance, double[] directionalFactors, double decay) {
+        Scratch scratch = SCRATCH.get();
+        scratch.load(grid, maxSupportDistance, directionalFactors, decay);
+
+        // Support mostly climbs from below, so each round starts there and ends with hanging support
+        boolean changed;
+        do {
+            changed = sweep(scratch, grid, Direction.UP);
+            changed |= sweep(scratch, grid, Direction.SOUTH);
+            changed |= sweep(scratch, grid, Direction.NORTH);
+            changed |= sweep(scratch, grid, Direction.EAST);
+            changed |= sweep(scratch, grid, Direction.WEST);
+            changed |= sweep(scratch, grid, Direction.DOWN);
+        } while (changed);
+
+        scratch.store(grid);
+    }
+
+    /**
+     * Checks whether sweeps run on SIMD lanes rather than plain loops.
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    /**
+     * Relaxes the grid once from every cell's neighbor on the opposite side of a direction, row by row along X
+     * in the order support travels that way. A row is skipped if the row it reads from hasn't changed since
+     * the last sweep this way, so later rounds only revisit the parts of the grid that are still settling.
+     */
+    private static boolean sweep(Scratch scratch, VoxelGrid grid, Direction direction) {
+        int sizeX = grid.getSizeX();
+        int sizeY = grid.getSizeY();
+        int sizeZ = grid.getSizeZ();
+        int since = scratch.sweepStarts[direction.ordinal()];
+        int now = ++scratch.passes;
+        scratch.sweepStarts[direction.ordinal()] = now;
+
+        // Rows are numbered (y * sizeZ + z); padding rows and cells are never relaxed
+        int sourceRow = -(direction.getStepY() * sizeZ + direction.getStepZ());
+        int stride = direction.getStepX() != 0 ? 1 : direction.getStepY() != 0 ? sizeX * sizeZ : sizeX;
+        boolean changed = false;
+        for (int i = 1; i < sizeY - 1; i++) {
+            int y = direction.getStepY() < 0 ? sizeY - 1 - i : i;
+            for (int j = 1; j < sizeZ - 1; j++) {
+                int z = direction.getStepZ() < 0 ? sizeZ - 1 - j : j;
+                int row = y * sizeZ + z;
+                if (scratch.rowChanges[row + sourceRow] < since) continue;
+
+                int start = row * sizeX + 1;
+                if (relaxRow(scratch, start, start + sizeX - 2, direction, stride)) {
+                    scratch.rowChanges[row] = now;
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    private static boolean relaxRow(Scratch scratch, int start, int end, Direction direction, int stride) {
+        // Along X each cell reads the one just before it, so only the Y and Z sweeps can use SIMD lanes
+        if (VECTORIZED && direction.getStepX() == 0) {
+            return VectorSweepKernel.relax(scratch, start, end, direction, stride);
+        }
+        return relaxScalar(scratch, start, end, direction, stride);
+    }
+
+    /**
+     * Relaxes every cell of a range from its neighbor on the opposite side of a direction, {@code stride} cells away,
+     * going the way support travels so a cell sees its source's new value even when the source is in the same range.
+     */
+    static boolean relaxScalar(Scratch scratch, int start, int end, Direction direction, int stride) {
+        float[] support = scratch.support;
+        float[] distances = scratch.distances;
+        float[] factors = scratch.factors;
+        boolean[] targets = scratch.targets;
+        double factor = scratch.directionalFactors[direction.ordinal()];
+        byte parent = (byte) direction.getOpposite().ordinal();
+        boolean changed = false;
+
+        boolean forward = direction.getAxisDirection() == Direction.AxisDirection.POSITIVE;
+        int offset = forward ? stride : -stride;
+        for (int target = forward ? start : end - 1; target >= start && target < end; target += forward ? 1 : -1) {
+            if (!targets[target]) continue;
+
+            int source = target - offset;
+            float sourceSupport = support[source];
+            if (sourceSupport <= 0 || distances[source] >= scratch.maxDistance) continue;
+
+            float transferred = SupportTransfer.transfer(sourceSupport, factors[source], factors[target], factor, scratch.decay);
+            float distance = distances[source] + 1;
+            if (SupportTransfer.isBetter(transferred, distance, support[target], distances[target])) {
+                support[target] = transferred;
+                distances[target] = distance;
+                scratch.parents[target] = parent;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean detectVectorSupport() {
+        boolean supported = false;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                supported = VectorSweepKernel.isUsable();
+            } catch (LinkageError e) {
+                ArchitecturalRealism.LOGGER.debug("Vector API unavailable: {}", e.getMessage());
+            }
+        }
+        ArchitecturalRealism.LOGGER.info("Support sweeps use {}", supported ? "the Vector API" : "scalar code");
+        return supported;
+    }
+
+    /**
+     * Per-thread working copy of a grid's support, with distances as floats so the SIMD kernel can work on
+     * them in the same lanes, and the settings of the current solve.
+     */
+    static class Scratch {
+        float[] support = new float[0];
+        float[] distances = new float[0];
+        float[] factors = new float[0];
+        // Cells that can receive support: solid blocks that aren't foundations
+        boolean[] targets = new boolean[0];
+        // The direction ordinal pointing back at the neighbor each cell's support last came from
+        byte[] parents = new byte[0];
+        // The sweep each row last changed in, and the sweep each direction last started at
+        int[] rowChanges = new int[0];
+        final int[] sweepStarts = new int[6];
+        int passes;
+        int maxDistance;
+        double[] directionalFactors;
+        double decay;
+
+        void load(VoxelGrid grid, int maxDistance, double[] directionalFactors, double decay) {
+            this.maxDistance = maxDistance;
+            this.directionalFactors = directionalFactors;
+            this.decay = decay;
+
+            int volume = grid.getVolume();
+            if (support.length < volume) {
+                support = new float[volume];
+                distances = new float[volume];
+                factors = new float[volume];
+                targets = new boolean[volume];
+                parents = new byte[volume];
+            }
+            int rows = grid.getSizeY() * grid.getSizeZ();
+            if (rowChanges.length < rows) {
+                rowChanges = new int[rows];
+            }
+            // Every row starts out changed, so the first sweep each way relaxes the whole grid
+            Arrays.fill(rowChanges, 0, rows, 1);
+            Arrays.fill(sweepStarts, 0);
+            passes = 1;
+            for (int index = 0; index < volume; index++) {
+                support[index] = grid.getSupport(index);
+                distances[index] = grid.getDistance(index);
+                factors[index] = grid.getSupportFactor(index);
+                targets[index] = grid.isSolid(index) && !grid.isFoundation(index);
+                parents[index] = grid.getParent(index);
+            }
+        }
+
+        void store(VoxelGrid grid) {
+            for (int index = grid.nextSolid(0); index >= 0; index = grid.nextSolid(index + 1)) {
+                if (!targets[index]) continue;
+
+                grid.setSupport(index, support[index]);
+                grid.setDistance(index, (short) distances[index]);
+                grid.setParent(index, parents[index]);
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+/**
+ * The rule every support solver uses to pass support from one block to its neighbor, and to choose between
+ * two ways of supporting the same block. Keeping it in one place is what lets the solvers promise the same
+ * support and distances as each other.
+ */
+final class SupportTransfer {
+    private SupportTransfer() {
+    }
+
+    /**
+     * Works out the support a block passes on to a neighbor.
+     * The transfer is done in doubles and rounded to the float the solvers store, so every solver rounds the same way.
+     *
+     * @param sourceSupport The support of the block passing it on
+     * @param sourceFactor The support factor of that block
+     * @param targetFactor The support factor of the neighbor
+     * @param directionalFactor The multiplier for the direction from the block to the neighbor
+     * @param decay How much support is kept on each step
+     * @return The support the neighbor receives
+     */
+    static float transfer(float sourceSupport, float sourceFactor, float targetFactor, double directionalFactor,
+                          double decay) {
+        // Base support transfer is the minimum of the two blocks' support factors
+        double transferFactor = Math.min(sourceFactor, targetFactor) * directionalFactor;
+
+        // Strong materials pass support on at full strength but never amplify it, and the distance
+        // decay then makes support strictly fall along any path, so the best support of every block
+        // is well defined no matter which order it is found in
+        return (float) (sourceSupport * Math.min(transferFactor, 1.0) * decay);
+    }
+
+    /**
+     * Checks whether a new way of supporting a block beats the one it has.
+     * More support always wins; between equal support, the shorter path wins.
+     *
+     * @param support The support offered
+     * @param distance The distance from a foundation it comes with
+     * @param currentSupport The support the block has
+     * @param currentDistance The distance the block has
+     * @return true if the block should take the new support
+     */
+    static boolean isBetter(float support, float distance, float currentSupport, float currentDistance) {
+        return support > currentSupport
+            || (support == currentSupport && support > 0 && distance < currentDistance);
+    }
+}
@@ -0,0 +1,94 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import java.util.Arrays;
+
+/**
+ * Limits how much of each server tick is spent on structural updates.
+ * The budget starts from the configured maximum and shrinks when the server has little spare time
+ * left in its ticks. Task costs are estimated from the amount of work they involve, using the time per
+ * unit of work measured on earlier tasks of the same {@link Work kind}, so tasks can be checked against
+ * the remaining budget before they run. Each kind keeps its own estimate, since an incremental update
+ * costs far less per block than a region solve and would otherwise make region solves look cheap.
+ * Only used on the server thread.
+ */
+public class TickBudget {
+    // Share of the tick's spare time that structural updates may take
+    private static final double HEADROOM_SHARE = 0.5;
+    // The budget never drops below this share of the maximum, so queued work keeps moving under load
+    private static final double MIN_BUDGET_SHARE = 0.1;
+    // Weight of each new measurement in the time per unit
+    private static final double COST_SMOOTHING = 0.2;
+    private static final double INITIAL_NANOS_PER_UNIT = 100.0;
+
+    private final double[] nanosPerUnit = new double[Work.values().length];
+    private long tickStart;
+    private long budget;
+
+    public TickBudget() {
+        Arrays.fill(nanosPerUnit, INITIAL_NANOS_PER_UNIT);
+    }
+
+    /**
+     * Starts the budget for a new tick, as one of several budgets sharing the tick evenly.
+     *
+     * @param maxBudgetNanos The most time structural updates may take per tick, across all shares
+     * @param averageTickNanos The server's average tick time
+     * @param nanosPerTick The time available per tick at the current tick rate
+     * @param shares The number of budgets splitting the tick
+     */
+    public void start(long maxBudgetNanos, long averageTickNanos, long nanosPerTick, int shares) {
+        maxBudgetNanos /= shares;
+        long headroom = (long) ((nanosPerTick - averageTickNanos) * HEADROOM_SHARE) / shares;
+        long minBudget = (long) (maxBudgetNanos * MIN_BUDGET_SHARE);
+        budget = Math.max(minBudget, Math.min(maxBudgetNanos, headroom));
+        tickStart = System.nanoTime();
+    }
+
+    /**
+     * Gets the budget of the current tick.
+     */
+    public long getBudget() {
+        return budget;
+    }
+
+    /**
+     * Gets the time left in the current tick's budget, which is negative once it is overspent.
+     */
+    public long getRemaining() {
+        return budget - (System.nanoTime() - tickStart);
+    }
+
+    /**
+     * Checks whether a task of the given kind fits in the remaining budget.
+     *
+     * @param work The kind of work
+     * @param units The amount of work, counted the way {@link Work} describes for the kind
+     */
+    public boolean fits(Work work, long units) {
+        return (long) (units * nanosPerUnit[work.ordinal()]) <= getRemaining();
+    }
+
+    /**
+     * Records how long a task took, refining later estimates for its kind of work.
+     *
+     * @param work The kind of work
+     * @param units The amount of work, counted the way {@link Work} describes for the kind
+     * @param elapsedNanos The time the task took on the server thread
+     */
+    public void record(Work work, long units, long elapsedNanos) {
+        if (units <= 0) return;
+        nanosPerUnit[work.ordinal()] += COST_SMOOTHING * ((double) elapsedNanos / units - nanosPerUnit[work.ordinal()]);
+    }
+
+    /**
+     * The kinds of work the server thread does for a task, each with its own cost estimate.
+     */
+    public enum Work {
+        /** Updating the support field around changed blocks; counted in changed blocks. */
+        INCREMENTAL,
+        /** Copying a region for an async solve; counted in non-air blocks of the region. */
+        SUBMIT,
+        /** Solving a region on the server thread; counted in non-air blocks of the region. */
+        SOLVE
+    }
+}
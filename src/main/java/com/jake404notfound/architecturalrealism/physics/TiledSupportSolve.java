@@ -0,0 +1,318 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Support propagation for very large grids, split into tiles along chunk section borders and run on a fork-join pool.
+ * Each tile runs the same queue as a single-threaded solve, over its own cells only. Support crossing into
+ * another tile is posted to it rather than written, and each tile picks up what was posted to it in the next
+ * round, so no two threads ever write the same cell. Rounds repeat until nothing is posted.
+ * <p>
+ * Every cell still ends with the best support any neighbor can pass it under {@link SupportTransfer}, so support
+ * and distances match the single-threaded queue. Where two neighbors pass the same support at the same distance,
+ * the parent may name the other one.
+ */
+public final class TiledSupportSolve {
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private TiledSupportSolve() {
+    }
+
+    /**
+     * Propagates support through a grid from its foundations, blocking until every tile has settled.
+     * Foundations must already hold their support and distance.
+     *
+     * @param pool The pool to run tiles on
+     * @param grid The grid to solve
+     * @param maxSupportDistance The distance past which support no longer spreads
+     * @param directionalFactors The transfer factor for each direction ordinal, from source to target
+     * @param decay How much support is kept on each step
+     * @return The number of rounds it took
+     */
+    public static int solve(ForkJoinPool pool, VoxelGrid grid, int maxSupportDistance, double[] directionalFactors,
+                            double decay) {
+        Tile[] tiles = createTiles(grid, maxSupportDistance, directionalFactors, decay);
+        Tile[] active = tiles.clone();
+        int count = active.length;
+        int round = 0;
+        while (count > 0) {
+            // What was posted two rounds ago has been picked up; tiles that sit this round out must not post it again
+            for (Tile tile : tiles) {
+                tile.clearPosted(round);
+            }
+            pool.invoke(new Round(active, 0, count, round));
+            round++;
+
+            count = 0;
+            for (Tile tile : tiles) {
+                if (tile.hasIncoming(round)) {
+                    active[count++] = tile;
+                }
+            }
+        }
+        return round;
+    }
+
+    private static Tile[] createTiles(VoxelGrid grid, int maxSupportDistance, double[] directionalFactors, double decay) {
+        BlockPos min = grid.getMinCorner();
+        int[] splitsX = splits(min.getX(), grid.getSizeX());
+        int[] splitsY = splits(min.getY(), grid.getSizeY());
+        int[] splitsZ = splits(min.getZ(), grid.getSizeZ());
+        int tilesX = splitsX.length - 1;
+        int tilesY = splitsY.length - 1;
+        int tilesZ = splitsZ.length - 1;
+
+        Tile[] tiles = new Tile[tilesX * tilesY * tilesZ];
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tz = 0; tz < tilesZ; tz++) {
+                for (int tx = 0; tx < tilesX; tx++) {
+                    tiles[(ty * tilesZ + tz) * tilesX + tx] = new Tile(grid, maxSupportDistance, directionalFactors, decay,
+                        splitsX[tx], splitsX[tx + 1], splitsY[ty], splitsY[ty + 1], splitsZ[tz], splitsZ[tz + 1]);
+                }
+            }
+        }
+        for (int ty = 0; ty < tilesY; ty++) {
+            for (int tz = 0; tz < tilesZ; tz++) {
+                for (int tx = 0; tx < tilesX; tx++) {
+                    Tile tile = tiles[(ty * tilesZ + tz) * tilesX + tx];
+                    for (Direction direction : DIRECTIONS) {
+                        int nx = tx + direction.getStepX();
+                        int ny = ty + direction.getStepY();
+                        int nz = tz + direction.getStepZ();
+                        if (nx >= 0 && ny >= 0 && nz >= 0 && nx < tilesX && ny < tilesY && nz < tilesZ) {
+                            tile.neighbors[direction.ordinal()] = tiles[(ny * tilesZ + nz) * tilesX + nx];
+                        }
+                    }
+                }
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Gets where tiles start along one axis of a grid, in grid coordinates, followed by the end of the inner box.
+     * Tiles break wherever a new chunk section starts.
+     */
+    private static int[] splits(int worldMin, int size) {
+        List<Integer> splits = new ArrayList<>();
+        splits.add(1);
+        for (int i = 2; i < size - 1; i++) {
+            if (((worldMin + i - 1) & 15) == 0) {
+                splits.add(i);
+            }
+        }
+        splits.add(size - 1);
+        return splits.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Runs one round on a range of tiles, splitting it in halves until each task has one tile
+    private static class Round extends RecursiveAction {
+        final Tile[] tiles;
+        final int from;
+        final int to;
+        final int round;
+
+        Round(Tile[] tiles, int from, int to, int round) {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+            this.round = round;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                tiles[from].run(round);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Round(tiles, from, middle, round), new Round(tiles, middle, to, round));
+        }
+    }
+
+    // The cells of one chunk section inside the grid, with its own propagation queue
+    private static class Tile {
+        final VoxelGrid grid;
+        final int maxSupportDistance;
+        final double[] directionalFactors;
+        final double decay;
+        final int minX;
+        final int maxX;
+        final int minY;
+        final int maxY;
+        final int minZ;
+        final int maxZ;
+        final Tile[] neighbors = new Tile[DIRECTIONS.length];
+        // Support posted across each face, by the parity of the round it was posted in
+        final Posted[][] posted = new Posted[2][DIRECTIONS.length];
+        final int[] neighborOffsets = new int[DIRECTIONS.length];
+        // Ring buffer of this tile's cells waiting to pass on support; the grid's QUEUED flag marks them
+        final int[] queue;
+        int head;
+        int queued;
+
+        Tile(VoxelGrid grid, int maxSupportDistance, double[] directionalFactors, double decay,
+             int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+            this.grid = grid;
+            this.maxSupportDistance = maxSupportDistance;
+            this.directionalFactors = directionalFactors;
+            this.decay = decay;
+            this.minX = minX;
+            this.maxX = maxX;
+            this.minY = minY;
+            this.maxY = maxY;
+            this.minZ = minZ;
+            this.maxZ = maxZ;
+            this.queue = new int[(maxX - minX) * (maxY - minY) * (maxZ - minZ)];
+            for (Direction direction : DIRECTIONS) {
+                neighborOffsets[direction.ordinal()] = grid.neighborOffset(direction);
+                posted[0][direction.ordinal()] = new Posted();
+                posted[1][direction.ordinal()] = new Posted();
+            }
+        }
+
+        void clearPosted(int round) {
+            for (Posted face : posted[round & 1]) {
+                face.size = 0;
+            }
+        }
+
+        boolean hasIncoming(int round) {
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                Tile neighbor = neighbors[d];
+                if (neighbor != null && neighbor.posted[(round - 1) & 1][d ^ 1].size > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void run(int round) {
+            if (round == 0) {
+                seedFoundations();
+            } else {
+                receive(round);
+            }
+            propagate(round);
+        }
+
+        private void seedFoundations() {
+            for (int y = minY; y < maxY; y++) {
+                for (int z = minZ; z < maxZ; z++) {
+                    int index = grid.indexOf(minX, y, z);
+                    for (int x = minX; x < maxX; x++, index++) {
+                        if (grid.isSolid(index) && grid.isFoundation(index)) {
+                            enqueue(index);
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Takes the support neighboring tiles posted across their faces last round.
+         */
+        private void receive(int round) {
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                Tile neighbor = neighbors[d];
+                if (neighbor == null) continue;
+
+                // The neighbor on side d posts towards this tile in the opposite direction, so d points back at the source
+                Posted incoming = neighbor.posted[(round - 1) & 1][d ^ 1];
+                for (int i = 0; i < incoming.size; i++) {
+                    int target = incoming.targets[i];
+                    if (SupportTransfer.isBetter(incoming.support[i], incoming.distances[i],
+                            grid.getSupport(target), grid.getDistance(target))) {
+                        grid.setSupport(target, incoming.support[i]);
+                        grid.setDistance(target, incoming.distances[i]);
+                        grid.setParent(target, (byte) d);
+                        enqueue(target);
+                    }
+                }
+            }
+        }
+
+        private void propagate(int round) {
+            int sizeX = grid.getSizeX();
+            int sizeZ = grid.getSizeZ();
+            Posted[] outgoing = posted[round & 1];
+            while (queued > 0) {
+                int current = queue[head];
+                head = head + 1 == queue.length ? 0 : head + 1;
+                queued--;
+                grid.setQueued(current, false);
+
+                float currentSupport = grid.getSupport(current);
+                int currentDistance = grid.getDistance(current);
+                if (currentSupport <= 0 || currentDistance >= maxSupportDistance) continue;
+
+                // The faces of the tile this cell lies on, by direction ordinal
+                int x = current % sizeX;
+                int z = (current / sizeX) % sizeZ;
+                int y = current / (sizeX * sizeZ);
+                int faces = (y == minY ? 1 : 0) | (y == maxY - 1 ? 2 : 0)
+                    | (z == minZ ? 4 : 0) | (z == maxZ - 1 ? 8 : 0)
+                    | (x == minX ? 16 : 0) | (x == maxX - 1 ? 32 : 0);
+
+                float currentFactor = grid.getSupportFactor(current);
+                for (int d = 0; d < neighborOffsets.length; d++) {
+                    int neighbor = current + neighborOffsets[d];
+
+                    // Skip if air (padding cells around the grid are always air)
+                    if (!grid.isSolid(neighbor)) continue;
+
+                    float transferredSupport = SupportTransfer.transfer(currentSupport, currentFactor,
+                        grid.getSupportFactor(neighbor), directionalFactors[d], decay);
+                    short distance = (short) (currentDistance + 1);
+
+                    if ((faces & (1 << d)) != 0) {
+                        // Another thread owns the neighbor; zero support can never improve it
+                        if (transferredSupport > 0) {
+                            outgoing[d].add(neighbor, transferredSupport, distance);
+                        }
+                    } else if (SupportTransfer.isBetter(transferredSupport, distance,
+                            grid.getSupport(neighbor), grid.getDistance(neighbor))) {
+                        grid.setSupport(neighbor, transferredSupport);
+                        grid.setDistance(neighbor, distance);
+                        grid.setParent(neighbor, (byte) (d ^ 1));
+                        enqueue(neighbor);
+                    }
+                }
+            }
+        }
+
+        private void enqueue(int index) {
+            if (grid.isQueued(index)) return;
+
+            grid.setQueued(index, true);
+            queue[(head + queued++) % queue.length] = index;
+        }
+    }
+
+    // Support passed across one face of a tile in one round, applied by the tile on the other side
+    private static class Posted {
+        int[] targets = new int[64];
+        float[] support = new float[64];
+        short[] distances = new short[64];
+        int size;
+
+        void add(int target, float value, short distance) {
+            if (size == targets.length) {
+                targets = Arrays.copyOf(targets, size * 2);
+                support = Arrays.copyOf(support, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            targets[size] = target;
+            support[size] = value;
+            distances[size] = distance;
+            size++;
+        }
+    }
+}
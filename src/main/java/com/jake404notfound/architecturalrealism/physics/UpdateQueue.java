@@ -0,0 +1,310 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
+import it.unimi.dsi.fastutil.objects.ReferenceLinkedOpenHashSet;
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.SectionPos;
+import net.minecraft.world.entity.player.Player;
+import net.minecraft.world.level.Level;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Pending structural updates of one level, indexed by chunk section so that nearby edits merge into one task.
+ * A new edit joins a queued task in its own or a neighboring section when their areas overlap or touch,
+ * as long as the merged box stays within {@link #MAX_MERGE_GROWTH} times the volume of a single edit's box.
+ * A task is only handed out once no edit has joined it for {@link #DEBOUNCE_TICKS} ticks, so a burst of
+ * placements is solved once at the end, but never later than {@link #MAX_DELAY_TICKS} after it was queued.
+ * <p>
+ * Tasks close to a player go first, and waiting tasks gain priority as they age.
+ * Tasks far from every player or in chunks that aren't ticking are low priority: they are only handed out
+ * when no other task is ready. Each group is kept in a heap ordered by urgency, so a poll only looks at
+ * the most urgent tasks instead of the whole queue. Distances to players are measured when a task is
+ * queued and refreshed for every task once each {@link #PRIORITY_REFRESH_TICKS} ticks.
+ * Only used on the server thread.
+ */
+public class UpdateQueue {
+    // A merged task's box may grow to this many times the box of a single edit
+    private static final int MAX_MERGE_GROWTH = 8;
+    // Ticks without a new edit before a task is processed
+    private static final int DEBOUNCE_TICKS = 2;
+    // Ticks after which a task is processed even if edits keep joining it
+    private static final int MAX_DELAY_TICKS = 10;
+    // Tasks further than this many blocks from every player are low priority
+    private static final double LOW_PRIORITY_DISTANCE = 128.0;
+    // Blocks of player distance that one tick of waiting makes up for
+    private static final double AGE_WEIGHT = 1.0;
+    // Ticks between refreshes of every task's distance to the nearest player
+    private static final int PRIORITY_REFRESH_TICKS = 20;
+    // Ready tasks a poll may pass over because the filter turned them down, before it gives up
+    private static final int MAX_SKIPPED_PER_POLL = 32;
+    // Every task ages at the same rate, so the tick it was created stands in for its age; lower goes first
+    private static final Comparator<StructuralUpdateTask> BY_URGENCY =
+        Comparator.comparingDouble(task -> task.playerDistance + AGE_WEIGHT * task.createdTick);
+
+    private final Level level;
+    private final Long2ObjectMap<StructuralUpdateTask> sectionIndex = new Long2ObjectOpenHashMap<>();
+    private final ReferenceLinkedOpenHashSet<StructuralUpdateTask> tasks = new ReferenceLinkedOpenHashSet<>();
+    private final ObjectHeapPriorityQueue<StructuralUpdateTask> urgentTasks = new ObjectHeapPriorityQueue<>(BY_URGENCY);
+    private final ObjectHeapPriorityQueue<StructuralUpdateTask> lowPriorityTasks = new ObjectHeapPriorityQueue<>(BY_URGENCY);
+    private final List<StructuralUpdateTask> skipped = new ArrayList<>();
+    private long tick;
+
+    /**
+     * @param level The level whose updates the queue holds
+     */
+    public UpdateQueue(Level level) {
+        this.level = level;
+    }
+
+    /**
+     * Advances the queue's clock, and refreshes each task's distance to the nearest player every
+     * {@link #PRIORITY_REFRESH_TICKS} ticks. Called once per tick, before tasks are polled.
+     */
+    public void tick() {
+        tick++;
+        if (tick % PRIORITY_REFRESH_TICKS != 0) return;
+
+        for (StructuralUpdateTask task : tasks) {
+            updatePriority(task);
+        }
+        rebuildHeaps();
+    }
+
+    /**
+     * Queues an update for a changed block, merging it into a nearby pending task when possible.
+     *
+     * @param pos The changed block
+     * @param radius The radius around the block that has to be re-checked
+     * @return The task the change was recorded in
+     */
+    public StructuralUpdateTask add(BlockPos pos, int radius) {
+        StructuralUpdateTask task = findMergeTarget(pos, radius);
+
+        if (task != null) {
+            task.addChange(pos, tick);
+        } else {
+            task = new StructuralUpdateTask(level, pos, radius, tick);
+            enqueue(task);
+        }
+        sectionIndex.put(SectionPos.blockToSection(pos.asLong()), task);
+        return task;
+    }
+
+    /**
+     * Queues one update covering a group of blocks that changed together, such as the blocks an explosion
+     * destroyed or a piston moved. The group always becomes a task of its own, however large its box,
+     * so its changes are reset and re-propagated in one pass instead of one task per block.
+     *
+     * @param positions The packed positions of the changed blocks; must not be empty
+     * @param radius The radius around each block that has to be re-checked
+     * @param settleTicks Extra ticks to wait before the task is ready, while the change is still in motion
+     * @return The task the changes were recorded in
+     */
+    public StructuralUpdateTask addAll(LongArrayList positions, int radius, int settleTicks) {
+        StructuralUpdateTask task = new StructuralUpdateTask(level, BlockPos.of(positions.getLong(0)), radius, tick);
+        for (int i = 1; i < positions.size(); i++) {
+            task.addChange(BlockPos.of(positions.getLong(i)), tick);
+        }
+        task.lastEditTick = tick + settleTicks;
+        enqueue(task);
+
+        // Indexed like any other task, so small edits next to it can still join it while it waits
+        index(task);
+        return task;
+    }
+
+    /**
+     * Puts a task back in the queue, ready to be processed again on the next poll.
+     * It keeps its age, so it keeps its place ahead of newer work.
+     */
+    public void requeue(StructuralUpdateTask task) {
+        index(task);
+        task.lastEditTick = tick - DEBOUNCE_TICKS;
+        enqueue(task);
+    }
+
+    /**
+     * Removes and returns the most urgent task that is ready to be processed.
+     *
+     * @return The task, or null if every queued task is still receiving edits
+     */
+    @Nullable
+    public StructuralUpdateTask poll() {
+        return poll(task -> true);
+    }
+
+    /**
+     * Removes and returns the most urgent ready task the filter accepts.
+     * Low priority tasks are only considered once no other ready task is accepted.
+     * Ready tasks the filter turns down stay queued; after {@link #MAX_SKIPPED_PER_POLL} of them in a group,
+     * the less urgent tasks of that group are left for a later poll.
+     *
+     * @param filter Decides whether a ready task can be processed now
+     * @return The task, or null if no ready task was accepted
+     */
+    @Nullable
+    public StructuralUpdateTask poll(Predicate<StructuralUpdateTask> filter) {
+        StructuralUpdateTask task = poll(urgentTasks, filter);
+        return task != null ? task : poll(lowPriorityTasks, filter);
+    }
+
+    /**
+     * Gets the number of queued tasks, including ones that are not ready yet.
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    public boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+
+    /**
+     * Removes every queued task with a changed block in a chunk, so nothing keeps the chunk's changes in
+     * memory once it unloads.
+     *
+     * @return The removed tasks
+     */
+    public List<StructuralUpdateTask> removeChunk(int chunkX, int chunkZ) {
+        List<StructuralUpdateTask> removed = new ArrayList<>();
+        Iterator<StructuralUpdateTask> iterator = tasks.iterator();
+        while (iterator.hasNext()) {
+            StructuralUpdateTask task = iterator.next();
+            if (task.hasChangeIn(chunkX, chunkZ)) {
+                iterator.remove();
+                unindex(task);
+                removed.add(task);
+            }
+        }
+        if (!removed.isEmpty()) {
+            rebuildHeaps();
+        }
+        return removed;
+    }
+
+    public void clear() {
+        tasks.clear();
+        urgentTasks.clear();
+        lowPriorityTasks.clear();
+        sectionIndex.clear();
+    }
+
+    @Nullable
+    private StructuralUpdateTask poll(ObjectHeapPriorityQueue<StructuralUpdateTask> heap,
+                                      Predicate<StructuralUpdateTask> filter) {
+        // Tasks passed over are put back afterwards, so they keep their place for the next poll
+        StructuralUpdateTask found = null;
+        skipped.clear();
+        while (!heap.isEmpty() && skipped.size() <= MAX_SKIPPED_PER_POLL) {
+            StructuralUpdateTask task = heap.dequeue();
+            if (isReady(task) && filter.test(task)) {
+                found = task;
+                break;
+            }
+            skipped.add(task);
+        }
+        for (StructuralUpdateTask task : skipped) {
+            heap.enqueue(task);
+        }
+        skipped.clear();
+
+        if (found != null) {
+            tasks.remove(found);
+            unindex(found);
+        }
+        return found;
+    }
+
+    private void enqueue(StructuralUpdateTask task) {
+        if (tasks.add(task)) {
+            updatePriority(task);
+            heapOf(task).enqueue(task);
+        }
+    }
+
+    private void rebuildHeaps() {
+        urgentTasks.clear();
+        lowPriorityTasks.clear();
+        for (StructuralUpdateTask task : tasks) {
+            heapOf(task).enqueue(task);
+        }
+    }
+
+    private ObjectHeapPriorityQueue<StructuralUpdateTask> heapOf(StructuralUpdateTask task) {
+        return task.lowPriority ? lowPriorityTasks : urgentTasks;
+    }
+
+    private boolean isReady(StructuralUpdateTask task) {
+        return tick - task.lastEditTick >= DEBOUNCE_TICKS || tick - task.createdTick >= MAX_DELAY_TICKS;
+    }
+
+    private void updatePriority(StructuralUpdateTask task) {
+        BlockPos center = task.getCenter();
+        double nearest = Double.MAX_VALUE;
+        for (Player player : level.players()) {
+            if (player.isSpectator()) continue;
+            nearest = Math.min(nearest, player.distanceToSqr(center.getX() + 0.5, center.getY() + 0.5, center.getZ() + 0.5));
+        }
+
+        task.playerDistance = Math.sqrt(nearest);
+        task.lowPriority = task.playerDistance > LOW_PRIORITY_DISTANCE || !level.shouldTickBlocksAt(center);
+    }
+
+    private void index(StructuralUpdateTask task) {
+        LongIterator iterator = task.sections.iterator();
+        while (iterator.hasNext()) {
+            sectionIndex.put(iterator.nextLong(), task);
+        }
+    }
+
+    @Nullable
+    private StructuralUpdateTask findMergeTarget(BlockPos pos, int radius) {
+        long maxVolume = (long) MAX_MERGE_GROWTH * (2 * radius + 1) * (2 * radius + 1) * (2 * radius + 1);
+        int sectionX = SectionPos.blockToSectionCoord(pos.getX());
+        int sectionY = SectionPos.blockToSectionCoord(pos.getY());
+        int sectionZ = SectionPos.blockToSectionCoord(pos.getZ());
+
+        // Start with the edit's own section, which usually already holds the task it belongs to
+        StructuralUpdateTask task = sectionIndex.get(SectionPos.asLong(sectionX, sectionY, sectionZ));
+        if (canMerge(task, pos, radius, maxVolume)) {
+            return task;
+        }
+
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    task = sectionIndex.get(SectionPos.asLong(sectionX + dx, sectionY + dy, sectionZ + dz));
+                    if (canMerge(task, pos, radius, maxVolume)) {
+                        return task;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private static boolean canMerge(@Nullable StructuralUpdateTask task, BlockPos pos, int radius, long maxVolume) {
+        return task != null && task.radius == radius && task.touches(pos) && task.getVolumeWith(pos) <= maxVolume;
+    }
+
+    private void unindex(StructuralUpdateTask task) {
+        LongIterator iterator = task.sections.iterator();
+        while (iterator.hasNext()) {
+            long sectionKey = iterator.nextLong();
+            // Another task may have taken over the section once this one was full
+            if (sectionIndex.get(sectionKey) == task) {
+                sectionIndex.remove(sectionKey);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+import net.minecraft.core.Direction;
+
+/**
+ * The SIMD half of {@link SupportSweep}, kept in its own class so nothing touches the incubating Vector API
+ * unless it is available. Relaxes as many cells at once as the preferred vector shape holds doubles:
+ * values are stored as floats and only widened for the transfer itself.
+ * <p>
+ * This is {@link SupportTransfer} applied lane by lane, which the Vector API can't call into. Any change to
+ * that rule must be made here too; {@code StructuralIntegrityTests#testSweepSupport} catches a kernel
+ * that drifts from it when the tests run with the vector module.
+ */
+final class VectorSweepKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // Floats in half the width, one lane for each double lane
+    private static final VectorSpecies<Float> FLOATS =
+        VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+
+    private VectorSweepKernel() {
+    }
+
+    static boolean isUsable() {
+        return DOUBLES.length() > 1 && FLOATS.length() == DOUBLES.length();
+    }
+
+    /**
+     * Relaxes every cell of a range from its neighbor on the opposite side of a direction, {@code stride} cells away.
+     * All cells read the support their source had before the call, so the sources must lie outside the range.
+     */
+    static boolean relax(SupportSweep.Scratch scratch, int start, int end, Direction direction, int stride) {
+        float[] support = scratch.support;
+        float[] distances = scratch.distances;
+        float[] factors = scratch.factors;
+        boolean[] targets = scratch.targets;
+        double factor = scratch.directionalFactors[direction.ordinal()];
+        double decay = scratch.decay;
+        float maxDistance = scratch.maxDistance;
+        int offset = direction.getAxisDirection() == Direction.AxisDirection.POSITIVE ? stride : -stride;
+        byte parent = (byte) direction.getOpposite().ordinal();
+        boolean changed = false;
+
+        for (int target = start; target < end; target += FLOATS.length()) {
+            VectorMask<Float> lanes = FLOATS.indexInRange(target, end)
+                .and(VectorMask.fromArray(FLOATS, targets, target));
+            if (!lanes.anyTrue()) continue;
+
+            int source = target - offset;
+            FloatVector sourceSupport = FloatVector.fromArray(FLOATS, support, source, lanes);
+            FloatVector sourceDistance = FloatVector.fromArray(FLOATS, distances, source, lanes);
+            lanes = lanes.and(sourceSupport.compare(VectorOperators.GT, 0.0f))
+                .and(sourceDistance.compare(VectorOperators.LT, maxDistance));
+            if (!lanes.anyTrue()) continue;
+
+            // SupportTransfer.transfer, in the same order of operations so every lane rounds the same way
+            FloatVector sourceFactor = FloatVector.fromArray(FLOATS, factors, source, lanes);
+            FloatVector targetFactor = FloatVector.fromArray(FLOATS, factors, target, lanes);
+            DoubleVector multiplier = ((DoubleVector) sourceFactor.min(targetFactor).convertShape(VectorOperators.F2D, DOUBLES, 0))
+                .mul(factor).min(1.0);
+            DoubleVector product = ((DoubleVector) sourceSupport.convertShape(VectorOperators.F2D, DOUBLES, 0))
+                .mul(multiplier).mul(decay);
+            FloatVector transferred = (FloatVector) product.convertShape(VectorOperators.D2F, FLOATS, 0);
+            FloatVector distance = sourceDistance.add(1.0f);
+
+            FloatVector targetSupport = FloatVector.fromArray(FLOATS, support, target, lanes);
+            FloatVector targetDistance = FloatVector.fromArray(FLOATS, distances, target, lanes);
+            // SupportTransfer.isBetter
+            VectorMask<Float> better = transferred.compare(VectorOperators.GT, targetSupport)
+                .or(transferred.compare(VectorOperators.EQ, targetSupport)
+                    .and(transferred.compare(VectorOperators.GT, 0.0f))
+                    .and(distance.compare(VectorOperators.LT, targetDistance)))
+                .and(lanes);
+            if (!better.anyTrue()) continue;
+
+            transferred.intoArray(support, target, better);
+            distance.intoArray(distances, target, better);
+            for (long lanesSet = better.toLong(); lanesSet != 0; lanesSet &= lanesSet - 1) {
+                scratch.parents[target + Long.numberOfTrailingZeros(lanesSet)] = parent;
+            }
+            changed = true;
+        }
+        return changed;
+    }
+}
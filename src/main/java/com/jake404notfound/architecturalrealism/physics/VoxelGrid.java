@@ -0,0 +1,306 @@
+package com.jake404notfound.architecturalrealism.physics;
+
+import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.world.level.block.Block;
+
+import java.util.Arrays;
+
+/**
+ * Dense flat-array copy of the box-shaped region a structural solve works on.
+ * The box is read once into per-cell arrays of flags,
+ * support factors, support values, distances and parent directions, plus a bit mask of solid cells so scans
+ * can skip empty space 64 cells at a time. The grid is padded with one layer of
+ * empty cells on every side, so neighbor lookups are plain index offsets with no bounds checks.
+ * Instances are reused between solves; {@link #load} only reallocates when the box grows.
+ */
+public class VoxelGrid {
+    /** Flag set on cells that contain a block. */
+    public static final byte SOLID = 1;
+    /** Flag set on solid cells that count as a foundation. */
+    public static final byte FOUNDATION = 2;
+    /** Flag set on cells whose block cannot be broken, such as bedrock. */
+    public static final byte UNBREAKABLE = 4;
+    /** Flag set on cells that are currently waiting in the propagation queue. */
+    public static final byte QUEUED = 8;
+
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    private int originX;
+    private int originY;
+    private int originZ;
+    private int sizeX;
+    private int sizeY;
+    private int sizeZ;
+    private int volume;
+    private final int[] neighborOffsets = new int[DIRECTIONS.length];
+
+    private byte[] flags = new byte[0];
+    private float[] supportFactors = new float[0];
+    private float[] support = new float[0];
+    private short[] distances = new short[0];
+    private byte[] parents = new byte[0];
+    private int[] queue = new int[0];
+    private long[] solidMask = new long[0];
+    // The property table the grid was loaded with
+    private BlockStateTable stateTable;
+
+    /**
+     * Reads the box between two corners from a view.
+     *
+     * @param view The view to read blocks from
+     * @param min The lowest corner of the box, inclusive
+     * @param max The highest corner of the box, inclusive
+     * @param blockPropertyManager Provides the support factor and flags of each block state
+     */
+    public void load(StructureView view, BlockPos min, BlockPos max, BlockPropertyManager blockPropertyManager) {
+        resize(max.getX() - min.getX() + 3, max.getY() - min.getY() + 3, max.getZ() - min.getZ() + 3);
+        originX = min.getX() - 1;
+        originY = min.getY() - 1;
+        originZ = min.getZ() - 1;
+
+        Arrays.fill(flags, 0, volume, (byte) 0);
+        Arrays.fill(support, 0, volume, 0.0f);
+        Arrays.fill(distances, 0, volume, SupportMap.NO_DISTANCE);
+        Arrays.fill(parents, 0, volume, SupportMap.NO_PARENT);
+        Arrays.fill(solidMask, 0, maskWords(), 0L);
+
+        BlockStateTable table = blockPropertyManager.getStateTable();
+        stateTable = table;
+        BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+
+        // Padding cells stay empty; only the inner box is read
+        for (int y = 1; y < sizeY - 1; y++) {
+            for (int z = 1; z < sizeZ - 1; z++) {
+                int index = indexOf(1, y, z);
+                for (int x = 1; x < sizeX - 1; x++, index++) {
+                    pos.set(originX + x, originY + y, originZ + z);
+                    int id = Block.getId(view.getBlockState(pos));
+                    byte stateFlags = table.getFlags(id);
+
+                    flags[index] = (byte) ((stateFlags & BlockStateTable.AIR) != 0 ? 0
+                        : (stateFlags & BlockStateTable.FOUNDATION_MATERIAL) != 0 ? SOLID | UNBREAKABLE : SOLID);
+                    supportFactors[index] = table.getSupportFactor(id);
+                    if ((stateFlags & BlockStateTable.AIR) == 0) {
+                        solidMask[index >>> 6] |= 1L << index;
+                    }
+                }
+            }
+        }
+    }
+
+    private void resize(int sizeX, int sizeY, int sizeZ) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.volume = sizeX * sizeY * sizeZ;
+
+        if (flags.length < volume) {
+            flags = new byte[volume];
+            supportFactors = new float[volume];
+            support = new float[volume];
+            distances = new short[volume];
+            parents = new byte[volume];
+            queue = new int[volume];
+        }
+        if (solidMask.length < maskWords()) {
+            solidMask = new long[flags.length + 63 >>> 6];
+        }
+
+        for (Direction direction : DIRECTIONS) {
+            neighborOffsets[direction.ordinal()] = direction.getStepX()
+                + direction.getStepZ() * sizeX
+                + direction.getStepY() * sizeX * sizeZ;
+        }
+    }
+
+    private int maskWords() {
+        return volume + 63 >>> 6;
+    }
+
+    /**
+     * Gets the index of a cell from its coordinates relative to the padded origin.
+     */
+    public int indexOf(int x, int y, int z) {
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    /**
+     * Gets the index of a world position, or -1 if it lies outside the loaded box.
+     */
+    public int indexOf(BlockPos pos) {
+        int x = pos.getX() - originX;
+        int y = pos.getY() - originY;
+        int z = pos.getZ() - originZ;
+        if (x < 1 || y < 1 || z < 1 || x >= sizeX - 1 || y >= sizeY - 1 || z >= sizeZ - 1) {
+            return -1;
+        }
+        return indexOf(x, y, z);
+    }
+
+    /**
+     * Checks whether a cell lies inside the loaded box rather than in the padding around it.
+     */
+    public boolean isInside(int index) {
+        int x = index % sizeX;
+        int y = index / (sizeX * sizeZ);
+        int z = (index / sizeX) % sizeZ;
+        return x >= 1 && y >= 1 && z >= 1 && x < sizeX - 1 && y < sizeY - 1 && z < sizeZ - 1;
+    }
+
+    /**
+     * Gets the index offset to the neighbor in the given direction.
+     */
+    public int neighborOffset(Direction direction) {
+        return neighborOffsets[direction.ordinal()];
+    }
+
+    public int getX(int index) {
+        return originX + index % sizeX;
+    }
+
+    public int getY(int index) {
+        return originY + index / (sizeX * sizeZ);
+    }
+
+    public int getZ(int index) {
+        return originZ + (index / sizeX) % sizeZ;
+    }
+
+    public long asLong(int index) {
+        return BlockPos.asLong(getX(index), getY(index), getZ(index));
+    }
+
+    public BlockPos getPos(int index) {
+        return new BlockPos(getX(index), getY(index), getZ(index));
+    }
+
+    /**
+     * Gets the number of cells along the X axis, including padding.
+     */
+    public int getSizeX() {
+        return sizeX;
+    }
+
+    /**
+     * Gets the number of cells along the Y axis, including padding.
+     */
+    public int getSizeY() {
+        return sizeY;
+    }
+
+    /**
+     * Gets the number of cells along the Z axis, including padding.
+     */
+    public int getSizeZ() {
+        return sizeZ;
+    }
+
+    /**
+     * Gets the number of cells in the grid, including padding.
+     */
+    public int getVolume() {
+        return volume;
+    }
+
+    /**
+     * Gets the world position of the lowest corner of the loaded box (excluding padding).
+     */
+    public BlockPos getMinCorner() {
+        return new BlockPos(originX + 1, originY + 1, originZ + 1);
+    }
+
+    public boolean isSolid(int index) {
+        return (flags[index] & SOLID) != 0;
+    }
+
+    /**
+     * Finds the first solid cell at or after an index.
+     *
+     * @param from The index to start from
+     * @return The index of the solid cell, or -1 if there is none
+     */
+    public int nextSolid(int from) {
+        int word = from >>> 6;
+        int words = maskWords();
+        if (from >= volume) return -1;
+
+        long bits = solidMask[word] & (-1L << from);
+        while (bits == 0) {
+            if (++word >= words) return -1;
+            bits = solidMask[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    public boolean isUnbreakable(int index) {
+        return (flags[index] & UNBREAKABLE) != 0;
+    }
+
+    public boolean isFoundation(int index) {
+        return (flags[index] & FOUNDATION) != 0;
+    }
+
+    public void markFoundation(int index) {
+        flags[index] |= FOUNDATION;
+    }
+
+    public boolean isQueued(int index) {
+        return (flags[index] & QUEUED) != 0;
+    }
+
+    public void setQueued(int index, boolean queued) {
+        if (queued) {
+            flags[index] |= QUEUED;
+        } else {
+            flags[index] &= ~QUEUED;
+        }
+    }
+
+    /**
+     * Gets the property table the grid was loaded with, so results computed from outdated properties can be recognised.
+     */
+    public BlockStateTable getStateTable() {
+        return stateTable;
+    }
+
+    public float getSupportFactor(int index) {
+        return supportFactors[index];
+    }
+
+    public float getSupport(int index) {
+        return support[index];
+    }
+
+    public void setSupport(int index, float value) {
+        support[index] = value;
+    }
+
+    public short getDistance(int index) {
+        return distances[index];
+    }
+
+    public void setDistance(int index, short distance) {
+        distances[index] = distance;
+    }
+
+    /**
+     * Gets the direction ordinal pointing at the neighbor this cell's support came from,
+     * or {@link SupportMap#NO_PARENT} for foundations and unsupported cells.
+     */
+    public byte getParent(int index) {
+        return parents[index];
+    }
+
+    public void setParent(int index, byte parent) {
+        parents[index] = parent;
+    }
+
+    /**
+     * Gets a scratch array large enough to queue every cell of the grid once.
+     * Cells flagged {@link #QUEUED} are already in it, so it can be used as a ring buffer.
+     */
+    public int[] getQueue() {
+        return queue;
+    }
+}
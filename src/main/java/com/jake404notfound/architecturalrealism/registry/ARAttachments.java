@@ -0,0 +1,29 @@
+package com.jake404notfound.architecturalrealism.registry;
+
+import com.jake404notfound.architecturalrealism.ArchitecturalRealism;
+import com.jake404notfound.architecturalrealism.physics.ChunkSupportData;
+import net.neoforged.bus.api.IEventBus;
+import net.neoforged.neoforge.attachment.AttachmentType;
+import net.neoforged.neoforge.registries.DeferredHolder;
+import net.neoforged.neoforge.registries.DeferredRegister;
+import net.neoforged.neoforge.registries.NeoForgeRegistries;
+
+/**
+ * Data attachment types registered by the mod.
+ */
+public class ARAttachments {
+    private static final DeferredRegister<AttachmentType<?>> ATTACHMENT_TYPES =
+            DeferredRegister.create(NeoForgeRegistries.Keys.ATTACHMENT_TYPES, ArchitecturalRealism.MOD_ID);
+    
+    /**
+     * The support field of a chunk, saved with the chunk so structures keep their support across restarts.
+     */
+    public static final DeferredHolder<AttachmentType<?>, AttachmentType<ChunkSupportData>> SUPPORT_DATA =
+            ATTACHMENT_TYPES.register("support_data", () -> AttachmentType.builder(ChunkSupportData::new)
+                    .serialize(ChunkSupportData.SERIALIZER)
+                    .build());
+    
+    public static void register(IEventBus modEventBus) {
+        ATTACHMENT_TYPES.register(modEventBus);
+    }
+}
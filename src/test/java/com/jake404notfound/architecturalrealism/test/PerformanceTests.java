@@ -2,12 +2,19 @@ package com.jake404notfound.architecturalrealism.test;
 
 import com.jake404notfound.architecturalrealism.ArchitecturalRealism;
 import com.jake404notfound.architecturalrealism.config.ARConfig;
+import com.jake404notfound.architecturalrealism.physics.LevelStructureView;
+import com.jake404notfound.architecturalrealism.physics.StructuralIntegrityManager;
+import com.jake404notfound.architecturalrealism.physics.StructureView;
+import com.jake404notfound.architecturalrealism.physics.VoxelGrid;
+import net.minecraft.core.BlockPos;
 import net.minecraft.gametest.framework.GameTest;
 import net.minecraft.gametest.framework.GameTestHelper;
 import net.minecraft.world.level.block.Blocks;
 import net.neoforged.neoforge.gametest.GameTestHolder;
 import net.neoforged.neoforge.gametest.PrefixGameTestTemplate;
 
+import java.lang.reflect.Method;
+
 /**
  * Performance tests for the Architectural Realism mod.
  * These tests validate the performance characteristics of the structural integrity system.
@@ -244,4 +251,92 @@ public class PerformanceTests {
             });
         });
     }
+    
+    /**
+     * Times the queue and sweep solvers on a dense region and on a sparse one.
+     */
+    @GameTest(template = "empty", timeoutTicks = 400)
+    public void testSweepSolverPerformance(GameTestHelper helper) {
+        // A solid stone block on bedrock: support spreads in straight lines through every cell
+        BlockPos denseBase = new BlockPos(1, 1, 1);
+        for (int x = 0; x < 12; x++) {
+            for (int z = 0; z < 12; z++) {
+                helper.setBlock(denseBase.offset(x, -1, z), Blocks.BEDROCK);
+                for (int y = 0; y < 8; y++) {
+                    helper.setBlock(denseBase.offset(x, y, z), Blocks.STONE);
+                }
+            }
+        }
+        
+        // A thin stone stair spiralling up through the same volume of air, turning at every corner
+        BlockPos sparseBase = new BlockPos(16, 1, 1);
+        helper.setBlock(sparseBase.below(), Blocks.BEDROCK);
+        int x = 0;
+        int z = 0;
+        int[][] steps = {{1, 0}, {0, 1}, {-1, 0}, {0, -1}};
+        for (int y = 0; y < 8; y++) {
+            // Each flight starts right above the end of the one below
+            for (int i = 0; i < 11; i++) {
+                helper.setBlock(sparseBase.offset(x, y, z), Blocks.STONE);
+                if (i < 10) {
+                    x += steps[y % 4][0];
+                    z += steps[y % 4][1];
+                }
+            }
+        }
+        
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        StructureView view = new LevelStructureView(helper.getLevel());
+        
+        try {
+            // Use reflection to access private methods
+            Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
+            identifyFoundationsMethod.setAccessible(true);
+            
+            Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "calculateSupport", VoxelGrid.class);
+            calculateSupportMethod.setAccessible(true);
+            
+            Method sweepSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "sweepSupport", VoxelGrid.class);
+            sweepSupportMethod.setAccessible(true);
+            
+            for (BlockPos base : new BlockPos[] {denseBase, sparseBase}) {
+                BlockPos min = helper.absolutePos(base.offset(0, -1, 0));
+                BlockPos max = helper.absolutePos(base.offset(11, 7, 11));
+                VoxelGrid grid = new VoxelGrid();
+                
+                // Warm up both solvers before timing them
+                long queueNanos = 0;
+                long sweepNanos = 0;
+                for (int run = 0; run < 60; run++) {
+                    grid.load(view, min, max, manager.getBlockPropertyManager());
+                    identifyFoundationsMethod.invoke(manager, view, grid);
+                    long start = System.nanoTime();
+                    calculateSupportMethod.invoke(manager, grid);
+                    long queueTime = System.nanoTime() - start;
+                    
+                    grid.load(view, min, max, manager.getBlockPropertyManager());
+                    identifyFoundationsMethod.invoke(manager, view, grid);
+                    start = System.nanoTime();
+                    sweepSupportMethod.invoke(manager, grid);
+                    long sweepTime = System.nanoTime() - start;
+                    
+                    if (run >= 20) {
+                        queueNanos += queueTime;
+                        sweepNanos += sweepTime;
+                    }
+                }
+                
+                // Log performance metrics
+                ArchitecturalRealism.LOGGER.info("{} region: queue solve took {} us, sweep solve took {} us",
+                    base == denseBase ? "Dense" : "Sparse", queueNanos / 40 / 1000, sweepNanos / 40 / 1000);
+            }
+            
+            helper.succeed();
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+    }
 }
@@ -1,24 +1,54 @@
 package com.jake404notfound.architecturalrealism.test;
 
 import com.jake404notfound.architecturalrealism.physics.BlockProperties;
+import com.jake404notfound.architecturalrealism.physics.BlockPropertyDefinition;
 import com.jake404notfound.architecturalrealism.physics.BlockPropertyManager;
+import com.jake404notfound.architecturalrealism.physics.BlockStateTable;
+import com.jake404notfound.architecturalrealism.physics.ChunkSupportData;
+import com.jake404notfound.architecturalrealism.physics.CollapseBatch;
+import com.jake404notfound.architecturalrealism.physics.CollapseCascade;
+import com.jake404notfound.architecturalrealism.physics.ConnectivityEngine;
+import com.jake404notfound.architecturalrealism.physics.FoundationIndex;
+import com.jake404notfound.architecturalrealism.physics.LevelStructureView;
+import com.jake404notfound.architecturalrealism.physics.RegionSnapshot;
+import com.jake404notfound.architecturalrealism.physics.SectionFloodFill;
 import com.jake404notfound.architecturalrealism.physics.StructuralIntegrityManager;
+import com.jake404notfound.architecturalrealism.physics.StructuralUpdateTask;
+import com.jake404notfound.architecturalrealism.physics.StructureView;
+import com.jake404notfound.architecturalrealism.physics.SupportCache;
+import com.jake404notfound.architecturalrealism.physics.SupportField;
+import com.jake404notfound.architecturalrealism.physics.SupportMap;
+import com.jake404notfound.architecturalrealism.physics.TickBudget;
+import com.jake404notfound.architecturalrealism.physics.UpdateQueue;
+import com.jake404notfound.architecturalrealism.physics.VoxelGrid;
 import net.minecraft.core.BlockPos;
+import net.minecraft.core.Direction;
+import net.minecraft.core.SectionPos;
+import net.minecraft.server.level.ServerLevel;
+import net.minecraft.world.entity.EntityType;
+import net.minecraft.world.entity.player.Player;
 import net.minecraft.world.level.Level;
 import net.minecraft.world.level.block.Block;
 import net.minecraft.world.level.block.Blocks;
+import net.minecraft.world.level.block.WallTorchBlock;
 import net.minecraft.world.level.block.state.BlockState;
 import net.minecraft.gametest.framework.GameTest;
 import net.minecraft.gametest.framework.GameTestHelper;
 import net.neoforged.neoforge.gametest.GameTestHolder;
 import net.neoforged.neoforge.gametest.PrefixGameTestTemplate;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
 
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
 
 /**
  * Tests for the structural integrity mechanics.
@@ -51,17 +81,19 @@ public class StructuralIntegrityTests {
         try {
             // Use reflection to access private method
             Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
-                "identifyFoundations", Level.class, BlockPos.class, int.class);
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
             identifyFoundationsMethod.setAccessible(true);
             
-            // Call the method
-            Set<BlockPos> foundations = (Set<BlockPos>) identifyFoundationsMethod.invoke(
-                manager, level, groundPos, 5);
+            // Load the area into a grid and call the method
+            StructureView view = new LevelStructureView(level);
+            VoxelGrid grid = new VoxelGrid();
+            grid.load(view, groundPos.offset(-5, -5, -5), groundPos.offset(5, 5, 5), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, grid);
             
             // Verify results
-            helper.assertTrue(foundations.contains(groundPos), "Ground block should be identified as foundation");
-            helper.assertTrue(foundations.contains(aboveGroundPos), "Block directly above ground should be identified as foundation");
-            helper.assertFalse(foundations.contains(floatingPos), "Floating block should not be identified as foundation");
+            helper.assertTrue(grid.isFoundation(grid.indexOf(groundPos)), "Ground block should be identified as foundation");
+            helper.assertTrue(grid.isFoundation(grid.indexOf(aboveGroundPos)), "Block directly above ground should be identified as foundation");
+            helper.assertFalse(grid.isFoundation(grid.indexOf(floatingPos)), "Floating block should not be identified as foundation");
             
             helper.succeed();
         } catch (Exception e) {
@@ -90,33 +122,34 @@ public class StructuralIntegrityTests {
         try {
             // Use reflection to access private methods
             Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
-                "identifyFoundations", Level.class, BlockPos.class, int.class);
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
             identifyFoundationsMethod.setAccessible(true);
             
             Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
-                "calculateSupport", Level.class, BlockPos.class, int.class, Set.class);
+                "calculateSupport", VoxelGrid.class);
             calculateSupportMethod.setAccessible(true);
             
-            // Identify foundations
-            Set<BlockPos> foundations = (Set<BlockPos>) identifyFoundationsMethod.invoke(
-                manager, level, basePos, 5);
+            // Load the area into a grid and identify foundations
+            StructureView view = new LevelStructureView(level);
+            VoxelGrid grid = new VoxelGrid();
+            grid.load(view, basePos.offset(-5, -5, -5), basePos.offset(5, 5, 5), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, grid);
             
             // Calculate support
-            Map<BlockPos, Double> supportMap = (Map<BlockPos, Double>) calculateSupportMethod.invoke(
-                manager, level, basePos, 5, foundations);
+            calculateSupportMethod.invoke(manager, grid);
             
             // Verify results
-            helper.assertTrue(supportMap.get(basePos) > 0, "Base block should have support");
-            helper.assertTrue(supportMap.get(basePos.above(1)) > 0, "Block above base should have support");
-            helper.assertTrue(supportMap.get(basePos.above(2)) > 0, "Block 2 above base should have support");
-            helper.assertTrue(supportMap.get(basePos.above(3)) > 0, "Block 3 above base should have support");
+            helper.assertTrue(grid.getSupport(grid.indexOf(basePos)) > 0, "Base block should have support");
+            helper.assertTrue(grid.getSupport(grid.indexOf(basePos.above(1))) > 0, "Block above base should have support");
+            helper.assertTrue(grid.getSupport(grid.indexOf(basePos.above(2))) > 0, "Block 2 above base should have support");
+            helper.assertTrue(grid.getSupport(grid.indexOf(basePos.above(3))) > 0, "Block 3 above base should have support");
             
             // Support should decrease as we go up
-            helper.assertTrue(supportMap.get(basePos) >= supportMap.get(basePos.above(1)),
+            helper.assertTrue(grid.getSupport(grid.indexOf(basePos)) >= grid.getSupport(grid.indexOf(basePos.above(1))),
                 "Support should decrease as height increases");
-            helper.assertTrue(supportMap.get(basePos.above(1)) >= supportMap.get(basePos.above(2)),
+            helper.assertTrue(grid.getSupport(grid.indexOf(basePos.above(1))) >= grid.getSupport(grid.indexOf(basePos.above(2))),
                 "Support should decrease as height increases");
-            helper.assertTrue(supportMap.get(basePos.above(2)) >= supportMap.get(basePos.above(3)),
+            helper.assertTrue(grid.getSupport(grid.indexOf(basePos.above(2))) >= grid.getSupport(grid.indexOf(basePos.above(3))),
                 "Support should decrease as height increases");
             
             helper.succeed();
@@ -145,23 +178,24 @@ public class StructuralIntegrityTests {
         try {
             // Use reflection to access private methods
             Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
-                "identifyFoundations", Level.class, BlockPos.class, int.class);
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
             identifyFoundationsMethod.setAccessible(true);
             
             Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
-                "calculateSupport", Level.class, BlockPos.class, int.class, Set.class);
+                "calculateSupport", VoxelGrid.class);
             calculateSupportMethod.setAccessible(true);
             
-            // Identify foundations
-            Set<BlockPos> foundations = (Set<BlockPos>) identifyFoundationsMethod.invoke(
-                manager, level, basePos, 5);
+            // Load the area into a grid and identify foundations
+            StructureView view = new LevelStructureView(level);
+            VoxelGrid grid = new VoxelGrid();
+            grid.load(view, basePos.offset(-5, -5, -5), basePos.offset(5, 5, 5), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, grid);
             
             // Calculate support
-            Map<BlockPos, Double> supportMap = (Map<BlockPos, Double>) calculateSupportMethod.invoke(
-                manager, level, basePos, 5, foundations);
+            calculateSupportMethod.invoke(manager, grid);
             
             // Verify results
-            helper.assertTrue(supportMap.get(basePos.above(1).north(1)) > 0,
+            helper.assertTrue(grid.getSupport(grid.indexOf(basePos.above(1).north(1))) > 0,
                 "Diagonally connected block should have support");
             
             helper.succeed();
@@ -231,32 +265,34 @@ public class StructuralIntegrityTests {
         try {
             // Use reflection to access private methods
             Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
-                "identifyFoundations", Level.class, BlockPos.class, int.class);
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
             identifyFoundationsMethod.setAccessible(true);
             
             Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
-                "calculateSupport", Level.class, BlockPos.class, int.class, Set.class);
+                "calculateSupport", VoxelGrid.class);
             calculateSupportMethod.setAccessible(true);
             
             Method findUnstableBlocksMethod = StructuralIntegrityManager.class.getDeclaredMethod(
-                "findUnstableBlocks", Level.class, Map.class);
+                "findUnstableBlocks", VoxelGrid.class);
             findUnstableBlocksMethod.setAccessible(true);
             
             // Create a combined test area that includes both structures
             BlockPos centerPos = new BlockPos(3, 2, 3);
             int radius = 5;
             
-            // Identify foundations
-            Set<BlockPos> foundations = (Set<BlockPos>) identifyFoundationsMethod.invoke(
-                manager, level, centerPos, radius);
+            // Load the area into a grid and identify foundations
+            StructureView view = new LevelStructureView(level);
+            VoxelGrid grid = new VoxelGrid();
+            grid.load(view, centerPos.offset(-radius, -radius, -radius), centerPos.offset(radius, radius, radius),
+                manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, grid);
             
             // Calculate support
-            Map<BlockPos, Double> supportMap = (Map<BlockPos, Double>) calculateSupportMethod.invoke(
-                manager, level, centerPos, radius, foundations);
+            calculateSupportMethod.invoke(manager, grid);
             
             // Find unstable blocks
             java.util.List<BlockPos> unstableBlocks = (java.util.List<BlockPos>) findUnstableBlocksMethod.invoke(
-                manager, level, supportMap);
+                manager, grid);
             
             // Verify results
             helper.assertTrue(unstableBlocks.contains(floatingPos), 
@@ -290,33 +326,31 @@ public class StructuralIntegrityTests {
         try {
             // Use reflection to access private methods and fields
             Method cacheSupport = StructuralIntegrityManager.class.getDeclaredMethod(
-                "cacheSupport", Level.class, BlockPos.class, double.class);
+                "cacheSupport", Level.class, VoxelGrid.class);
             cacheSupport.setAccessible(true);
             
-            Method getCachedSupport = StructuralIntegrityManager.class.getDeclaredMethod(
-                "getCachedSupport", Level.class, BlockPos.class);
-            getCachedSupport.setAccessible(true);
-            
             Field supportCacheField = StructuralIntegrityManager.class.getDeclaredField("supportCache");
             supportCacheField.setAccessible(true);
             
             // Cache a support value
-            double supportValue = 42.0;
-            cacheSupport.invoke(manager, level, pos, supportValue);
+            float supportValue = 42.0f;
+            VoxelGrid grid = new VoxelGrid();
+            grid.load(new LevelStructureView(level), pos.offset(-1, -1, -1), pos.offset(1, 1, 1), manager.getBlockPropertyManager());
+            grid.setSupport(grid.indexOf(pos), supportValue);
+            cacheSupport.invoke(manager, level, grid);
             
             // Retrieve the cached value
-            Double cachedValue = (Double) getCachedSupport.invoke(manager, level, pos);
+            float cachedValue = manager.getSupportField(level).get(pos.asLong());
             
             // Verify results
-            helper.assertTrue(cachedValue != null, "Support value should be cached");
+            helper.assertFalse(Float.isNaN(cachedValue), "Support value should be cached");
             helper.assertTrue(Math.abs(cachedValue - supportValue) < 0.001, 
                 "Cached support value should match original value");
             
             // Verify cache structure
-            Map<Level, Map<BlockPos, Double>> supportCache = 
-                (Map<Level, Map<BlockPos, Double>>) supportCacheField.get(manager);
-            helper.assertTrue(supportCache.containsKey(level), "Cache should contain the level");
-            helper.assertTrue(supportCache.get(level).containsKey(pos), 
+            SupportCache supportCache = (SupportCache) supportCacheField.get(manager);
+            helper.assertTrue(supportCache.get(level) != null, "Cache should contain the level");
+            helper.assertTrue(supportCache.get(level).containsKey(pos.asLong()), 
                 "Level cache should contain the position");
             
             helper.succeed();
@@ -324,4 +358,1280 @@ public class StructuralIntegrityTests {
             helper.fail("Test failed with exception: " + e.getMessage());
         }
     }
+    
+    /**
+     * Tests that removing a block only re-propagates the blocks that depended on it.
+     */
+    @GameTest(template = "empty")
+    public void testIncrementalRemoval(GameTestHelper helper) {
+        // Create a test environment
+        Level level = helper.getLevel();
+        
+        // Build two stone towers standing on bedrock
+        for (int y = 1; y <= 6; y++) {
+            helper.setBlock(new BlockPos(1, y, 1), y == 1 ? Blocks.BEDROCK : Blocks.STONE);
+            helper.setBlock(new BlockPos(3, y, 3), y == 1 ? Blocks.BEDROCK : Blocks.STONE);
+        }
+        
+        BlockPos center = helper.absolutePos(new BlockPos(2, 3, 2));
+        BlockPos gapPos = helper.absolutePos(new BlockPos(1, 4, 1));
+        BlockPos belowGap = helper.absolutePos(new BlockPos(1, 3, 1));
+        BlockPos aboveGap = helper.absolutePos(new BlockPos(1, 5, 1));
+        BlockPos otherTower = helper.absolutePos(new BlockPos(3, 6, 3));
+        
+        // Get the StructuralIntegrityManager instance
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        
+        try {
+            // Use reflection to access private methods
+            Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
+            identifyFoundationsMethod.setAccessible(true);
+            
+            Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "calculateSupport", VoxelGrid.class);
+            calculateSupportMethod.setAccessible(true);
+            
+            Method cacheSupport = StructuralIntegrityManager.class.getDeclaredMethod(
+                "cacheSupport", Level.class, VoxelGrid.class);
+            cacheSupport.setAccessible(true);
+            
+            Method updateSupportIncrementally = StructuralIntegrityManager.class.getDeclaredMethod(
+                "updateSupportIncrementally", Level.class, LongArrayList.class, int.class);
+            updateSupportIncrementally.setAccessible(true);
+            
+            // Solve the region once to fill the support field
+            StructureView view = new LevelStructureView(level);
+            VoxelGrid grid = new VoxelGrid();
+            grid.load(view, center.offset(-4, -4, -4), center.offset(4, 4, 4), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, grid);
+            calculateSupportMethod.invoke(manager, grid);
+            cacheSupport.invoke(manager, level, grid);
+            
+            SupportField field = manager.getSupportField(level);
+            float belowGapSupport = field.get(belowGap.asLong());
+            float otherTowerSupport = field.get(otherTower.asLong());
+            
+            // Remove a block from the first tower and update the field in place
+            level.removeBlock(gapPos, false);
+            boolean updated = (boolean) updateSupportIncrementally.invoke(manager, level, LongArrayList.of(gapPos.asLong()), 9 * 9 * 9);
+            
+            // Verify results
+            helper.assertTrue(updated, "Removal inside the solved region should be handled incrementally");
+            helper.assertTrue(Float.isNaN(field.get(gapPos.asLong())),
+                "Removed block should leave the support field");
+            helper.assertTrue(Float.isNaN(field.get(aboveGap.asLong())),
+                "Block that depended on the removed block should have collapsed");
+            helper.assertTrue(field.get(belowGap.asLong()) == belowGapSupport,
+                "Block below the removed block should keep its support");
+            helper.assertTrue(field.get(otherTower.asLong()) == otherTowerSupport,
+                "Unrelated tower should keep its support");
+            
+            helper.succeed();
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Tests that an edit only touches the cached support of the sections it affects.
+     */
+    @GameTest(template = "empty")
+    public void testSectionScopedCache(GameTestHelper helper) {
+        // Create a test environment
+        Level level = helper.getLevel();
+        
+        // Build two stone towers on bedrock, far enough apart to be in different sections
+        for (int y = 1; y <= 4; y++) {
+            helper.setBlock(new BlockPos(1, y, 1), y == 1 ? Blocks.BEDROCK : Blocks.STONE);
+            helper.setBlock(new BlockPos(1, y, 33), y == 1 ? Blocks.BEDROCK : Blocks.STONE);
+        }
+        
+        BlockPos editedTop = helper.absolutePos(new BlockPos(1, 4, 1));
+        BlockPos otherTop = helper.absolutePos(new BlockPos(1, 4, 33));
+        
+        // Get the StructuralIntegrityManager instance
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        
+        try {
+            // Use reflection to access private methods
+            Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
+            identifyFoundationsMethod.setAccessible(true);
+            
+            Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "calculateSupport", VoxelGrid.class);
+            calculateSupportMethod.setAccessible(true);
+            
+            Method cacheSupport = StructuralIntegrityManager.class.getDeclaredMethod(
+                "cacheSupport", Level.class, VoxelGrid.class);
+            cacheSupport.setAccessible(true);
+            
+            Method updateSupportIncrementally = StructuralIntegrityManager.class.getDeclaredMethod(
+                "updateSupportIncrementally", Level.class, LongArrayList.class, int.class);
+            updateSupportIncrementally.setAccessible(true);
+            
+            // Solve around both towers
+            StructureView view = new LevelStructureView(level);
+            for (BlockPos top : new BlockPos[] {editedTop, otherTop}) {
+                VoxelGrid grid = new VoxelGrid();
+                grid.load(view, top.offset(-4, -4, -4), top.offset(4, 4, 4), manager.getBlockPropertyManager());
+                identifyFoundationsMethod.invoke(manager, view, grid);
+                calculateSupportMethod.invoke(manager, grid);
+                cacheSupport.invoke(manager, level, grid);
+            }
+            
+            SupportField field = manager.getSupportField(level);
+            SupportMap otherSection = field.getSection(SectionPos.blockToSection(otherTop.asLong()));
+            int otherSectionSize = otherSection.size();
+            
+            // Edit the first tower
+            long lookupsBefore = field.getHits() + field.getMisses();
+            level.removeBlock(editedTop, false);
+            updateSupportIncrementally.invoke(manager, level, LongArrayList.of(editedTop.asLong()), 9 * 9 * 9);
+            
+            // Verify results
+            helper.assertTrue(field.getHits() + field.getMisses() == lookupsBefore,
+                "Reads made by the solver should not count as lookups");
+            long hitsBefore = field.getHits();
+            helper.assertFalse(Float.isNaN(field.get(otherTop.asLong())),
+                "Cached support of the other tower should survive the edit");
+            helper.assertTrue(field.getHits() == hitsBefore + 1, "Lookup of the other tower should count as a hit");
+            helper.assertTrue(field.getSection(SectionPos.blockToSection(otherTop.asLong())) == otherSection
+                    && otherSection.size() == otherSectionSize,
+                "Section of the other tower should be untouched");
+            
+            helper.succeed();
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Tests that the support cache evicts rarely used sections before busy ones when over its limit.
+     */
+    @GameTest(template = "empty")
+    public void testSupportCacheEviction(GameTestHelper helper) {
+        // Create a test environment
+        Level level = helper.getLevel();
+        
+        SupportCache cache = new SupportCache();
+        SupportField field = cache.getOrCreate(level);
+        
+        // A busy section, used on several ticks
+        long busyPos = BlockPos.asLong(0, 64, 0);
+        for (int tick = 0; tick < 8; tick++) {
+            cache.tick();
+            field.put(busyPos, 50.0f, (short) 1, SupportMap.NO_PARENT);
+        }
+        
+        // Several sections touched once each
+        for (int i = 1; i <= 8; i++) {
+            cache.tick();
+            field.put(BlockPos.asLong(i * 16, 64, 0), 50.0f, (short) 1, SupportMap.NO_PARENT);
+        }
+        
+        // Shrink the limit so only a few sections fit
+        cache.setMaxBytes(field.getEstimatedBytes() / 3);
+        int evicted = cache.enforceLimit();
+        
+        // Verify results
+        helper.assertTrue(evicted > 0, "Sections should be evicted once over the limit");
+        helper.assertTrue(cache.getTotalBytes() <= cache.getMaxBytes(), "Cache should fit in its limit after eviction");
+        helper.assertTrue(field.containsKey(busyPos), "Busy section should survive eviction");
+        helper.assertTrue(field.getEvictions() == evicted, "Evictions should be counted per dimension");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that saved chunk support data restores the same field and is dropped when its version changes.
+     */
+    @GameTest(template = "empty")
+    public void testChunkSupportPersistence(GameTestHelper helper) {
+        SupportField field = new SupportField(() -> 0L);
+        
+        // A short column with parent links, plus a block in a second section of the same chunk
+        long base = BlockPos.asLong(3, 64, 5);
+        long above = BlockPos.asLong(3, 65, 5);
+        long higher = BlockPos.asLong(3, 81, 5);
+        field.put(base, 100.0f, (short) 0, SupportMap.NO_PARENT);
+        field.put(above, 90.0f, (short) 1, (byte) Direction.DOWN.ordinal());
+        field.put(higher, 42.5f, (short) 17, (byte) Direction.NORTH.ordinal());
+        
+        long sectionKey = SectionPos.blockToSection(base);
+        helper.assertTrue(field.isDirty(sectionKey), "Changed sections should be marked dirty");
+        
+        // Write the dirty sections out the way the manager does at the end of a tick
+        ChunkSupportData data = new ChunkSupportData();
+        data.resetIfOutdated(7);
+        field.flushDirtySections((key, section) -> data.putSection(SectionPos.y(key), section));
+        helper.assertTrue(!field.isDirty(sectionKey), "Flushed sections should no longer be dirty");
+        helper.assertTrue(data.getSectionYs().length == 2, "Both sections should be saved");
+        
+        // Restore into an empty field
+        SupportField restored = new SupportField(() -> 0L);
+        for (int sectionY : data.getSectionYs()) {
+            data.restoreSection(SectionPos.asLong(0, sectionY, 0), restored);
+        }
+        
+        helper.assertTrue(restored.size() == 3, "Every saved block should be restored");
+        for (long pos : new long[] {base, above, higher}) {
+            helper.assertTrue(restored.get(pos) == field.get(pos), "Restored support should match at " + BlockPos.of(pos));
+            helper.assertTrue(restored.getDistance(pos) == field.getDistance(pos), "Restored distance should match at " + BlockPos.of(pos));
+            helper.assertTrue(restored.getParent(pos) == field.getParent(pos), "Restored parent should match at " + BlockPos.of(pos));
+        }
+        
+        // A new version invalidates everything saved under the old one
+        data.resetIfOutdated(8);
+        helper.assertTrue(data.isEmpty(), "Saved support should be dropped when its version changes");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that removing entries keeps every remaining entry reachable.
+     */
+    @GameTest(template = "empty")
+    public void testSupportMapRemoval(GameTestHelper helper) {
+        SupportMap map = new SupportMap();
+        
+        // Fill a whole section, so the map grows and many entries sit in shared probe chains
+        int count = 0;
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                map.put(BlockPos.asLong(x, 64, z), x * 16 + z, (short) x, (byte) Direction.DOWN.ordinal());
+                count++;
+            }
+        }
+        
+        // Remove every other entry, which shifts the entries behind each one back into its slot
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z += 2) {
+                helper.assertTrue(map.remove(BlockPos.asLong(x, 64, z)), "Tracked entries should be removed");
+                count--;
+            }
+        }
+        helper.assertFalse(map.remove(BlockPos.asLong(0, 64, 0)), "Removing a missing entry should do nothing");
+        
+        // Verify results
+        helper.assertTrue(map.size() == count, "Size should count only the remaining entries");
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                long pos = BlockPos.asLong(x, 64, z);
+                if (z % 2 == 0) {
+                    helper.assertFalse(map.containsKey(pos), "Removed entry should be gone at " + BlockPos.of(pos));
+                } else {
+                    helper.assertTrue(map.get(pos) == x * 16 + z && map.getDistance(pos) == x
+                            && map.getParent(pos) == Direction.DOWN.ordinal(),
+                        "Remaining entry should keep its values at " + BlockPos.of(pos));
+                }
+            }
+        }
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that nearby edits are merged into one debounced task while distant ones stay separate.
+     */
+    @GameTest(template = "empty")
+    public void testUpdateCoalescing(GameTestHelper helper) {
+        // Create a test environment
+        Level level = helper.getLevel();
+        BlockPos start = helper.absolutePos(new BlockPos(0, 2, 0));
+        int radius = 8;
+        
+        UpdateQueue queue = new UpdateQueue(level);
+        
+        // A wall placed block by block, with the same block edited twice
+        for (int i = 0; i < 64; i++) {
+            queue.add(start.east(i), radius);
+        }
+        StructuralUpdateTask wall = queue.add(start, radius);
+        
+        // An edit far away from the wall
+        queue.add(start.south(200), radius);
+        
+        helper.assertTrue(queue.size() == 2, "The wall should merge into one task, separate from the distant edit");
+        helper.assertTrue(wall.getChangeCount() == 64, "Repeated edits of a block should only be recorded once");
+        helper.assertTrue(wall.getMin().equals(start.offset(-radius, -radius, -radius)), "Merged box should start around the first block");
+        helper.assertTrue(wall.getMax().equals(start.offset(63 + radius, radius, radius)), "Merged box should end around the last block");
+        
+        // Nothing is handed out while edits are still arriving
+        helper.assertTrue(queue.poll() == null, "Tasks should be debounced while they are being edited");
+        queue.tick();
+        queue.tick();
+        helper.assertTrue(queue.poll() == wall, "The oldest task should be processed once the edits stop");
+        helper.assertTrue(queue.poll() != null && queue.isEmpty(), "The distant task should follow");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that the tick budget shrinks when the server is behind and learns the cost per block.
+     */
+    @GameTest(template = "empty")
+    public void testTickBudget(GameTestHelper helper) {
+        TickBudget budget = new TickBudget();
+        long maxBudget = 5_000_000L;
+        long nanosPerTick = 50_000_000L;
+        
+        // An idle server gets the full budget
+        budget.start(maxBudget, 10_000_000L, nanosPerTick, 1);
+        helper.assertTrue(budget.getBudget() == maxBudget, "Idle server should get the full budget");
+        
+        // A server with little spare time gets less, but never nothing
+        budget.start(maxBudget, 46_000_000L, nanosPerTick, 1);
+        helper.assertTrue(budget.getBudget() < maxBudget, "Busy server should get a smaller budget");
+        budget.start(maxBudget, 80_000_000L, nanosPerTick, 1);
+        helper.assertTrue(budget.getBudget() > 0, "Lagging server should keep a minimum budget");
+        
+        // Measured region solves move their estimate towards the real time per block
+        budget.start(maxBudget, 10_000_000L, nanosPerTick, 1);
+        for (int i = 0; i < 50; i++) {
+            budget.record(TickBudget.Work.SOLVE, 1000, 1_000_000L);
+        }
+        helper.assertTrue(budget.fits(TickBudget.Work.SOLVE, 1000), "A solve measured at 1 ms should fit in 5 ms");
+        helper.assertFalse(budget.fits(TickBudget.Work.SOLVE, 10_000), "A solve estimated at 10 ms should not fit in 5 ms");
+        
+        // Cheap incremental updates don't make region solves look cheap
+        for (int i = 0; i < 50; i++) {
+            budget.record(TickBudget.Work.INCREMENTAL, 1000, 10_000L);
+        }
+        helper.assertTrue(budget.fits(TickBudget.Work.INCREMENTAL, 10_000), "Incremental updates should keep their own estimate");
+        helper.assertFalse(budget.fits(TickBudget.Work.SOLVE, 10_000), "Region solves should keep their own estimate");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that each level queues its own updates and gets an even share of the tick budget.
+     */
+    @GameTest(template = "empty")
+    public void testPerLevelUpdates(GameTestHelper helper) {
+        ServerLevel overworld = helper.getLevel();
+        ServerLevel nether = overworld.getServer().getLevel(Level.NETHER);
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        
+        try {
+            Method scheduleMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "scheduleStructuralUpdate", Level.class, BlockPos.class, int.class);
+            scheduleMethod.setAccessible(true);
+            
+            // Changes in different levels land in different queues
+            int overworldQueued = manager.getLevelStates().containsKey(overworld)
+                ? manager.getLevelStates().get(overworld).getQueuedTasks() : 0;
+            scheduleMethod.invoke(manager, overworld, helper.absolutePos(new BlockPos(1, 2, 1)), 4);
+            scheduleMethod.invoke(manager, nether, new BlockPos(0, 64, 0), 4);
+            helper.assertTrue(manager.getLevelStates().get(overworld).getQueuedTasks() == overworldQueued + 1,
+                "Overworld change should be queued in the overworld");
+            helper.assertTrue(manager.getLevelStates().get(nether).getQueuedTasks() >= 1,
+                "Nether change should be queued in the nether");
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+        
+        // Levels sharing a tick split the budget evenly
+        TickBudget whole = new TickBudget();
+        TickBudget half = new TickBudget();
+        whole.start(5_000_000L, 10_000_000L, 50_000_000L, 1);
+        half.start(5_000_000L, 10_000_000L, 50_000_000L, 2);
+        helper.assertTrue(half.getBudget() == whole.getBudget() / 2, "Two busy levels should each get half the budget");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that the per-state property table matches the block properties it was compiled from.
+     */
+    @GameTest(template = "empty")
+    public void testBlockStateTable(GameTestHelper helper) {
+        BlockPropertyManager properties = StructuralIntegrityManager.getInstance().getBlockPropertyManager();
+        BlockStateTable table = properties.getStateTable();
+        
+        helper.assertTrue(table.size() == Block.BLOCK_STATE_REGISTRY.size(), "Table should cover every block state");
+        
+        int stone = Block.getId(Blocks.STONE.defaultBlockState());
+        helper.assertTrue(table.getSupportFactor(stone) == (float) properties.getSupportFactor(Blocks.STONE),
+            "Stone support factor should match its properties");
+        helper.assertTrue(table.getWeight(stone) == (float) properties.getBlockProperties(Blocks.STONE).getWeight(),
+            "Stone weight should match its properties");
+        helper.assertFalse(table.isAir(stone), "Stone should not be air");
+        helper.assertFalse(table.isFoundationMaterial(stone), "Stone should not be foundation material");
+        
+        helper.assertTrue(table.isAir(Block.getId(Blocks.AIR.defaultBlockState())), "Air should be flagged as air");
+        helper.assertTrue(table.isFoundationMaterial(Blocks.BEDROCK.defaultBlockState()), "Bedrock should be foundation material");
+        
+        // Every state of a block shares the block's properties
+        for (BlockState state : Blocks.OAK_LOG.getStateDefinition().getPossibleStates()) {
+            helper.assertTrue(table.getSupportFactor(state) == (float) properties.getSupportFactor(Blocks.OAK_LOG),
+                "Every oak log state should share the block's support factor");
+        }
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that recompiling block property definitions only reports the states whose properties changed.
+     */
+    @GameTest(template = "empty")
+    public void testBlockPropertyReload(GameTestHelper helper) {
+        BlockPropertyManager properties = StructuralIntegrityManager.getInstance().getBlockPropertyManager();
+        List<BlockPropertyDefinition> original = properties.getDefinitions();
+        
+        try {
+            // Recompiling the same definitions changes nothing
+            helper.assertTrue(properties.compileDefinitions().isEmpty(), "Unchanged definitions should change no states");
+            
+            // Override stone; only stone's states should be reported
+            List<BlockPropertyDefinition> definitions = new ArrayList<>(original);
+            definitions.add(new BlockPropertyDefinition(List.of(Blocks.STONE), List.of(),
+                new BlockProperties(8, 40, 40, 4, 20, 0.1)));
+            properties.setDefinitions(definitions);
+            BitSet changed = properties.compileDefinitions();
+            
+            helper.assertTrue(changed.get(Block.getId(Blocks.STONE.defaultBlockState())), "Stone should be reported as changed");
+            helper.assertFalse(changed.get(Block.getId(Blocks.DIRT.defaultBlockState())), "Dirt should not be reported as changed");
+            helper.assertTrue(properties.getStateTable().getSupportFactor(Blocks.STONE.defaultBlockState()) == 4.0f,
+                "Stone should use the new properties");
+        } finally {
+            properties.setDefinitions(original);
+            properties.compileDefinitions();
+        }
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that the foundation index agrees with the column walk and follows block changes.
+     */
+    @GameTest(template = "empty")
+    public void testFoundationIndex(GameTestHelper helper) {
+        // Create a test environment
+        Level level = helper.getLevel();
+        
+        // A tower on the ground, a block floating above it, and a block on bedrock
+        BlockPos basePos = new BlockPos(1, 1, 1);
+        for (int i = 0; i < 4; i++) {
+            helper.setBlock(basePos.above(i), Blocks.STONE);
+        }
+        helper.setBlock(basePos.above(6), Blocks.STONE);
+        helper.setBlock(new BlockPos(3, 1, 3), Blocks.BEDROCK);
+        helper.setBlock(new BlockPos(3, 2, 3), Blocks.DIRT);
+        
+        // Get the StructuralIntegrityManager instance
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        
+        try {
+            Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
+            identifyFoundationsMethod.setAccessible(true);
+            
+            Method getFoundationIndex = StructuralIntegrityManager.class.getDeclaredMethod(
+                "getFoundationIndex", Level.class);
+            getFoundationIndex.setAccessible(true);
+            FoundationIndex foundations = (FoundationIndex) getFoundationIndex.invoke(manager, level);
+            
+            // Every cell should get the same answer from the index as from the column walk
+            BlockPos center = helper.absolutePos(basePos.above(3));
+            StructureView view = new LevelStructureView(level);
+            VoxelGrid grid = new VoxelGrid();
+            grid.load(view, center.offset(-4, -4, -4), center.offset(4, 4, 4), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, grid);
+            
+            BlockPos min = grid.getMinCorner();
+            for (int y = 0; y < grid.getSizeY() - 2; y++) {
+                for (int z = 0; z < grid.getSizeZ() - 2; z++) {
+                    for (int x = 0; x < grid.getSizeX() - 2; x++) {
+                        BlockPos pos = min.offset(x, y, z);
+                        helper.assertTrue(foundations.isFoundation(pos) == grid.isFoundation(grid.indexOf(pos)),
+                            "Foundation index should match the column walk at " + pos);
+                    }
+                }
+            }
+            helper.assertTrue(foundations.isFoundation(helper.absolutePos(new BlockPos(3, 2, 3))),
+                "Block on bedrock should be a foundation");
+            
+            // Filling the gap puts the floating block on a tall enough column
+            BlockPos floating = helper.absolutePos(basePos.above(6));
+            helper.assertFalse(foundations.isFoundation(floating), "Floating block should not be a foundation");
+            helper.setBlock(basePos.above(4), Blocks.STONE);
+            helper.setBlock(basePos.above(5), Blocks.STONE);
+            foundations.onBlockChanged(helper.absolutePos(basePos.above(5)));
+            helper.assertTrue(foundations.isFoundation(floating), "Block on a filled column should become a foundation");
+            
+            helper.succeed();
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Tests that the SIMPLE mode connectivity engine only drops blocks that lost every path to an anchor.
+     */
+    @GameTest(template = "empty")
+    public void testGroundConnectivity(GameTestHelper helper) {
+        Level level = helper.getLevel();
+        ConnectivityEngine connectivity = new ConnectivityEngine(level,
+            StructuralIntegrityManager.getInstance().getBlockPropertyManager());
+        List<BlockPos> floating = new ArrayList<>();
+        
+        // Two untracked anchors with a tracked arch between them: up from each, joined across the top
+        BlockPos leftAnchor = helper.absolutePos(new BlockPos(1, 2, 1));
+        BlockPos rightAnchor = helper.absolutePos(new BlockPos(5, 2, 1));
+        level.setBlock(leftAnchor, Blocks.STONE.defaultBlockState(), Block.UPDATE_ALL);
+        level.setBlock(rightAnchor, Blocks.STONE.defaultBlockState(), Block.UPDATE_ALL);
+        
+        List<BlockPos> arch = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            arch.add(leftAnchor.above(i));
+            arch.add(rightAnchor.above(i));
+        }
+        for (int x = 1; x <= 3; x++) {
+            arch.add(leftAnchor.above(2).east(x));
+        }
+        for (BlockPos pos : arch) {
+            level.setBlock(pos, Blocks.OAK_PLANKS.defaultBlockState(), Block.UPDATE_ALL);
+            connectivity.onBlockChanged(pos, 1000, floating);
+        }
+        helper.assertTrue(connectivity.size() == arch.size(), "Every placed block should be tracked");
+        helper.assertFalse(connectivity.isTracked(leftAnchor), "Anchors should not be tracked");
+        
+        // Breaking the top splits the arch, but each half still stands on an anchor
+        BlockPos top = leftAnchor.above(2).east(2);
+        level.setBlock(top, Blocks.AIR.defaultBlockState(), Block.UPDATE_ALL);
+        connectivity.onBlockChanged(top, 1000, floating);
+        helper.assertTrue(floating.isEmpty(), "Both halves should still be connected to an anchor");
+        
+        // Removing the right anchor leaves only the right half floating
+        level.setBlock(rightAnchor, Blocks.AIR.defaultBlockState(), Block.UPDATE_ALL);
+        connectivity.onBlockChanged(rightAnchor, 1000, floating);
+        helper.assertTrue(floating.size() == 3, "The right half should have come loose");
+        helper.assertTrue(floating.contains(rightAnchor.above(2)), "The right column should be floating");
+        helper.assertFalse(floating.contains(leftAnchor.above(1)), "The left half should still stand");
+        helper.assertFalse(connectivity.isTracked(rightAnchor.above(1)), "Floating blocks should stop being tracked");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that tracked blocks survive their chunk unloading and that liquids don't count as anchors.
+     */
+    @GameTest(template = "empty")
+    public void testConnectivityRestore(GameTestHelper helper) {
+        Level level = helper.getLevel();
+        ConnectivityEngine connectivity = new ConnectivityEngine(level,
+            StructuralIntegrityManager.getInstance().getBlockPropertyManager());
+        List<BlockPos> floating = new ArrayList<>();
+        
+        // A tracked column on an untracked anchor, with water against its side
+        BlockPos anchor = helper.absolutePos(new BlockPos(1, 2, 1));
+        level.setBlock(anchor, Blocks.STONE.defaultBlockState(), Block.UPDATE_ALL);
+        level.setBlock(anchor.above(2).east(), Blocks.WATER.defaultBlockState(), Block.UPDATE_CLIENTS);
+        for (int i = 1; i <= 3; i++) {
+            level.setBlock(anchor.above(i), Blocks.OAK_PLANKS.defaultBlockState(), Block.UPDATE_ALL);
+            connectivity.onBlockChanged(anchor.above(i), 1000, floating);
+        }
+        
+        // Save the chunk's tracked blocks the way the manager does when it unloads
+        int chunkX = SectionPos.blockToSectionCoord(anchor.getX());
+        int chunkZ = SectionPos.blockToSectionCoord(anchor.getZ());
+        ChunkSupportData data = new ChunkSupportData();
+        data.setTrackedBlocks(connectivity.getTrackedBlocks(chunkX, chunkZ));
+        connectivity.removeChunk(chunkX, chunkZ);
+        helper.assertTrue(connectivity.size() == 0, "Unloading the chunk should stop tracking its blocks");
+        
+        // Load it again
+        connectivity.restoreChunk(level.getChunk(chunkX, chunkZ), data.getTrackedBlocks());
+        helper.assertTrue(connectivity.size() == 3, "Saved blocks should be tracked again");
+        helper.assertFalse(connectivity.isTracked(anchor), "The anchor should not be tracked");
+        
+        // Removing the anchor leaves the column touching only water
+        level.setBlock(anchor, Blocks.AIR.defaultBlockState(), Block.UPDATE_ALL);
+        connectivity.onBlockChanged(anchor, 1000, floating);
+        
+        // Verify results
+        helper.assertTrue(floating.size() == 3, "The restored column should come loose once its anchor is gone");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that the section flood fill follows winding paths along every axis and across section faces.
+     */
+    @GameTest(template = "empty")
+    public void testSectionFloodFill(GameTestHelper helper) {
+        long[] mask = new long[SectionFloodFill.WORDS];
+        long[] reached = new long[SectionFloodFill.WORDS];
+        
+        // A snake along X that turns back every Z row, then climbs at its end and runs back along the layer above
+        for (int z = 0; z < 16; z += 2) {
+            for (int x = 0; x < 16; x++) {
+                SectionFloodFill.set(mask, SectionFloodFill.index(x, 0, z));
+            }
+            if (z < 14) {
+                SectionFloodFill.set(mask, SectionFloodFill.index((z & 2) == 0 ? 15 : 0, 0, z + 1));
+            }
+        }
+        SectionFloodFill.set(mask, SectionFloodFill.index(0, 1, 14));
+        for (int x = 0; x < 16; x++) {
+            SectionFloodFill.set(mask, SectionFloodFill.index(x, 2, 14));
+        }
+        SectionFloodFill.set(mask, SectionFloodFill.index(0, 2, 13));
+        // Cut off from the snake: the row between them is left empty
+        SectionFloodFill.set(mask, SectionFloodFill.index(5, 5, 5));
+        
+        SectionFloodFill.set(reached, SectionFloodFill.index(0, 0, 0));
+        helper.assertTrue(SectionFloodFill.fill(mask, reached), "The fill should grow from its seed");
+        helper.assertTrue(SectionFloodFill.count(reached) == SectionFloodFill.count(mask) - 1,
+            "Everything but the separate block should be reached");
+        helper.assertFalse(SectionFloodFill.get(reached, SectionFloodFill.index(5, 5, 5)),
+            "A block with no connection should not be reached");
+        helper.assertTrue(SectionFloodFill.get(reached, SectionFloodFill.index(15, 2, 14)),
+            "The end of the path should be reached");
+        helper.assertFalse(SectionFloodFill.fill(mask, reached), "A finished fill should not grow again");
+        
+        // The row at x = 15 carries over into the section to the east, but not into the one to the west
+        long[] eastMask = new long[SectionFloodFill.WORDS];
+        long[] eastReached = new long[SectionFloodFill.WORDS];
+        SectionFloodFill.set(eastMask, SectionFloodFill.index(0, 2, 14));
+        SectionFloodFill.set(eastMask, SectionFloodFill.index(0, 3, 14));
+        SectionFloodFill.set(eastMask, SectionFloodFill.index(0, 9, 9));
+        helper.assertTrue(SectionFloodFill.spread(reached, Direction.EAST, eastMask, eastReached),
+            "The east face should seed the neighbor");
+        SectionFloodFill.fill(eastMask, eastReached);
+        helper.assertTrue(SectionFloodFill.count(eastReached) == 2, "Only the blocks touching the path should be reached");
+        
+        long[] westReached = new long[SectionFloodFill.WORDS];
+        helper.assertFalse(SectionFloodFill.spread(reached, Direction.WEST, eastMask, westReached),
+            "Nothing on the west face lines up with the neighbor");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that support propagation paused after a few steps at a time ends with the same field as one run.
+     */
+    @GameTest(template = "empty")
+    public void testResumablePropagation(GameTestHelper helper) {
+        // Create a test environment
+        Level level = helper.getLevel();
+        
+        // An L-shaped structure: a tower with an arm reaching out from its top
+        BlockPos basePos = new BlockPos(1, 1, 1);
+        helper.setBlock(basePos.below(), Blocks.BEDROCK);
+        for (int i = 0; i < 5; i++) {
+            helper.setBlock(basePos.above(i), Blocks.STONE);
+            helper.setBlock(basePos.above(4).east(i + 1), Blocks.OAK_PLANKS);
+        }
+        BlockPos center = helper.absolutePos(basePos.above(2));
+        
+        // Get the StructuralIntegrityManager instance
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        
+        try {
+            // Use reflection to access private methods
+            Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
+            identifyFoundationsMethod.setAccessible(true);
+            
+            Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "calculateSupport", VoxelGrid.class);
+            calculateSupportMethod.setAccessible(true);
+            
+            Class<?> propagationClass = Class.forName(StructuralIntegrityManager.class.getName() + "$SupportPropagation");
+            Method startPropagationMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "startPropagation", VoxelGrid.class);
+            startPropagationMethod.setAccessible(true);
+            
+            Method propagateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "propagateSupport", propagationClass, long.class);
+            propagateSupportMethod.setAccessible(true);
+            
+            // Solve once in one go
+            StructureView view = new LevelStructureView(level);
+            VoxelGrid expected = new VoxelGrid();
+            expected.load(view, center.offset(-6, -6, -6), center.offset(6, 6, 6), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, expected);
+            calculateSupportMethod.invoke(manager, expected);
+            
+            // Solve again, pausing every two steps
+            VoxelGrid resumed = new VoxelGrid();
+            resumed.load(view, center.offset(-6, -6, -6), center.offset(6, 6, 6), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, resumed);
+            Object propagation = startPropagationMethod.invoke(manager, resumed);
+            int pauses = 0;
+            while (!(Boolean) propagateSupportMethod.invoke(manager, propagation, 2L)) {
+                pauses++;
+            }
+            
+            // Verify results
+            helper.assertTrue(pauses > 1, "Propagation should have been paused several times");
+            for (int index = 0; index < expected.getVolume(); index++) {
+                helper.assertTrue(expected.getSupport(index) == resumed.getSupport(index)
+                        && expected.getDistance(index) == resumed.getDistance(index)
+                        && expected.getParent(index) == resumed.getParent(index),
+                    "Resumed propagation should match at " + expected.getPos(index));
+            }
+            
+            helper.succeed();
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Tests that the sweep solver ends with the same support as the queue.
+     */
+    @GameTest(template = "empty")
+    public void testSweepSupport(GameTestHelper helper) {
+        // Create a test environment
+        Level level = helper.getLevel();
+        
+        // A solid stone block with a wooden floor cantilevered off its top and a glass pane hanging below it
+        BlockPos basePos = new BlockPos(1, 1, 1);
+        for (int x = 0; x < 3; x++) {
+            for (int z = 0; z < 3; z++) {
+                helper.setBlock(basePos.offset(x, -1, z), Blocks.BEDROCK);
+                for (int y = 0; y < 4; y++) {
+                    helper.setBlock(basePos.offset(x, y, z), Blocks.STONE);
+                }
+            }
+        }
+        for (int x = 3; x < 7; x++) {
+            for (int z = 0; z < 3; z++) {
+                helper.setBlock(basePos.offset(x, 3, z), Blocks.OAK_PLANKS);
+            }
+            helper.setBlock(basePos.offset(x, 2, 1), Blocks.GLASS);
+        }
+        BlockPos center = helper.absolutePos(basePos.offset(3, 2, 1));
+        
+        // Get the StructuralIntegrityManager instance
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        
+        try {
+            // Use reflection to access private methods
+            Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
+            identifyFoundationsMethod.setAccessible(true);
+            
+            Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "calculateSupport", VoxelGrid.class);
+            calculateSupportMethod.setAccessible(true);
+            
+            Method sweepSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "sweepSupport", VoxelGrid.class);
+            sweepSupportMethod.setAccessible(true);
+            
+            // Solve with the queue
+            StructureView view = new LevelStructureView(level);
+            VoxelGrid expected = new VoxelGrid();
+            expected.load(view, center.offset(-6, -6, -6), center.offset(6, 6, 6), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, expected);
+            calculateSupportMethod.invoke(manager, expected);
+            
+            // Solve again with sweeps
+            VoxelGrid swept = new VoxelGrid();
+            swept.load(view, center.offset(-6, -6, -6), center.offset(6, 6, 6), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, swept);
+            sweepSupportMethod.invoke(manager, swept);
+            
+            // Verify results; parents may differ where two neighbors pass the same support
+            for (int index = 0; index < expected.getVolume(); index++) {
+                helper.assertTrue(expected.getSupport(index) == swept.getSupport(index)
+                        && expected.getDistance(index) == swept.getDistance(index),
+                    "Swept support should match at " + expected.getPos(index));
+            }
+            helper.assertTrue(swept.getSupport(swept.indexOf(helper.absolutePos(basePos.offset(6, 3, 1)))) > 0,
+                "The end of the floor should be supported");
+            
+            helper.succeed();
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Tests that a solve split into section tiles ends with the same support as one on a single thread.
+     */
+    @GameTest(template = "empty")
+    public void testTiledSupport(GameTestHelper helper) {
+        // Create a test environment
+        Level level = helper.getLevel();
+        
+        // A stone tower with a wooden bridge reaching out further than a chunk section, and a stone wall under its far end
+        BlockPos basePos = new BlockPos(1, 1, 1);
+        for (int x = 0; x < 2; x++) {
+            for (int z = 0; z < 2; z++) {
+                helper.setBlock(basePos.offset(x, -1, z), Blocks.BEDROCK);
+                for (int y = 0; y < 6; y++) {
+                    helper.setBlock(basePos.offset(x, y, z), Blocks.STONE);
+                }
+            }
+        }
+        for (int x = 2; x < 22; x++) {
+            helper.setBlock(basePos.offset(x, 5, 0), Blocks.OAK_PLANKS);
+            helper.setBlock(basePos.offset(x, 5, 1), Blocks.OAK_PLANKS);
+        }
+        helper.setBlock(basePos.offset(21, -1, 0), Blocks.BEDROCK);
+        for (int y = 0; y < 5; y++) {
+            helper.setBlock(basePos.offset(21, y, 0), Blocks.STONE);
+        }
+        BlockPos center = helper.absolutePos(basePos.offset(11, 3, 0));
+        
+        // Get the StructuralIntegrityManager instance
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        
+        try {
+            // Use reflection to access private methods
+            Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
+            identifyFoundationsMethod.setAccessible(true);
+            
+            Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "calculateSupport", VoxelGrid.class);
+            calculateSupportMethod.setAccessible(true);
+            
+            Method solveTilesMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "solveTiles", VoxelGrid.class);
+            solveTilesMethod.setAccessible(true);
+            
+            // Solve on one thread
+            StructureView view = new LevelStructureView(level);
+            VoxelGrid expected = new VoxelGrid();
+            expected.load(view, center.offset(-12, -12, -12), center.offset(12, 12, 12), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, expected);
+            calculateSupportMethod.invoke(manager, expected);
+            
+            // Solve again in tiles, which a 25 block wide box always needs several of
+            VoxelGrid tiled = new VoxelGrid();
+            tiled.load(view, center.offset(-12, -12, -12), center.offset(12, 12, 12), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, view, tiled);
+            solveTilesMethod.invoke(manager, tiled);
+            
+            // Verify results; parents may differ where two neighbors pass the same support
+            for (int index = 0; index < expected.getVolume(); index++) {
+                helper.assertTrue(expected.getSupport(index) == tiled.getSupport(index)
+                        && expected.getDistance(index) == tiled.getDistance(index),
+                    "Tiled support should match at " + expected.getPos(index));
+                helper.assertFalse(tiled.isQueued(index), "No block should be left queued");
+            }
+            
+            helper.succeed();
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Tests that a collapse batch removes every block and still updates the blocks left next to it.
+     */
+    @GameTest(template = "empty")
+    public void testCollapseBatch(GameTestHelper helper) {
+        // Create a test environment
+        ServerLevel level = helper.getLevel();
+        
+        // A floating slab of stone two sections wide, with a torch on its side and a stone block beside it
+        BlockPos basePos = new BlockPos(1, 3, 1);
+        List<BlockPos> blocks = new ArrayList<>();
+        for (int x = 0; x < 20; x++) {
+            for (int z = 0; z < 2; z++) {
+                helper.setBlock(basePos.offset(x, 0, z), Blocks.STONE);
+                blocks.add(helper.absolutePos(basePos.offset(x, 0, z)));
+            }
+        }
+        BlockPos torchPos = basePos.offset(0, 0, 2);
+        helper.setBlock(torchPos, Blocks.WALL_TORCH.defaultBlockState().setValue(WallTorchBlock.FACING, Direction.SOUTH));
+        BlockPos standingPos = basePos.offset(20, 0, 0);
+        helper.setBlock(standingPos, Blocks.STONE);
+        
+        // Remove the slab, breaking the blocks instead of letting them fall
+        LongArrayList removed = CollapseBatch.apply(level, blocks, false, 0).getRemoved();
+        
+        // Verify results
+        helper.assertTrue(removed.size() == blocks.size(), "Every block of the slab should be removed");
+        for (BlockPos pos : blocks) {
+            helper.assertTrue(level.getBlockState(pos).isAir(), "Removed block should be air at " + pos);
+        }
+        helper.assertBlockNotPresent(Blocks.WALL_TORCH, torchPos);
+        helper.assertBlockPresent(Blocks.STONE, standingPos);
+        helper.assertTrue(CollapseBatch.apply(level, blocks, false, 0).getRemoved().isEmpty(), "Blocks that are already gone should be skipped");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that blocks past the falling block cap land straight away instead of spawning entities.
+     */
+    @GameTest(template = "empty")
+    public void testFallingBlockCap(GameTestHelper helper) {
+        // Create a test environment
+        ServerLevel level = helper.getLevel();
+        
+        // A floating 3x3 slab two blocks above a floor, with a second layer on half of it
+        List<BlockPos> blocks = new ArrayList<>();
+        for (int x = 0; x < 3; x++) {
+            for (int z = 0; z < 3; z++) {
+                helper.setBlock(new BlockPos(x, 1, z), Blocks.STONE);
+                if (x < 2) {
+                    helper.setBlock(new BlockPos(x, 5, z), Blocks.OAK_PLANKS);
+                    blocks.add(helper.absolutePos(new BlockPos(x, 5, z)));
+                }
+                helper.setBlock(new BlockPos(x, 4, z), Blocks.STONE);
+                blocks.add(helper.absolutePos(new BlockPos(x, 4, z)));
+            }
+        }
+        
+        // A block already resting on the floor has nowhere to fall
+        BlockPos restingPos = new BlockPos(4, 2, 0);
+        helper.setBlock(restingPos.below(), Blocks.STONE);
+        helper.setBlock(restingPos, Blocks.OAK_PLANKS);
+        blocks.add(helper.absolutePos(restingPos));
+        
+        // No falling entities are allowed, so the whole slab lands at once, top layer last
+        blocks.sort((a, b) -> Integer.compare(b.getY(), a.getY()));
+        CollapseBatch.Result result = CollapseBatch.apply(level, blocks, true, 0);
+        
+        // Verify results
+        helper.assertTrue(helper.getEntities(EntityType.FALLING_BLOCK).isEmpty(), "No falling blocks should be spawned");
+        helper.assertTrue(result.getLanded().size() == 15, "Every slab block should be reported as landed");
+        helper.assertTrue(result.getRemoved().size() == 15, "Only the slab blocks should be reported as removed");
+        helper.assertFalse(result.getRemoved().contains(helper.absolutePos(restingPos).asLong()), "The resting block should not be removed");
+        helper.assertBlockPresent(Blocks.OAK_PLANKS, restingPos);
+        for (int x = 0; x < 3; x++) {
+            for (int z = 0; z < 3; z++) {
+                helper.assertBlockPresent(Blocks.STONE, new BlockPos(x, 2, z));
+                helper.assertBlockPresent(x < 2 ? Blocks.OAK_PLANKS : Blocks.AIR, new BlockPos(x, 3, z));
+                helper.assertBlockPresent(Blocks.AIR, new BlockPos(x, 4, z));
+            }
+        }
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that blocks collapsing during a wave are re-checked in the next one.
+     */
+    @GameTest(template = "empty")
+    public void testCollapseCascade(GameTestHelper helper) {
+        CollapseCascade cascade = new CollapseCascade();
+        helper.assertTrue(cascade.isEmpty(), "A new cascade should be empty");
+        
+        // The first collapse starts the first wave
+        cascade.addCollapsed(LongArrayList.of(1L, 2L));
+        helper.assertTrue(cascade.poll() == 1L, "The first wave should start with the first collapsed block");
+        
+        // Re-checking the first block brings down another, which waits for the rest of the wave
+        cascade.addCollapsed(LongArrayList.of(3L));
+        helper.assertTrue(cascade.size() == 2, "Both waves should be waiting");
+        helper.assertTrue(cascade.poll() == 2L, "The first wave should finish first");
+        helper.assertTrue(cascade.getTotalWaves() == 1, "The second wave should not have started yet");
+        helper.assertTrue(cascade.poll() == 3L, "The second wave should hold the new collapse");
+        helper.assertTrue(cascade.getTotalWaves() == 2, "The second wave should have started");
+        helper.assertTrue(cascade.isEmpty(), "Nothing should be left");
+        helper.assertTrue(cascade.getTotalPositions() == 3, "Every block should be counted once");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that tasks near players go first and that each level's updates only run from its own tick.
+     */
+    @GameTest(template = "empty")
+    public void testUpdatePriority(GameTestHelper helper) {
+        // Create a test environment
+        ServerLevel level = helper.getLevel();
+        ServerLevel nether = level.getServer().getLevel(Level.NETHER);
+        BlockPos start = helper.absolutePos(new BlockPos(0, 2, 0));
+        int radius = 4;
+        
+        // A player standing at the start
+        Player player = helper.makeMockServerPlayerInLevel();
+        player.moveTo(start.getX() + 0.5, start.getY(), start.getZ() + 0.5);
+        
+        UpdateQueue queue = new UpdateQueue(level);
+        StructuralUpdateTask far = queue.add(start.east(96), radius);
+        StructuralUpdateTask near = queue.add(start, radius);
+        queue.tick();
+        queue.tick();
+        
+        // Verify results
+        helper.assertFalse(near.isLowPriority(), "A task next to a player should have normal priority");
+        helper.assertTrue(queue.poll() == near, "The task next to the player should go first");
+        helper.assertTrue(queue.poll() == far, "The far task should follow");
+        
+        if (nether != null) {
+            // Each level's updates are processed from its own tick, so ticking one level leaves the other's queue alone
+            StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+            try {
+                Method scheduleMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                    "scheduleStructuralUpdate", Level.class, BlockPos.class, int.class);
+                scheduleMethod.setAccessible(true);
+                scheduleMethod.invoke(manager, nether, new BlockPos(0, 64, 0), radius);
+            } catch (Exception e) {
+                helper.fail("Test failed with exception: " + e.getMessage());
+            }
+            
+            int netherQueued = manager.getLevelStates().get(nether).getQueuedTasks();
+            for (int i = 0; i < 3; i++) {
+                manager.processLevelUpdates(level);
+            }
+            helper.assertTrue(manager.getLevelStates().get(nether).getQueuedTasks() == netherQueued,
+                "Ticking the overworld should not process nether updates");
+        }
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that blocks changed together are queued as one task, however far apart they are.
+     */
+    @GameTest(template = "empty")
+    public void testGroupUpdate(GameTestHelper helper) {
+        // Create a test environment
+        ServerLevel level = helper.getLevel();
+        BlockPos start = helper.absolutePos(new BlockPos(0, 2, 0));
+        int radius = 4;
+        
+        // A crater wider than any merged task could grow to
+        LongArrayList destroyed = new LongArrayList();
+        for (int x = 0; x < 64; x += 2) {
+            destroyed.add(start.east(x).asLong());
+        }
+        destroyed.add(start.asLong());
+        
+        UpdateQueue queue = new UpdateQueue(level);
+        StructuralUpdateTask task = queue.addAll(destroyed, radius, 3);
+        
+        // Verify results
+        helper.assertTrue(queue.size() == 1, "The group should be queued as one task");
+        helper.assertTrue(task.getChangeCount() == 32, "Every distinct block should be in the task");
+        helper.assertTrue(task.getMax().getX() == start.getX() + 62 + radius, "The task should cover the whole group");
+        
+        // The group waits for its settle ticks on top of the usual debounce
+        queue.tick();
+        queue.tick();
+        helper.assertTrue(queue.poll() == null, "The group should still be settling");
+        queue.tick();
+        queue.tick();
+        queue.tick();
+        helper.assertTrue(queue.poll() == task, "The group should be ready once it has settled");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that pending work in an unloading chunk is taken out of the queue and cascade.
+     */
+    @GameTest(template = "empty")
+    public void testChunkUnloadEviction(GameTestHelper helper) {
+        // Create a test environment
+        ServerLevel level = helper.getLevel();
+        BlockPos start = helper.absolutePos(new BlockPos(0, 2, 0));
+        int chunkX = SectionPos.blockToSectionCoord(start.getX());
+        int chunkZ = SectionPos.blockToSectionCoord(start.getZ());
+        int radius = 4;
+        
+        // One task in the unloading chunk and one far away from it
+        UpdateQueue queue = new UpdateQueue(level);
+        StructuralUpdateTask inside = queue.add(start, radius);
+        StructuralUpdateTask outside = queue.add(start.east(64), radius);
+        List<StructuralUpdateTask> removed = queue.removeChunk(chunkX, chunkZ);
+        
+        // Verify results
+        helper.assertTrue(removed.size() == 1 && removed.get(0) == inside, "Only the task in the chunk should be removed");
+        helper.assertTrue(queue.size() == 1, "The other task should stay queued");
+        helper.assertTrue(queue.add(start, radius) != inside, "The removed task should no longer take new edits");
+        helper.assertTrue(outside.getChangeCount() == 1, "The other task should be untouched");
+        
+        // Collapses in the chunk leave the cascade, in either wave
+        CollapseCascade cascade = new CollapseCascade();
+        cascade.addCollapsed(LongArrayList.of(start.asLong(), start.east(64).asLong()));
+        cascade.poll();
+        cascade.addCollapsed(LongArrayList.of(start.above().asLong()));
+        LongArrayList parked = cascade.removeChunk(chunkX, chunkZ);
+        helper.assertTrue(parked.size() == 1 && parked.getLong(0) == start.above().asLong(), "The waiting collapse in the chunk should be removed");
+        helper.assertTrue(cascade.size() == 1 && cascade.poll() == start.east(64).asLong(), "The collapse elsewhere should stay");
+        
+        // Parked changes are kept with the chunk until it loads again
+        ChunkSupportData data = new ChunkSupportData();
+        data.addPendingChanges(parked);
+        helper.assertTrue(data.takePendingChanges().equals(parked), "Parked changes should be handed back");
+        helper.assertTrue(data.takePendingChanges().isEmpty(), "Parked changes should only be handed back once");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that reading a region never loads chunks that aren't loaded yet.
+     */
+    @GameTest(template = "empty")
+    public void testUnloadedChunksNotLoaded(GameTestHelper helper) {
+        // Create a test environment
+        ServerLevel level = helper.getLevel();
+        BlockPos far = new BlockPos(1_000_000, 0, 1_000_000);
+        int chunkX = SectionPos.blockToSectionCoord(far.getX());
+        int chunkZ = SectionPos.blockToSectionCoord(far.getZ());
+        helper.assertTrue(level.getChunkSource().getChunkNow(chunkX, chunkZ) == null, "The far chunk should start unloaded");
+        
+        // Read the far area both from the live level and through a snapshot
+        StructureView view = new LevelStructureView(level);
+        RegionSnapshot snapshot = RegionSnapshot.capture(level, far.offset(-4, -4, -4), far.offset(4, 4, 4),
+            new Long2IntOpenHashMap());
+        
+        // Verify results
+        helper.assertTrue(view.getBlockState(far).isAir(), "Blocks in unloaded chunks should read as air");
+        helper.assertTrue(snapshot.getBlockState(far).isAir(), "Snapshots should skip unloaded chunks");
+        helper.assertTrue(level.getChunkSource().getChunkNow(chunkX, chunkZ) == null, "Reading should not load the chunk");
+        
+        helper.succeed();
+    }
+    
+    /**
+     * Tests that an async solve is discarded and its task queued again when its region is edited before the result is applied.
+     */
+    @GameTest(template = "empty")
+    public void testStaleSnapshotDiscarded(GameTestHelper helper) {
+        // Create a test environment
+        ServerLevel level = helper.getLevel();
+        helper.setBlock(new BlockPos(2, 4, 2), Blocks.STONE);
+        BlockPos floating = helper.absolutePos(new BlockPos(2, 4, 2));
+        int radius = 3;
+        
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        
+        try {
+            // Use reflection to access private methods
+            Method getSectionVersions = StructuralIntegrityManager.class.getDeclaredMethod(
+                "getSectionVersions", Level.class);
+            getSectionVersions.setAccessible(true);
+            
+            Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
+            identifyFoundationsMethod.setAccessible(true);
+            
+            Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "calculateSupport", VoxelGrid.class);
+            calculateSupportMethod.setAccessible(true);
+            
+            Method findUnstableBlocksMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "findUnstableBlocks", VoxelGrid.class);
+            findUnstableBlocksMethod.setAccessible(true);
+            
+            Method applyCompletedSolves = StructuralIntegrityManager.class.getDeclaredMethod("applyCompletedSolves");
+            applyCompletedSolves.setAccessible(true);
+            
+            Field completedSolvesField = StructuralIntegrityManager.class.getDeclaredField("completedSolves");
+            completedSolvesField.setAccessible(true);
+            
+            Constructor<?> solveResult = Class.forName(StructuralIntegrityManager.class.getName() + "$SolveResult")
+                .getDeclaredConstructor(StructuralUpdateTask.class, RegionSnapshot.class, VoxelGrid.class, List.class);
+            solveResult.setAccessible(true);
+            
+            // Capture and solve the region the way a solver worker does
+            StructuralUpdateTask task = new UpdateQueue(level).add(floating, radius);
+            Long2IntOpenHashMap versions = (Long2IntOpenHashMap) getSectionVersions.invoke(manager, level);
+            RegionSnapshot snapshot = RegionSnapshot.capture(level, task.getMin(), task.getMax(), versions);
+            VoxelGrid grid = new VoxelGrid();
+            grid.load(snapshot, task.getMin(), task.getMax(), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, snapshot, grid);
+            calculateSupportMethod.invoke(manager, grid);
+            List<BlockPos> unstableBlocks = (List<BlockPos>) findUnstableBlocksMethod.invoke(manager, grid);
+            helper.assertTrue(unstableBlocks.contains(floating), "The solve should find the floating block unstable");
+            
+            // Support the block before the result comes back, bumping its section's version like an edit does
+            level.setBlock(floating.below(), Blocks.BEDROCK.defaultBlockState(), Block.UPDATE_ALL);
+            versions.addTo(SectionPos.blockToSection(floating.below().asLong()), 1);
+            
+            // Hand the result back to the server thread
+            int queuedBefore = manager.getLevelStates().get(level).getQueuedTasks();
+            ((Queue<Object>) completedSolvesField.get(manager)).add(
+                solveResult.newInstance(task, snapshot, grid, unstableBlocks));
+            applyCompletedSolves.invoke(manager);
+            
+            // Verify results
+            helper.assertTrue(snapshot.isStale(versions), "The edit should make the snapshot stale");
+            helper.assertTrue(level.getBlockState(floating).is(Blocks.STONE), "A stale result should not collapse blocks");
+            helper.assertTrue(manager.getLevelStates().get(level).getQueuedTasks() == queuedBefore + 1,
+                "The task of a stale result should be queued again");
+            
+            helper.succeed();
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Tests that an async solve is discarded when a block next to its collapse changed without bumping a section version.
+     */
+    @GameTest(template = "empty")
+    public void testUnversionedEditDiscarded(GameTestHelper helper) {
+        // Create a test environment
+        ServerLevel level = helper.getLevel();
+        helper.setBlock(new BlockPos(2, 4, 2), Blocks.STONE);
+        BlockPos floating = helper.absolutePos(new BlockPos(2, 4, 2));
+        
+        StructuralIntegrityManager manager = StructuralIntegrityManager.getInstance();
+        
+        try {
+            // Use reflection to access private methods
+            Method getSectionVersions = StructuralIntegrityManager.class.getDeclaredMethod(
+                "getSectionVersions", Level.class);
+            getSectionVersions.setAccessible(true);
+            
+            Method identifyFoundationsMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "identifyFoundations", StructureView.class, VoxelGrid.class);
+            identifyFoundationsMethod.setAccessible(true);
+            
+            Method calculateSupportMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "calculateSupport", VoxelGrid.class);
+            calculateSupportMethod.setAccessible(true);
+            
+            Method findUnstableBlocksMethod = StructuralIntegrityManager.class.getDeclaredMethod(
+                "findUnstableBlocks", VoxelGrid.class);
+            findUnstableBlocksMethod.setAccessible(true);
+            
+            Method applyCompletedSolves = StructuralIntegrityManager.class.getDeclaredMethod("applyCompletedSolves");
+            applyCompletedSolves.setAccessible(true);
+            
+            Field completedSolvesField = StructuralIntegrityManager.class.getDeclaredField("completedSolves");
+            completedSolvesField.setAccessible(true);
+            
+            Constructor<?> solveResult = Class.forName(StructuralIntegrityManager.class.getName() + "$SolveResult")
+                .getDeclaredConstructor(StructuralUpdateTask.class, RegionSnapshot.class, VoxelGrid.class, List.class);
+            solveResult.setAccessible(true);
+            
+            // Capture and solve the region the way a solver worker does
+            StructuralUpdateTask task = new UpdateQueue(level).add(floating, 3);
+            Long2IntOpenHashMap versions = (Long2IntOpenHashMap) getSectionVersions.invoke(manager, level);
+            RegionSnapshot snapshot = RegionSnapshot.capture(level, task.getMin(), task.getMax(), versions);
+            VoxelGrid grid = new VoxelGrid();
+            grid.load(snapshot, task.getMin(), task.getMax(), manager.getBlockPropertyManager());
+            identifyFoundationsMethod.invoke(manager, snapshot, grid);
+            calculateSupportMethod.invoke(manager, grid);
+            List<BlockPos> unstableBlocks = (List<BlockPos>) findUnstableBlocksMethod.invoke(manager, grid);
+            helper.assertTrue(unstableBlocks.contains(floating), "The solve should find the floating block unstable");
+            
+            // Support the block the way a command or another mod might, leaving section versions alone
+            level.setBlock(floating.below(), Blocks.BEDROCK.defaultBlockState(), Block.UPDATE_ALL);
+            
+            // Hand the result back to the server thread
+            int queuedBefore = manager.getLevelStates().get(level).getQueuedTasks();
+            ((Queue<Object>) completedSolvesField.get(manager)).add(
+                solveResult.newInstance(task, snapshot, grid, unstableBlocks));
+            applyCompletedSolves.invoke(manager);
+            
+            // Verify results
+            helper.assertFalse(snapshot.isStale(versions), "The edit should not have bumped a section version");
+            helper.assertFalse(snapshot.matches(level, unstableBlocks), "The snapshot should no longer match the level");
+            helper.assertTrue(level.getBlockState(floating).is(Blocks.STONE), "A stale result should not collapse blocks");
+            helper.assertTrue(manager.getLevelStates().get(level).getQueuedTasks() == queuedBefore + 1,
+                "The task of a stale result should be queued again");
+            
+            helper.succeed();
+        } catch (Exception e) {
+            helper.fail("Test failed with exception: " + e.getMessage());
+        }
+    }
 }